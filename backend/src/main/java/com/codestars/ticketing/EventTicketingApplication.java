@@ -2,6 +2,7 @@ package com.codestars.ticketing;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Main Application Class for Event Ticketing System
@@ -9,6 +10,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * automatically manages bean lifecycle and dependencies
  */
 @SpringBootApplication
+@EnableScheduling
 public class EventTicketingApplication {
 
     public static void main(String[] args) {
@@ -153,6 +153,11 @@ public class DataLoader implements CommandLineRunner {
         events.add(new Event("Eldoret Food Festival", "Celebrating Kalenjin cuisine and local delicacies.", "Eldoret Sports Club, Eldoret", LocalDateTime.of(2026, 6, 28, 11, 0), 1200.0, 3000, "Food", "https://images.unsplash.com/photo-1555939594-58d7cb561ad1"));
         events.add(new Event("Digital Marketing Summit", "SEO, social media, and content marketing strategies.", "Radisson Blu, Nairobi", LocalDateTime.of(2026, 7, 8, 9, 0), 2500.0, 500, "Technology", "https://images.unsplash.com/photo-1432888622747-4eb9a8f2c293"));
 
+        // Stadium-sized concerts go through the waiting room on sale
+        events.stream()
+            .filter(event -> event.getLocation().startsWith("Kasarani Stadium"))
+            .forEach(event -> event.setHighDemand(true));
+
         eventRepository.saveAll(events);
         System.out.println("Database initialized with " + eventRepository.count() + " Kenyan events for 2026");
     }
@@ -1,7 +1,11 @@
 package com.codestars.ticketing.config;
 
 import com.codestars.ticketing.security.JwtAuthenticationFilter;
+import com.codestars.ticketing.security.RateLimitFilter;
+import com.codestars.ticketing.security.RateLimiter;
+import com.codestars.ticketing.security.RehashingBCryptPasswordEncoder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -9,7 +13,6 @@ import org.springframework.security.config.annotation.authentication.configurati
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -48,12 +51,19 @@ public class SecurityConfig {
     @Autowired
     private JwtAuthenticationFilter jwtAuthenticationFilter;
 
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Value("${ticketing.auth.bcrypt-cost:10}")
+    private int bcryptCost;
+
     /**
      * Password encoder bean - Uses BCrypt for secure password hashing
+     * Hashes made with a different cost are replaced on the user's next successful login
      */
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new RehashingBCryptPasswordEncoder(bcryptCost);
     }
 
     /**
@@ -85,10 +95,12 @@ public class SecurityConfig {
                 .antMatchers("/api/events/**").permitAll()         // Browse events
                 .antMatchers("/api/ticket/purchase").permitAll()   // Guest checkout support
                 .antMatchers("/api/ticket/**").permitAll()         // View tickets
+                .antMatchers("/api/waiting-room/**").permitAll()   // On-sale queue
                 .antMatchers("/h2-console/**").permitAll()         // H2 database console
                 
                 // Protected endpoints - Require authentication
-                // .antMatchers("/api/admin/**").hasRole("ADMIN")  // Future: Admin endpoints
+                .antMatchers("/api/admin/**").hasRole("ADMIN")     // Operational metrics
+                .antMatchers("/api/checkin/**").hasRole("ADMIN")   // Gate scanning
                 
                 // All other requests require authentication
                 .anyRequest().authenticated()
@@ -97,11 +109,17 @@ public class SecurityConfig {
             // Stateless session management (JWT doesn't need sessions)
             .sessionManagement()
                 .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                // The JWT authenticates every request, so each one looked like a fresh login and
+                // renamed the session; a concurrent request still holding the old id lost it
+                .sessionFixation().none()
             .and()
             
             // Add our JWT filter BEFORE the default authentication filter
             // This is the KEY part of the filter chain configuration
-            .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+            .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+
+            // Rate limits go AFTER the JWT filter so per-user limits know who is calling
+            .addFilterAfter(new RateLimitFilter(rateLimiter), JwtAuthenticationFilter.class);
 
         // Allow H2 console frames (for development only)
         http.headers().frameOptions().disable();
@@ -0,0 +1,55 @@
+package com.codestars.ticketing.config;
+
+import com.codestars.ticketing.repository.HeapSessionStore;
+import com.codestars.ticketing.repository.JdbcSessionStore;
+import com.codestars.ticketing.repository.OffHeapSessionStore;
+import com.codestars.ticketing.repository.SessionStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+
+/**
+ * Session Configuration - HttpSession backed by Spring Session instead of the servlet container
+ *
+ * ticketing.session.store chooses where sessions are kept:
+ * - memory: objects on this node's heap, as the container kept them (default)
+ * - off-heap: serialized into direct buffers on this node, outside the garbage-collected heap
+ * - jdbc: in the database, written behind, so any node behind the load balancer can serve
+ *   any client; lets several backend instances run without sticky sessions
+ * Sessions expire after server.servlet.session.timeout of inactivity with every store.
+ */
+@Configuration
+@EnableSpringHttpSession
+public class SessionConfig {
+
+    // The jdbc store's tables are created, and dropped, with the JPA schema
+    @Bean
+    @DependsOn("entityManagerFactory")
+    public SessionStore<?> sessionStore(
+            @Value("${ticketing.session.store:memory}") String store,
+            @Value("${server.servlet.session.timeout:30m}") Duration timeout,
+            @Value("${ticketing.session.jdbc.max-pending:10000}") int maxPending,
+            @Value("${ticketing.session.jdbc.flush-interval-ms:1000}") long flushIntervalMs,
+            @Value("${ticketing.session.cleanup-interval-ms:60000}") long cleanupIntervalMs,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager) {
+        switch (store) {
+            case "memory":
+                return new HeapSessionStore(timeout);
+            case "off-heap":
+                return new OffHeapSessionStore(timeout);
+            case "jdbc":
+                return new JdbcSessionStore(jdbcTemplate, transactionManager, timeout, maxPending,
+                        flushIntervalMs, cleanupIntervalMs);
+            default:
+                throw new IllegalArgumentException("Unknown ticketing.session.store '" + store
+                        + "'; expected memory, off-heap or jdbc");
+        }
+    }
+}
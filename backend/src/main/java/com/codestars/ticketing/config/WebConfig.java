@@ -0,0 +1,29 @@
+package com.codestars.ticketing.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Web Configuration - Spring MVC interceptors
+ *
+ * Replaces Spring Boot's open-in-view interceptor with one that skips the availability
+ * streams. A stream stays open for minutes, and an EntityManager held open for it would
+ * keep its JDBC connection out of the pool for as long as the client is connected.
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Bean
+    public OpenEntityManagerInViewInterceptor openEntityManagerInViewInterceptor() {
+        return new OpenEntityManagerInViewInterceptor();
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addWebRequestInterceptor(openEntityManagerInViewInterceptor())
+                .excludePathPatterns("/api/events/*/availability/stream", "/api/events/availability/stream");
+    }
+}
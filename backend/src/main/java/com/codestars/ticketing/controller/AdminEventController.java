@@ -0,0 +1,72 @@
+package com.codestars.ticketing.controller;
+
+import com.codestars.ticketing.model.Event;
+import com.codestars.ticketing.repository.EventRepository;
+import com.codestars.ticketing.service.InventoryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Admin Event Controller - Stock changes for administrators
+ * Secured by SecurityConfig: /api/admin/** requires ROLE_ADMIN
+ */
+@RestController
+@RequestMapping("/api/admin/events")
+@CrossOrigin(origins = {"http://localhost:3000", "http://localhost:3001"})
+public class AdminEventController {
+
+    private final EventRepository eventRepository;
+    private final InventoryService inventoryService;
+
+    @Autowired
+    public AdminEventController(EventRepository eventRepository, InventoryService inventoryService) {
+        this.eventRepository = eventRepository;
+        this.inventoryService = inventoryService;
+    }
+
+    /**
+     * PUT /api/admin/events/{id}/capacity - Change how many tickets an event has in total
+     * Request Body: {totalTickets}
+     * Returns: 200 OK with the new capacity, 400 BAD REQUEST for a negative total,
+     *          404 NOT FOUND for an unknown event, 409 CONFLICT if more tickets are already
+     *          sold than the new total, or the capacity changed concurrently
+     */
+    @PutMapping("/{id}/capacity")
+    public ResponseEntity<?> changeCapacity(@PathVariable Long id, @RequestBody Map<String, Integer> request) {
+        Integer totalTickets = request.get("totalTickets");
+        if (totalTickets == null || totalTickets < 0) {
+            return ResponseEntity.badRequest().body(createErrorResponse("totalTickets must be 0 or more"));
+        }
+
+        Optional<Event> event = eventRepository.findById(id);
+        if (event.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(createErrorResponse("Event not found with id: " + id));
+        }
+        if (!inventoryService.changeCapacity(event.get(), totalTickets)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(createErrorResponse("Capacity cannot be changed to " + totalTickets +
+                            ": more tickets are already sold, or the capacity was just changed. Please try again."));
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("eventId", id);
+        response.put("totalTickets", totalTickets);
+        response.put("availableTickets", inventoryService.getAvailableTickets(event.get()));
+        return ResponseEntity.ok(response);
+    }
+
+    private Map<String, Object> createErrorResponse(String message) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("success", false);
+        error.put("error", message);
+        return error;
+    }
+}
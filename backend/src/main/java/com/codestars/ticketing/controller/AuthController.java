@@ -1,14 +1,18 @@
 package com.codestars.ticketing.controller;
 
 import com.codestars.ticketing.model.User;
+import com.codestars.ticketing.security.AuthThrottledException;
 import com.codestars.ticketing.service.AuthService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+
 import java.util.HashMap;
 import java.util.Map;
 
@@ -55,6 +59,8 @@ public class AuthController {
 
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
 
+        } catch (AuthThrottledException e) {
+            return tooManyRequests(e);
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest()
                 .body(createErrorResponse(e.getMessage()));
@@ -63,9 +69,10 @@ public class AuthController {
 
     /**
      * POST /api/auth/login - Authenticate user and return JWT token
+     * 429 with Retry-After after repeated failures, or while too many logins are in progress
      */
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody LoginRequest request) {
+    public ResponseEntity<?> login(@RequestBody LoginRequest request, HttpServletRequest httpRequest) {
         try {
             // Validate credentials
             if (request.getEmail() == null || request.getPassword() == null) {
@@ -74,7 +81,7 @@ public class AuthController {
             }
 
             // Authenticate and generate token
-            String token = authService.login(request.getEmail(), request.getPassword());
+            String token = authService.login(request.getEmail(), request.getPassword(), httpRequest.getRemoteAddr());
 
             // Get user details
             User user = authService.getUserByEmail(request.getEmail())
@@ -89,6 +96,8 @@ public class AuthController {
 
             return ResponseEntity.ok(response);
 
+        } catch (AuthThrottledException e) {
+            return tooManyRequests(e);
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                 .body(createErrorResponse("Invalid email or password"));
@@ -127,6 +136,12 @@ public class AuthController {
     }
 
     // Helper methods
+    private ResponseEntity<Map<String, Object>> tooManyRequests(AuthThrottledException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+            .body(createErrorResponse(e.getMessage()));
+    }
+
     private Map<String, Object> createErrorResponse(String message) {
         Map<String, Object> error = new HashMap<>();
         error.put("success", false);
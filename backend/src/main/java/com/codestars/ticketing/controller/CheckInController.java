@@ -0,0 +1,141 @@
+package com.codestars.ticketing.controller;
+
+import com.codestars.ticketing.service.CheckInService;
+import com.codestars.ticketing.service.GateSnapshot;
+import com.codestars.ticketing.service.GateSnapshotService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Check-In Controller - Gate scanning endpoints for venue staff
+ * Secured by SecurityConfig: /api/checkin/** requires ROLE_ADMIN
+ */
+@RestController
+@RequestMapping("/api/checkin")
+@CrossOrigin(origins = {"http://localhost:3000", "http://localhost:3001"})
+public class CheckInController {
+
+    private final CheckInService checkInService;
+    private final GateSnapshotService snapshotService;
+
+    @Autowired
+    public CheckInController(CheckInService checkInService, GateSnapshotService snapshotService) {
+        this.checkInService = checkInService;
+        this.snapshotService = snapshotService;
+    }
+
+    /**
+     * POST /api/checkin/{eventId} - Scan a ticket at the gate
+     * Request Body: {ticketCode}
+     * Returns: 200 OK when admitted, 400 BAD REQUEST for a mistyped code,
+     *          404 NOT FOUND for an unknown code, 409 CONFLICT if already used,
+     *          cancelled or for another event
+     */
+    @PostMapping("/{eventId}")
+    public ResponseEntity<?> checkIn(@PathVariable Long eventId, @RequestBody CheckInRequest request) {
+        if (request.getTicketCode() == null || request.getTicketCode().isBlank()) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("error", "Missing required fields");
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        CheckInService.CheckInResult result = checkInService.checkIn(eventId, request.getTicketCode());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", result.getOutcome() == CheckInService.Outcome.ADMITTED);
+        response.put("outcome", result.getOutcome());
+        response.put("ticketCode", result.getTicketCode());
+        response.put("quantity", result.getQuantity());
+        response.put("checkedInAt", result.getCheckedInAt());
+        return ResponseEntity.status(statusFor(result.getOutcome())).body(response);
+    }
+
+    /**
+     * GET /api/checkin/{eventId}/stats - Scans, admissions and pending write-backs
+     */
+    @GetMapping("/{eventId}/stats")
+    public ResponseEntity<Map<String, Object>> stats(@PathVariable Long eventId) {
+        return ResponseEntity.ok(checkInService.getStats(eventId));
+    }
+
+    /**
+     * GET /api/checkin/{eventId}/snapshot - Binary ticket snapshot for offline gates
+     * Query: since (optional) - X-Snapshot-Next-Since of a previous snapshot, to get only the changes
+     * Returns: 200 OK application/octet-stream; X-Snapshot-Next-Since is the since for the next delta;
+     *          404 NOT FOUND for an unknown event, 500 if the snapshot could not be written
+     */
+    @GetMapping("/{eventId}/snapshot")
+    public ResponseEntity<?> snapshot(@PathVariable Long eventId,
+                                      @RequestParam(required = false) Long since) {
+        GateSnapshotService.Export export;
+        try {
+            export = snapshotService.exportSnapshot(eventId, since);
+        } catch (RuntimeException e) {
+            System.err.println("Failed to export gate snapshot for event " + eventId + ": " + e.getMessage());
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("error", "Failed to export gate snapshot");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+        if (export == null) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("error", "Event not found with id: " + eventId);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        }
+        // Headers and body come from the same bytes, so X-Snapshot-Next-Since always matches them
+        GateSnapshot snapshot = export.getSnapshot();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + export.getFileName() + "\"")
+                .header("X-Snapshot-Generated-At", String.valueOf(snapshot.getGeneratedAt()))
+                .header("X-Snapshot-Next-Since", String.valueOf(snapshot.getNextSince()))
+                .header("X-Snapshot-Records", String.valueOf(snapshot.size()))
+                .body(export.getBytes());
+    }
+
+    /**
+     * POST /api/checkin/{eventId}/reconcile - Upload scans recorded while a gate was offline
+     * Request Body: [{ticketCode, gateId, scannedAt}]
+     * Returns: 200 OK with counts per outcome and the scans that were rejected
+     */
+    @PostMapping("/{eventId}/reconcile")
+    public ResponseEntity<Map<String, Object>> reconcile(@PathVariable Long eventId,
+                                                         @RequestBody List<GateSnapshotService.OfflineScan> scans) {
+        return ResponseEntity.ok(snapshotService.reconcile(eventId, scans));
+    }
+
+    private HttpStatus statusFor(CheckInService.Outcome outcome) {
+        switch (outcome) {
+            case ADMITTED:
+                return HttpStatus.OK;
+            case INVALID_CODE:
+                return HttpStatus.BAD_REQUEST;
+            case NOT_FOUND:
+                return HttpStatus.NOT_FOUND;
+            default:
+                return HttpStatus.CONFLICT;
+        }
+    }
+
+    public static class CheckInRequest {
+        private String ticketCode;
+
+        public String getTicketCode() {
+            return ticketCode;
+        }
+
+        public void setTicketCode(String ticketCode) {
+            this.ticketCode = ticketCode;
+        }
+    }
+}
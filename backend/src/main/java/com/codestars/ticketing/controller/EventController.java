@@ -2,12 +2,32 @@ package com.codestars.ticketing.controller;
 
 import com.codestars.ticketing.model.Event;
 import com.codestars.ticketing.repository.EventRepository;
+import com.codestars.ticketing.service.AvailabilityStreamService;
+import com.codestars.ticketing.service.CatalogEvent;
+import com.codestars.ticketing.service.CatalogRevision;
+import com.codestars.ticketing.service.EventCatalogCache;
+import com.codestars.ticketing.service.EventFacetIndex;
+import com.codestars.ticketing.service.EventFilter;
+import com.codestars.ticketing.service.EventListCache;
+import com.codestars.ticketing.service.EventPageService;
+import com.codestars.ticketing.service.EventSearchIndex;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * Event Controller - REST API endpoints for events
@@ -18,22 +38,74 @@ import java.util.List;
 @CrossOrigin(origins = {"http://localhost:3000", "http://localhost:3001"})
 public class EventController {
 
+    private static final int MAX_STREAM_EVENTS = 100;
+    private static final MediaType EVENT_STREAM_UTF8 = new MediaType("text", "event-stream", StandardCharsets.UTF_8);
+    // Browsers and CDNs may keep a copy but must revalidate it (cheap, via the ETag) before use
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePublic();
+
     private final EventRepository eventRepository;
+    private final EventCatalogCache catalogCache;
+    private final EventPageService pageService;
+    private final EventSearchIndex searchIndex;
+    private final EventFacetIndex facetIndex;
+    private final AvailabilityStreamService availabilityStream;
+    private final EventListCache eventListCache;
 
     @Autowired
-    public EventController(EventRepository eventRepository) {
+    public EventController(EventRepository eventRepository,
+                           EventCatalogCache catalogCache,
+                           EventPageService pageService,
+                           EventSearchIndex searchIndex,
+                           EventFacetIndex facetIndex,
+                           AvailabilityStreamService availabilityStream,
+                           EventListCache eventListCache) {
         this.eventRepository = eventRepository;
+        this.catalogCache = catalogCache;
+        this.pageService = pageService;
+        this.searchIndex = searchIndex;
+        this.facetIndex = facetIndex;
+        this.availabilityStream = availabilityStream;
+        this.eventListCache = eventListCache;
     }
 
     /**
      * GET /api/events - Retrieve all events
-     * Returns: 200 OK with list of events
+     * Query: limit, cursor, sort (optional) - when limit or cursor is given, returns one page
+     *        {events, sort, nextCursor, hasMore} instead; sort is date (default), date_desc,
+     *        price or price_desc, and nextCursor is passed back as cursor for the next page
+     * Returns: 200 OK with list of events (pre-serialized bytes, gzip-compressed when the client
+     *          accepts it), 304 NOT MODIFIED when If-None-Match has the current ETag, 400 for a bad cursor
      */
     @GetMapping
-    public ResponseEntity<List<Event>> getAllEvents() {
+    public ResponseEntity<?> getAllEvents(@RequestParam(required = false) Integer limit,
+                                          @RequestParam(required = false) String cursor,
+                                          @RequestParam(required = false) String sort,
+                                          WebRequest request) {
         try {
-            List<Event> events = eventRepository.findAll();
-            return ResponseEntity.ok(events);
+            if (limit != null || cursor != null) {
+                if (notModified(request, catalogCache.getCatalogRevision(), "catalog")) {
+                    return null;
+                }
+                return ResponseEntity.ok().cacheControl(REVALIDATE).body(createPageResponse(
+                        pageService.listEvents(EventPageService.EventSort.parse(sort), cursor, limit)));
+            }
+
+            EventListCache.EncodedList list = eventListCache.get();
+            boolean gzip = acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+            if (notModified(request, list.getRevision(), gzip ? "catalog-gzip" : "catalog")) {
+                return null;
+            }
+            eventListCache.recordServed(gzip);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .cacheControl(REVALIDATE)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (gzip) {
+                response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+            return response.body(gzip ? list.getGzip() : list.getJson());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
@@ -41,13 +113,51 @@ public class EventController {
 
     /**
      * GET /api/events/{id} - Retrieve a specific event
-     * Returns: 200 OK if found, 404 NOT FOUND if not found
+     * Returns: 200 OK if found, 304 NOT MODIFIED when If-None-Match has the current ETag,
+     *          404 NOT FOUND if not found
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Event> getEventById(@PathVariable Long id) {
-        return eventRepository.findById(id)
-                .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<CatalogEvent> getEventById(@PathVariable Long id, WebRequest request) {
+        CatalogRevision revision = catalogCache.getEventRevision(id);
+        if (!revision.isCurrent()) {
+            // Not loaded here within the TTL: loading it records its version in the revision
+            if (catalogCache.getEvent(id).isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            revision = catalogCache.getEventRevision(id);
+        }
+        if (notModified(request, revision, "event-" + id)) {
+            return null;
+        }
+        Optional<CatalogEvent> event = catalogCache.getEvent(id);
+        if (event.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(event.get());
+    }
+
+    /**
+     * GET /api/events/{id}/availability/stream - Live availableTickets as Server-Sent Events
+     * Returns: text/event-stream of "availability" events {eventId, availableTickets, change},
+     *          starting with the current count; 404 NOT FOUND if the event does not exist,
+     *          503 SERVICE UNAVAILABLE when the server has no room for more subscribers
+     */
+    @GetMapping(value = "/{id}/availability/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> streamAvailability(@PathVariable Long id) {
+        return subscribe(List.of(id));
+    }
+
+    /**
+     * GET /api/events/availability/stream?eventIds=1,2,3 - One stream for several events (e.g. a listing page)
+     * Returns: as for a single event; 400 BAD REQUEST for no ids or more than 100
+     */
+    @GetMapping(value = "/availability/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> streamAvailability(@RequestParam List<Long> eventIds) {
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(eventIds));
+        if (distinct.isEmpty() || distinct.size() > MAX_STREAM_EVENTS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return subscribe(distinct);
     }
 
     /**
@@ -68,70 +178,160 @@ public class EventController {
         return ResponseEntity.ok(events);
     }
 
+    /**
+     * GET /api/events/search - Search and filter events (from the in-memory search and filter indexes)
+     * Query: query (optional) - words to look for; every word must match a word, or the start of one,
+     *        in the name, location, category or description. Best matches come first.
+     *        category, location (optional) - exact category; a town, or text in the location
+     *        from, to (optional) - event date range, inclusive: yyyy-MM-dd or yyyy-MM-ddTHH:mm
+     *        minPrice, maxPrice (optional) - price range in KES, inclusive
+     *        available (optional) - true for events with tickets left, false for sold-out events
+     *        limit, cursor, sort (optional) - page the results, as for GET /api/events;
+     *        sort also accepts relevance, the default when there is a query
+     */
     @GetMapping("/search")
-    public ResponseEntity<List<Event>> searchEvents(
+    public ResponseEntity<?> searchEvents(
             @RequestParam(required = false) String query,
             @RequestParam(required = false) String category,
-            @RequestParam(required = false) String location
+            @RequestParam(required = false) String location,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Boolean available,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String sort,
+            WebRequest request
     ) {
         try {
-            List<Event> events = eventRepository.findAll();
-            
-            if (query != null && !query.trim().isEmpty()) {
-                events = eventRepository.findByNameContainingIgnoreCaseOrLocationContainingIgnoreCaseOrDescriptionContainingIgnoreCase(
-                    query, query, query
-                );
+            if (notModified(request, catalogCache.getCatalogRevision(), "catalog")) {
+                return null;
             }
-            
-            if (category != null && !category.trim().isEmpty() && !category.equalsIgnoreCase("All")) {
-                events = events.stream()
-                    .filter(e -> e.getCategory().equalsIgnoreCase(category))
-                    .collect(java.util.stream.Collectors.toList());
+            EventFilter filter = new EventFilter(category, location, EventFilter.parseDate(from, false),
+                    EventFilter.parseDate(to, true), minPrice, maxPrice, available);
+            if (limit != null || cursor != null) {
+                EventPageService.EventSort defaultSort = query != null && !query.isBlank()
+                        ? EventPageService.EventSort.RELEVANCE : EventPageService.EventSort.DATE;
+                return ResponseEntity.ok().cacheControl(REVALIDATE).body(createPageResponse(pageService.searchEvents(
+                        query, filter, EventPageService.EventSort.parse(sort, defaultSort), cursor, limit)));
             }
-            
-            if (location != null && !location.trim().isEmpty() && !location.equalsIgnoreCase("All")) {
-                events = events.stream()
-                    .filter(e -> e.getLocation().toLowerCase().contains(location.toLowerCase()))
+
+            List<CatalogEvent> events = searchIndex.search(query, filter).stream()
+                    .map(EventSearchIndex.SearchHit::getEvent)
                     .collect(java.util.stream.Collectors.toList());
-            }
-            
-            return ResponseEntity.ok(events);
+            return ResponseEntity.ok().cacheControl(REVALIDATE).body(events);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
     @GetMapping("/categories")
-    public ResponseEntity<List<String>> getCategories() {
+    public ResponseEntity<List<String>> getCategories(WebRequest request) {
         try {
-            List<String> categories = eventRepository.findAll().stream()
-                .map(Event::getCategory)
-                .distinct()
-                .sorted()
-                .collect(java.util.stream.Collectors.toList());
-            return ResponseEntity.ok(categories);
+            if (notModified(request, facetIndex.getRevision(), "facets")) {
+                return null;
+            }
+            return ResponseEntity.ok().cacheControl(REVALIDATE).body(facetIndex.getCategories());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
     @GetMapping("/locations")
-    public ResponseEntity<List<String>> getLocations() {
+    public ResponseEntity<List<String>> getLocations(WebRequest request) {
         try {
-            List<String> locations = eventRepository.findAll().stream()
-                .map(event -> {
-                    String loc = event.getLocation();
-                    if (loc.contains(",")) {
-                        return loc.substring(loc.lastIndexOf(",") + 1).trim();
-                    }
-                    return loc;
-                })
-                .distinct()
-                .sorted()
-                .collect(java.util.stream.Collectors.toList());
-            return ResponseEntity.ok(locations);
+            if (notModified(request, facetIndex.getRevision(), "facets")) {
+                return null;
+            }
+            return ResponseEntity.ok().cacheControl(REVALIDATE).body(facetIndex.getTowns());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
+
+    /**
+     * GET /api/events/facets - Categories and towns with counts, in one call
+     * Returns: 200 OK {totalEvents, upcomingAvailable, categories: [{value, events, upcomingAvailable}],
+     *          locations: [...]}; upcomingAvailable counts future events that still have tickets;
+     *          304 NOT MODIFIED when If-None-Match has the current ETag
+     */
+    @GetMapping("/facets")
+    public ResponseEntity<Map<String, Object>> getFacets(WebRequest request) {
+        try {
+            if (notModified(request, facetIndex.getRevision(), "facets")) {
+                return null;
+            }
+            return ResponseEntity.ok().cacheControl(REVALIDATE).body(facetIndex.getFacets());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    // Helper methods
+
+    /**
+     * Sets the ETag from the revision (taken before the body is read); true when the client's
+     * copy is current and a 304 has been prepared
+     */
+    private boolean notModified(WebRequest request, CatalogRevision revision, String scope) {
+        return request.checkNotModified(revision.eTag(scope));
+    }
+
+    private ResponseEntity<ResponseBodyEmitter> subscribe(List<Long> eventIds) {
+        try {
+            // The emitter writes ready-made SSE text, so the content type is set here
+            return ResponseEntity.ok()
+                    .contentType(EVENT_STREAM_UTF8)
+                    .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                    .header("X-Accel-Buffering", "no")
+                    .body(availabilityStream.subscribe(eventIds));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "30").build();
+        }
+    }
+
+    /**
+     * True when Accept-Encoding lists gzip (or *) without q=0
+     */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            String name = parts[0].trim();
+            if (!name.equalsIgnoreCase("gzip") && !name.equals("*")) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim().replace(" ", "");
+                if (param.startsWith("q=") && param.substring(2).matches("0(\\.0*)?")) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private Map<String, Object> createPageResponse(EventPageService.EventPage page) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("events", page.getEvents());
+        response.put("sort", page.getSort().getValue());
+        response.put("nextCursor", page.getNextCursor());
+        response.put("hasMore", page.hasMore());
+        return response;
+    }
+
+    private Map<String, Object> createErrorResponse(String message) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("success", false);
+        error.put("error", message);
+        return error;
+    }
 }
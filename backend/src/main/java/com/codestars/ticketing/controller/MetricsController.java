@@ -0,0 +1,172 @@
+package com.codestars.ticketing.controller;
+
+import com.codestars.ticketing.repository.SessionStore;
+import com.codestars.ticketing.security.CustomUserDetailsService;
+import com.codestars.ticketing.security.JwtUtil;
+import com.codestars.ticketing.security.LoginAttemptThrottle;
+import com.codestars.ticketing.security.PasswordHashingService;
+import com.codestars.ticketing.security.RateLimiter;
+import com.codestars.ticketing.service.AvailabilityStreamService;
+import com.codestars.ticketing.service.EmailOutboxService;
+import com.codestars.ticketing.service.EventCatalogCache;
+import com.codestars.ticketing.service.EventFilterIndex;
+import com.codestars.ticketing.service.EventListCache;
+import com.codestars.ticketing.service.EventSearchIndex;
+import com.codestars.ticketing.service.IdempotencyService;
+import com.codestars.ticketing.service.PurchasePipeline;
+import com.codestars.ticketing.service.SeatHoldService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Metrics Controller - Operational statistics for administrators
+ * Secured by SecurityConfig: /api/admin/** requires ROLE_ADMIN
+ */
+@RestController
+@RequestMapping("/api/admin/metrics")
+@CrossOrigin(origins = {"http://localhost:3000", "http://localhost:3001"})
+public class MetricsController {
+
+    private final PurchasePipeline purchasePipeline;
+    private final SeatHoldService seatHoldService;
+    private final IdempotencyService idempotencyService;
+    private final EmailOutboxService emailOutboxService;
+    private final EventCatalogCache catalogCache;
+    private final EventSearchIndex searchIndex;
+    private final EventFilterIndex filterIndex;
+    private final AvailabilityStreamService availabilityStream;
+    private final EventListCache eventListCache;
+    private final JwtUtil jwtUtil;
+    private final CustomUserDetailsService userDetailsService;
+    private final PasswordHashingService passwordHashing;
+    private final LoginAttemptThrottle loginThrottle;
+    private final SessionStore<?> sessionStore;
+    private final RateLimiter rateLimiter;
+
+    @Autowired
+    public MetricsController(PurchasePipeline purchasePipeline,
+                             SeatHoldService seatHoldService,
+                             IdempotencyService idempotencyService,
+                             EmailOutboxService emailOutboxService,
+                             EventCatalogCache catalogCache,
+                             EventSearchIndex searchIndex,
+                             EventFilterIndex filterIndex,
+                             AvailabilityStreamService availabilityStream,
+                             EventListCache eventListCache,
+                             JwtUtil jwtUtil,
+                             CustomUserDetailsService userDetailsService,
+                             PasswordHashingService passwordHashing,
+                             LoginAttemptThrottle loginThrottle,
+                             SessionStore<?> sessionStore,
+                             RateLimiter rateLimiter) {
+        this.purchasePipeline = purchasePipeline;
+        this.seatHoldService = seatHoldService;
+        this.idempotencyService = idempotencyService;
+        this.emailOutboxService = emailOutboxService;
+        this.catalogCache = catalogCache;
+        this.searchIndex = searchIndex;
+        this.filterIndex = filterIndex;
+        this.availabilityStream = availabilityStream;
+        this.eventListCache = eventListCache;
+        this.jwtUtil = jwtUtil;
+        this.userDetailsService = userDetailsService;
+        this.passwordHashing = passwordHashing;
+        this.loginThrottle = loginThrottle;
+        this.sessionStore = sessionStore;
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * GET /api/admin/metrics/purchase-pipeline - Queue depth per event and batch sizes
+     */
+    @GetMapping("/purchase-pipeline")
+    public ResponseEntity<Map<String, Object>> getPurchasePipelineStats() {
+        return ResponseEntity.ok(purchasePipeline.getStats());
+    }
+
+    /**
+     * GET /api/admin/metrics/holds - Active, confirmed and expired seat holds
+     */
+    @GetMapping("/holds")
+    public ResponseEntity<Map<String, Object>> getHoldStats() {
+        return ResponseEntity.ok(seatHoldService.getStats());
+    }
+
+    /**
+     * GET /api/admin/metrics/idempotency - Replay cache size and hit rates
+     */
+    @GetMapping("/idempotency")
+    public ResponseEntity<Map<String, Object>> getIdempotencyStats() {
+        return ResponseEntity.ok(idempotencyService.getStats());
+    }
+
+    /**
+     * GET /api/admin/metrics/email-outbox - Queued, sent and dead-lettered emails
+     */
+    @GetMapping("/email-outbox")
+    public ResponseEntity<Map<String, Object>> getEmailOutboxStats() {
+        return ResponseEntity.ok(emailOutboxService.getStats());
+    }
+
+    /**
+     * GET /api/admin/metrics/catalog - Event catalog cache size, hit rate and evictions, and the
+     * pre-serialized event list's size and rebuilds
+     */
+    @GetMapping("/catalog")
+    public ResponseEntity<Map<String, Object>> getCatalogStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(catalogCache.getStats());
+        stats.put("encodedList", eventListCache.getStats());
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * GET /api/admin/metrics/search - Search and filter index sizes and query latency
+     */
+    @GetMapping("/search")
+    public ResponseEntity<Map<String, Object>> getSearchStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(searchIndex.getStats());
+        stats.put("filterIndex", filterIndex.getStats());
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * GET /api/admin/metrics/availability-stream - Live availability subscribers and push volume
+     */
+    @GetMapping("/availability-stream")
+    public ResponseEntity<Map<String, Object>> getAvailabilityStreamStats() {
+        return ResponseEntity.ok(availabilityStream.getStats());
+    }
+
+    /**
+     * GET /api/admin/metrics/auth - Token and user caches, password hashing pool, login throttle
+     */
+    @GetMapping("/auth")
+    public ResponseEntity<Map<String, Object>> getAuthStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("jwt", jwtUtil.getStats());
+        stats.put("userDetails", userDetailsService.getStats());
+        stats.put("passwordHashing", passwordHashing.getStats());
+        stats.put("loginThrottle", loginThrottle.getStats());
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * GET /api/admin/metrics/sessions - Session store in use, session count and read/write latency
+     */
+    @GetMapping("/sessions")
+    public ResponseEntity<Map<String, Object>> getSessionStats() {
+        return ResponseEntity.ok(sessionStore.getStats());
+    }
+
+    /**
+     * GET /api/admin/metrics/rate-limits - Requests allowed and rejected per limited route
+     */
+    @GetMapping("/rate-limits")
+    public ResponseEntity<Map<String, Object>> getRateLimitStats() {
+        return ResponseEntity.ok(rateLimiter.getStats());
+    }
+}
@@ -1,8 +1,16 @@
 package com.codestars.ticketing.controller;
 
 import com.codestars.ticketing.model.Ticket;
+import com.codestars.ticketing.service.IdempotencyService;
+import com.codestars.ticketing.service.PendingResponseException;
+import com.codestars.ticketing.service.PurchasePendingException;
+import com.codestars.ticketing.service.SeatHoldService;
+import com.codestars.ticketing.service.TemporaryFailureException;
 import com.codestars.ticketing.service.TicketService;
+import com.codestars.ticketing.service.TicketTokenService;
+import com.codestars.ticketing.service.WaitingRoomService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -10,6 +18,8 @@ import org.apache.commons.validator.routines.EmailValidator;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Ticket Controller - REST API endpoints for ticket operations
@@ -21,37 +31,133 @@ import java.util.Map;
 public class TicketController {
 
     private final TicketService ticketService;
+    private final SeatHoldService seatHoldService;
+    private final WaitingRoomService waitingRoomService;
+    private final IdempotencyService idempotencyService;
+    private final TicketTokenService ticketTokenService;
 
     @Autowired
-    public TicketController(TicketService ticketService) {
+    public TicketController(TicketService ticketService,
+                            SeatHoldService seatHoldService,
+                            WaitingRoomService waitingRoomService,
+                            IdempotencyService idempotencyService,
+                            TicketTokenService ticketTokenService) {
         this.ticketService = ticketService;
+        this.seatHoldService = seatHoldService;
+        this.waitingRoomService = waitingRoomService;
+        this.idempotencyService = idempotencyService;
+        this.ticketTokenService = ticketTokenService;
     }
 
     /**
      * POST /api/ticket/purchase - Purchase a ticket
      * Request Body: {eventId, userName, userEmail, phoneNumber, quantity}
-     * Returns: 201 CREATED with ticket details, 400 BAD REQUEST on error
+     * Header: X-Admission-Token (required for high-demand events)
+     * Header: Idempotency-Key (optional; retries with the same key replay the first response)
+     * Returns: 201 CREATED with ticket details, 400 BAD REQUEST on error,
+     *          202 ACCEPTED if the purchase is queued and still running (retry with the same key),
+     *          403 FORBIDDEN without waiting room admission,
+     *          409 CONFLICT while the first request with the key is still running,
+     *          422 UNPROCESSABLE ENTITY if the key was used for a different purchase,
+     *          503 SERVICE UNAVAILABLE if nothing was bought for a passing reason (safe to retry)
      */
     @PostMapping("/purchase")
-    public ResponseEntity<?> purchaseTicket(@RequestBody TicketPurchaseRequest request) {
-        try {
-            if (request.getEventId() == null || request.getUserName() == null || 
-                request.getUserEmail() == null || request.getQuantity() == null) {
-                return ResponseEntity.badRequest()
-                        .body(createErrorResponse("Missing required fields"));
+    public ResponseEntity<?> purchaseTicket(@RequestBody TicketPurchaseRequest request,
+                                            @RequestHeader(value = "X-Admission-Token", required = false) String admissionToken,
+                                            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        // Before the key is claimed: a request that is invalid or not admitted costs no database work
+        ResponseEntity<?> rejected = checkPurchaseRequest(request, admissionToken);
+        if (rejected != null) {
+            return rejected;
+        }
+        if (idempotencyKey == null) {
+            try {
+                return doPurchaseTicket(request);
+            } catch (PendingResponseException e) {
+                return e.getInterimResponse();
             }
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > IdempotencyService.MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Idempotency-Key must be 1 to " +
+                            IdempotencyService.MAX_KEY_LENGTH + " characters"));
+        }
+        return idempotencyService.execute(idempotencyKey, purchaseFingerprint(request),
+                () -> doPurchaseTicket(request));
+    }
 
-            if (request.getQuantity() <= 0) {
-                return ResponseEntity.badRequest()
-                        .body(createErrorResponse("Quantity must be greater than 0"));
-            }
+    private ResponseEntity<?> doPurchaseTicket(TicketPurchaseRequest request) {
+        try {
+            Ticket ticket = ticketService.purchaseTicket(
+                    request.getEventId(),
+                    request.getUserName(),
+                    request.getUserEmail(),
+                    request.getPhoneNumber(),
+                    request.getQuantity()
+            );
 
-            if (!EmailValidator.getInstance().isValid(request.getUserEmail())) {
-                return ResponseEntity.badRequest()
-                        .body(createErrorResponse("Invalid email format. Please enter a valid email address."));
-            }
+            return ResponseEntity.status(HttpStatus.CREATED).body(createPurchaseResponse(ticket));
 
-            Ticket ticket = ticketService.purchaseTicket(
+        } catch (PurchasePendingException e) {
+            // Not an outcome yet: IdempotencyService keeps the key until the purchase finishes
+            CompletableFuture<ResponseEntity<?>> outcome = e.getPurchase().handle(this::purchaseOutcome);
+            throw new PendingResponseException(
+                    ResponseEntity.status(HttpStatus.ACCEPTED).body(createErrorResponse(e.getMessage())), outcome);
+        } catch (RuntimeException e) {
+            return purchaseFailed(e);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("An error occurred while processing your request"));
+        }
+    }
+
+    private ResponseEntity<?> purchaseOutcome(Ticket ticket, Throwable failure) {
+        if (failure == null) {
+            return ResponseEntity.status(HttpStatus.CREATED).body(createPurchaseResponse(ticket));
+        }
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause() : failure;
+        if (cause instanceof RuntimeException) {
+            return purchaseFailed((RuntimeException) cause);
+        }
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(createErrorResponse("An error occurred while processing your request"));
+    }
+
+    /**
+     * Contention and database trouble are not the purchase's answer, so they are reported as
+     * 503 (never stored against an Idempotency-Key); anything else is a final 400
+     */
+    private ResponseEntity<?> purchaseFailed(RuntimeException e) {
+        if (e instanceof TemporaryFailureException || e instanceof DataAccessException) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", "1")
+                    .body(createErrorResponse(e instanceof TemporaryFailureException ? e.getMessage()
+                            : "The system is busy processing other requests. Please try again."));
+        }
+        return ResponseEntity.badRequest()
+                .body(createErrorResponse(e.getMessage()));
+    }
+
+    /**
+     * POST /api/ticket/hold - Hold tickets while the buyer pays
+     * Request Body and X-Admission-Token header: same as purchase
+     * Returns: 201 CREATED with holdId and expiresAt, 400 BAD REQUEST on error,
+     *          501 NOT IMPLEMENTED with the database inventory strategy, which has no holds
+     */
+    @PostMapping("/hold")
+    public ResponseEntity<?> holdTickets(@RequestBody TicketPurchaseRequest request,
+                                         @RequestHeader(value = "X-Admission-Token", required = false) String admissionToken) {
+        if (!seatHoldService.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED)
+                    .body(createErrorResponse("Seat holds are not available; purchase the tickets directly"));
+        }
+        ResponseEntity<?> rejected = checkPurchaseRequest(request, admissionToken);
+        if (rejected != null) {
+            return rejected;
+        }
+        try {
+            SeatHoldService.SeatHold hold = seatHoldService.createHold(
                     request.getEventId(),
                     request.getUserName(),
                     request.getUserEmail(),
@@ -61,24 +167,45 @@ public class TicketController {
 
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("message", "Ticket purchased successfully");
-            response.put("ticketCode", ticket.getTicketCode());
-            response.put("ticketId", ticket.getId());
-            response.put("quantity", ticket.getQuantity());
-            response.put("totalPrice", ticket.getTotalPrice());
-            response.put("purchaseDate", ticket.getPurchaseDate());
-            response.put("eventName", ticket.getEvent().getName());
-            response.put("eventDate", ticket.getEvent().getEventDate());
-            response.put("eventLocation", ticket.getEvent().getLocation());
+            response.put("holdId", hold.getHoldId());
+            response.put("eventId", hold.getEvent().getId());
+            response.put("quantity", hold.getQuantity());
+            response.put("expiresAt", hold.getExpiresAt());
 
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
 
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest()
                     .body(createErrorResponse(e.getMessage()));
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(createErrorResponse("An error occurred while processing your request"));
+        }
+    }
+
+    /**
+     * POST /api/ticket/hold/{holdId}/confirm - Turn a hold into a ticket
+     * Returns: 201 CREATED with ticket details, 404 NOT FOUND if the hold expired
+     */
+    @PostMapping("/hold/{holdId}/confirm")
+    public ResponseEntity<?> confirmHold(@PathVariable String holdId) {
+        try {
+            Ticket ticket = seatHoldService.confirmHold(holdId);
+            return ResponseEntity.status(HttpStatus.CREATED).body(createPurchaseResponse(ticket));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * DELETE /api/ticket/hold/{holdId} - Release a hold early
+     */
+    @DeleteMapping("/hold/{holdId}")
+    public ResponseEntity<?> releaseHold(@PathVariable String holdId) {
+        try {
+            seatHoldService.releaseHold(holdId);
+            return ResponseEntity.ok(Map.of("success", true, "message", "Hold released"));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(createErrorResponse(e.getMessage()));
         }
     }
 
@@ -96,6 +223,9 @@ public class TicketController {
             response.put("quantity", ticket.getQuantity());
             response.put("totalPrice", ticket.getTotalPrice());
             response.put("status", ticket.getStatus());
+            if (ticket.getStatus() != Ticket.TicketStatus.CANCELLED) {
+                response.put("ticketToken", ticketTokenService.issueToken(ticket));
+            }
             response.put("purchaseDate", ticket.getPurchaseDate());
             response.put("eventName", ticket.getEvent().getName());
             response.put("eventDate", ticket.getEvent().getEventDate());
@@ -108,6 +238,89 @@ public class TicketController {
         }
     }
 
+    /**
+     * POST /api/ticket/verify-token - Check a signed ticket token (e.g. scanned from a QR code)
+     * Request Body: {ticketToken}
+     * Returns: 200 OK with ticketId, eventId, quantity and status for an ACTIVE ticket,
+     *          400 BAD REQUEST if forged or malformed,
+     *          409 CONFLICT if the ticket was cancelled (revoked) or has already been scanned in (used)
+     */
+    @PostMapping("/verify-token")
+    public ResponseEntity<?> verifyTicketToken(@RequestBody Map<String, String> request) {
+        TicketTokenService.VerifiedTicket verified = ticketTokenService.verify(request.get("ticketToken"));
+        if (verified == null) {
+            return ResponseEntity.badRequest().body(createErrorResponse("Invalid ticket token"));
+        }
+        boolean valid = verified.getStatus() == Ticket.TicketStatus.ACTIVE;
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", valid);
+        response.put("ticketId", verified.getTicketId());
+        response.put("eventId", verified.getEventId());
+        response.put("quantity", verified.getQuantity());
+        response.put("status", verified.getStatus());
+        response.put("revoked", verified.isRevoked());
+        response.put("used", verified.isUsed());
+        response.put("gateChecked", verified.isGateChecked());
+        return ResponseEntity.status(valid ? HttpStatus.OK : HttpStatus.CONFLICT).body(response);
+    }
+
+    /**
+     * Validation and the waiting room gate, both without database work
+     * @return the rejection to send, or null if the request may go ahead
+     */
+    private ResponseEntity<?> checkPurchaseRequest(TicketPurchaseRequest request, String admissionToken) {
+        String validationError = validatePurchaseRequest(request);
+        if (validationError != null) {
+            return ResponseEntity.badRequest()
+                    .body(createErrorResponse(validationError));
+        }
+        if (!waitingRoomService.isAdmitted(request.getEventId(), admissionToken, request.getUserEmail())) {
+            return admissionRequired();
+        }
+        return null;
+    }
+
+    private String validatePurchaseRequest(TicketPurchaseRequest request) {
+        if (request.getEventId() == null || request.getUserName() == null || 
+            request.getUserEmail() == null || request.getQuantity() == null) {
+            return "Missing required fields";
+        }
+
+        if (request.getQuantity() <= 0) {
+            return "Quantity must be greater than 0";
+        }
+
+        if (!EmailValidator.getInstance().isValid(request.getUserEmail())) {
+            return "Invalid email format. Please enter a valid email address.";
+        }
+        return null;
+    }
+
+    private String purchaseFingerprint(TicketPurchaseRequest request) {
+        return request.getEventId() + "|" + request.getUserEmail() + "|" + request.getQuantity();
+    }
+
+    private ResponseEntity<?> admissionRequired() {
+        return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(createErrorResponse("This event is on sale through the waiting room. Please join the queue first."));
+    }
+
+    private Map<String, Object> createPurchaseResponse(Ticket ticket) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", "Ticket purchased successfully");
+        response.put("ticketCode", ticket.getTicketCode());
+        response.put("ticketId", ticket.getId());
+        response.put("ticketToken", ticketTokenService.issueToken(ticket));
+        response.put("quantity", ticket.getQuantity());
+        response.put("totalPrice", ticket.getTotalPrice());
+        response.put("purchaseDate", ticket.getPurchaseDate());
+        response.put("eventName", ticket.getEvent().getName());
+        response.put("eventDate", ticket.getEvent().getEventDate());
+        response.put("eventLocation", ticket.getEvent().getLocation());
+        return response;
+    }
+
     private Map<String, Object> createErrorResponse(String message) {
         Map<String, Object> error = new HashMap<>();
         error.put("success", false);
@@ -0,0 +1,73 @@
+package com.codestars.ticketing.controller;
+
+import com.codestars.ticketing.service.WaitingRoomService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Waiting Room Controller - Queue endpoints for high-demand on-sales
+ * Buyers join, poll their status, and receive an admission token for the ticket endpoints
+ */
+@RestController
+@RequestMapping("/api/waiting-room")
+@CrossOrigin(origins = {"http://localhost:3000", "http://localhost:3001"})
+public class WaitingRoomController {
+
+    private final WaitingRoomService waitingRoomService;
+
+    @Autowired
+    public WaitingRoomController(WaitingRoomService waitingRoomService) {
+        this.waitingRoomService = waitingRoomService;
+    }
+
+    /**
+     * POST /api/waiting-room/{eventId}/join - Take a place in the queue
+     * Returns: 200 OK with position and a signed queueToken
+     */
+    @PostMapping("/{eventId}/join")
+    public ResponseEntity<?> join(@PathVariable Long eventId) {
+        try {
+            return ResponseEntity.ok(waitingRoomService.join(eventId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * GET /api/waiting-room/{eventId}/status - Check queue position
+     * Header: X-Queue-Token
+     * Returns: 200 OK, including an admissionToken once admitted
+     */
+    @GetMapping("/{eventId}/status")
+    public ResponseEntity<?> status(@PathVariable Long eventId,
+                                    @RequestHeader("X-Queue-Token") String queueToken) {
+        try {
+            return ResponseEntity.ok(waitingRoomService.status(eventId, queueToken));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * GET /api/waiting-room/{eventId}/stats - Queue length and admit rate
+     */
+    @GetMapping("/{eventId}/stats")
+    public ResponseEntity<?> stats(@PathVariable Long eventId) {
+        try {
+            return ResponseEntity.ok(waitingRoomService.getStats(eventId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    private Map<String, Object> createErrorResponse(String message) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("success", false);
+        error.put("error", message);
+        return error;
+    }
+}
@@ -1,5 +1,6 @@
 package com.codestars.ticketing.model;
 
+import com.codestars.ticketing.service.EventCatalogListener;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import javax.persistence.*;
@@ -15,7 +16,11 @@ import java.util.List;
  * Demonstrates JPA Entity mapping and One-to-Many relationship
  */
 @Entity
-@Table(name = "events")
+@Table(name = "events", indexes = {
+        @Index(name = "idx_events_date_id", columnList = "eventDate, id"),
+        @Index(name = "idx_events_price_id", columnList = "priceKES, id")
+})
+@EntityListeners(EventCatalogListener.class)
 public class Event {
 
     @Id
@@ -42,11 +47,15 @@ public class Event {
     @Column(nullable = false)
     private Double priceKES;
 
+    // Only changed through EventRepository's single-statement updates, never by saving the entity,
+    // so a stale Event instance cannot overwrite the live count. setAvailableTickets only has an
+    // effect before the event is first saved; change stock with InventoryService.changeCapacity
     @NotNull(message = "Available tickets is required")
-    @Column(nullable = false)
+    @Column(nullable = false, updatable = false)
     private Integer availableTickets;
 
-    @Column(nullable = false)
+    // Moves together with availableTickets, through InventoryService.changeCapacity only
+    @Column(nullable = false, updatable = false)
     private Integer totalTickets;
 
     private String category;
@@ -56,6 +65,10 @@ public class Event {
 
     private String imageUrl;
 
+    // High-demand events are gated by the waiting room before purchase
+    @Column(nullable = false)
+    private Boolean highDemand = false;
+
     @OneToMany(mappedBy = "event", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonIgnore
     private List<Ticket> tickets = new ArrayList<>();
@@ -156,6 +169,20 @@ public class Event {
         this.imageUrl = imageUrl;
     }
 
+    public Boolean getHighDemand() {
+        return highDemand;
+    }
+
+    public void setHighDemand(Boolean highDemand) {
+        this.highDemand = highDemand;
+    }
+
+    // Bumped on every edit to the event's own fields; not by availability changes
+    @JsonIgnore
+    public Long getVersion() {
+        return version;
+    }
+
     public List<Ticket> getTickets() {
         return tickets;
     }
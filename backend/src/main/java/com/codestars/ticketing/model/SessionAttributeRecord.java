@@ -0,0 +1,83 @@
+package com.codestars.ticketing.model;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Session Attribute Record - One attribute of a jdbc-stored session, Java-serialized
+ *
+ * The rows go when their session's row is deleted, by the database's cascade, so expiry
+ * cleanup is a single DELETE on ticketing_session.
+ */
+@Entity
+@Table(name = "ticketing_session_attribute")
+@IdClass(SessionAttributeRecord.Key.class)
+public class SessionAttributeRecord {
+
+    @Id
+    @Column(name = "session_primary_id", length = 36)
+    private String sessionPrimaryId;
+
+    @Id
+    @Column(name = "attribute_name", length = 200)
+    private String attributeName;
+
+    @Lob
+    @Column(nullable = false)
+    private byte[] attributeBytes;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "session_primary_id", insertable = false, updatable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private SessionRecord session;
+
+    protected SessionAttributeRecord() {
+    }
+
+    public String getSessionPrimaryId() {
+        return sessionPrimaryId;
+    }
+
+    public String getAttributeName() {
+        return attributeName;
+    }
+
+    public byte[] getAttributeBytes() {
+        return attributeBytes;
+    }
+
+    public static class Key implements Serializable {
+        private String sessionPrimaryId;
+        private String attributeName;
+
+        public Key() {
+        }
+
+        public Key(String sessionPrimaryId, String attributeName) {
+            this.sessionPrimaryId = sessionPrimaryId;
+            this.attributeName = attributeName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return Objects.equals(sessionPrimaryId, key.sessionPrimaryId)
+                    && Objects.equals(attributeName, key.attributeName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sessionPrimaryId, attributeName);
+        }
+    }
+}
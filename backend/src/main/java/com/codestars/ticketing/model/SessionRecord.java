@@ -0,0 +1,64 @@
+package com.codestars.ticketing.model;
+
+import javax.persistence.*;
+
+/**
+ * Session Record - One HTTP session kept by the jdbc session store
+ *
+ * Mapped so the schema is created with the other tables; JdbcSessionStore reads and writes
+ * the rows itself with batched statements. primaryId never changes, sessionId does when
+ * the session id is rotated at login. Times are epoch millis.
+ */
+@Entity
+@Table(name = "ticketing_session", indexes = {
+        @Index(name = "idx_ticketing_session_id", columnList = "session_id", unique = true),
+        @Index(name = "idx_ticketing_session_expiry", columnList = "expiry_time")
+})
+public class SessionRecord {
+
+    @Id
+    @Column(name = "primary_id", length = 36)
+    private String primaryId;
+
+    @Column(name = "session_id", nullable = false, length = 36)
+    private String sessionId;
+
+    @Column(nullable = false)
+    private long creationTime;
+
+    @Column(nullable = false)
+    private long lastAccessTime;
+
+    @Column(nullable = false)
+    private int maxInactiveSeconds;
+
+    @Column(name = "expiry_time", nullable = false)
+    private long expiryTime;
+
+    protected SessionRecord() {
+    }
+
+    public String getPrimaryId() {
+        return primaryId;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    public long getLastAccessTime() {
+        return lastAccessTime;
+    }
+
+    public int getMaxInactiveSeconds() {
+        return maxInactiveSeconds;
+    }
+
+    public long getExpiryTime() {
+        return expiryTime;
+    }
+}
@@ -6,14 +6,16 @@ import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
 import java.time.LocalDateTime;
-import java.util.UUID;
 
 /**
  * Ticket Entity - Represents a purchased ticket
  * Demonstrates JPA Entity mapping and Many-to-One relationships
  */
 @Entity
-@Table(name = "tickets")
+@Table(name = "tickets", indexes = {
+        @Index(name = "idx_tickets_event_updated", columnList = "event_id, updatedAt"),
+        @Index(name = "idx_tickets_status_updated", columnList = "status, updatedAt")
+})
 public class Ticket {
 
     @Id
@@ -39,6 +41,10 @@ public class Ticket {
     @Column(nullable = false)
     private TicketStatus status;
 
+    // Last status change; gate snapshot deltas are built from it
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     @JsonIgnore
@@ -54,23 +60,25 @@ public class Ticket {
     }
 
     public Ticket() {
-        this.ticketCode = generateTicketCode();
         this.purchaseDate = LocalDateTime.now();
+        this.updatedAt = this.purchaseDate;
         this.status = TicketStatus.ACTIVE;
     }
 
-    public Ticket(User user, Event event, Integer quantity, Double totalPrice) {
+    @PreUpdate
+    void touch() {
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public Ticket(String ticketCode, User user, Event event, Integer quantity, Double totalPrice) {
         this();
+        this.ticketCode = ticketCode;
         this.user = user;
         this.event = event;
         this.quantity = quantity;
         this.totalPrice = totalPrice;
     }
 
-    private String generateTicketCode() {
-        return "TKT-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-    }
-
     public Long getId() {
         return id;
     }
@@ -119,6 +127,14 @@ public class Ticket {
         this.status = status;
     }
 
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
     public User getUser() {
         return user;
     }
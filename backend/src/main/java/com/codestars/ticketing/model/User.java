@@ -1,5 +1,7 @@
 package com.codestars.ticketing.model;
 
+import com.codestars.ticketing.security.UserAccountListener;
+
 import javax.persistence.*;
 import javax.validation.constraints.Email;
 import javax.validation.constraints.NotBlank;
@@ -13,6 +15,7 @@ import java.util.List;
  */
 @Entity
 @Table(name = "users")
+@EntityListeners(UserAccountListener.class)
 public class User {
 
     @Id
@@ -0,0 +1,49 @@
+package com.codestars.ticketing.repository;
+
+import com.codestars.ticketing.model.EmailOutboxMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Email Outbox Repository - Data Access Layer for queued emails
+ */
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutboxMessage, Long> {
+
+    @Query("SELECT m.id FROM EmailOutboxMessage m WHERE m.status = :status AND m.nextAttemptAt <= :now ORDER BY m.id")
+    List<Long> findDueIds(@Param("status") EmailOutboxMessage.Status status,
+                          @Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * Claim due messages for one worker; only rows still PENDING are taken, so
+     * concurrent pollers on other nodes never claim the same message
+     */
+    @Modifying
+    @Query("UPDATE EmailOutboxMessage m SET m.status = :sending, m.claimToken = :token, m.claimedAt = :now " +
+           "WHERE m.id IN :ids AND m.status = :pending")
+    int claim(@Param("ids") Collection<Long> ids, @Param("token") String token, @Param("now") LocalDateTime now,
+              @Param("pending") EmailOutboxMessage.Status pending,
+              @Param("sending") EmailOutboxMessage.Status sending);
+
+    List<EmailOutboxMessage> findByClaimToken(String claimToken);
+
+    /**
+     * Return messages claimed by a worker that never finished (e.g. the node stopped)
+     */
+    @Modifying
+    @Query("UPDATE EmailOutboxMessage m SET m.status = :pending, m.claimToken = NULL " +
+           "WHERE m.status = :sending AND m.claimedAt < :cutoff")
+    int releaseStaleClaims(@Param("cutoff") LocalDateTime cutoff,
+                           @Param("pending") EmailOutboxMessage.Status pending,
+                           @Param("sending") EmailOutboxMessage.Status sending);
+
+    long countByStatus(EmailOutboxMessage.Status status);
+}
@@ -1,7 +1,11 @@
 package com.codestars.ticketing.repository;
 
 import com.codestars.ticketing.model.Event;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -13,7 +17,7 @@ import java.util.List;
  */
 @Repository
 public interface EventRepository extends JpaRepository<Event, Long> {
-    
+
     List<Event> findByLocation(String location);
     
     List<Event> findByCategory(String category);
@@ -31,4 +35,92 @@ public interface EventRepository extends JpaRepository<Event, Long> {
     List<Event> findByLocationContainingIgnoreCase(String location);
     
     List<Event> findByEventDateBetween(LocalDateTime start, LocalDateTime end);
+
+    List<Event> findByHighDemandTrue();
+
+    /**
+     * Apply an inventory delta in a single statement (no entity load, no version check).
+     * A negative quantity returns tickets to the pool.
+     */
+    @Modifying
+    @Query("UPDATE Event e SET e.availableTickets = e.availableTickets - :quantity WHERE e.id = :eventId")
+    int deductAvailableTickets(@Param("eventId") Long eventId, @Param("quantity") int quantity);
+
+    /**
+     * Guarded decrement - only succeeds if enough tickets are left.
+     * @return 1 if the tickets were taken, 0 if the event is missing or sold out
+     */
+    @Modifying
+    @Query("UPDATE Event e SET e.availableTickets = e.availableTickets - :quantity " +
+           "WHERE e.id = :eventId AND e.availableTickets >= :quantity")
+    int reserveTickets(@Param("eventId") Long eventId, @Param("quantity") int quantity);
+
+    /**
+     * Guarded increment - never raises availability above the event's capacity.
+     * @return 1 if the tickets were returned, 0 otherwise
+     */
+    @Modifying
+    @Query("UPDATE Event e SET e.availableTickets = e.availableTickets + :quantity " +
+           "WHERE e.id = :eventId AND e.availableTickets + :quantity <= e.totalTickets")
+    int releaseTickets(@Param("eventId") Long eventId, @Param("quantity") int quantity);
+
+    /**
+     * Guarded capacity change - moves totalTickets and availableTickets by the same amount,
+     * only while totalTickets is still what the caller read and enough tickets are unsold.
+     * @return 1 if the capacity was changed, 0 otherwise
+     */
+    @Modifying
+    @Query("UPDATE Event e SET e.totalTickets = e.totalTickets + :delta, " +
+           "e.availableTickets = e.availableTickets + :delta " +
+           "WHERE e.id = :eventId AND e.totalTickets = :currentTotal AND e.availableTickets + :delta >= 0")
+    int resizeTickets(@Param("eventId") Long eventId, @Param("currentTotal") int currentTotal,
+                      @Param("delta") int delta);
+
+    /**
+     * Capacity change for the in-memory strategy, where the counter has already been checked
+     * and availableTickets is brought along by the next write-back.
+     * @return 1 if the capacity was changed, 0 if totalTickets is no longer currentTotal
+     */
+    @Modifying
+    @Query("UPDATE Event e SET e.totalTickets = e.totalTickets + :delta " +
+           "WHERE e.id = :eventId AND e.totalTickets = :currentTotal")
+    int resizeTotalTickets(@Param("eventId") Long eventId, @Param("currentTotal") int currentTotal,
+                           @Param("delta") int delta);
+
+    @Query("SELECT e.availableTickets FROM Event e WHERE e.id = :eventId")
+    Integer findAvailableTicketsById(@Param("eventId") Long eventId);
+
+    /*
+     * Keyset pages: each query continues after the last (sort key, id) of the previous page,
+     * so a page costs the same index range scan no matter how deep it is. Pass a Pageable
+     * with page 0 and the page size; no count query is run.
+     */
+
+    @Query("SELECT e FROM Event e ORDER BY e.eventDate ASC, e.id ASC")
+    List<Event> findPageByDate(Pageable pageable);
+
+    @Query("SELECT e FROM Event e WHERE e.eventDate > :date OR (e.eventDate = :date AND e.id > :id) " +
+           "ORDER BY e.eventDate ASC, e.id ASC")
+    List<Event> findPageByDateAfter(@Param("date") LocalDateTime date, @Param("id") Long id, Pageable pageable);
+
+    @Query("SELECT e FROM Event e ORDER BY e.eventDate DESC, e.id DESC")
+    List<Event> findPageByDateDesc(Pageable pageable);
+
+    @Query("SELECT e FROM Event e WHERE e.eventDate < :date OR (e.eventDate = :date AND e.id < :id) " +
+           "ORDER BY e.eventDate DESC, e.id DESC")
+    List<Event> findPageByDateDescAfter(@Param("date") LocalDateTime date, @Param("id") Long id, Pageable pageable);
+
+    @Query("SELECT e FROM Event e ORDER BY e.priceKES ASC, e.id ASC")
+    List<Event> findPageByPrice(Pageable pageable);
+
+    @Query("SELECT e FROM Event e WHERE e.priceKES > :price OR (e.priceKES = :price AND e.id > :id) " +
+           "ORDER BY e.priceKES ASC, e.id ASC")
+    List<Event> findPageByPriceAfter(@Param("price") Double price, @Param("id") Long id, Pageable pageable);
+
+    @Query("SELECT e FROM Event e ORDER BY e.priceKES DESC, e.id DESC")
+    List<Event> findPageByPriceDesc(Pageable pageable);
+
+    @Query("SELECT e FROM Event e WHERE e.priceKES < :price OR (e.priceKES = :price AND e.id < :id) " +
+           "ORDER BY e.priceKES DESC, e.id DESC")
+    List<Event> findPageByPriceDescAfter(@Param("price") Double price, @Param("id") Long id, Pageable pageable);
 }
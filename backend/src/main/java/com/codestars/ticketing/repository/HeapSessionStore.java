@@ -0,0 +1,77 @@
+package com.codestars.ticketing.repository;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.session.MapSession;
+import org.springframework.session.MapSessionRepository;
+import org.springframework.session.Session;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Heap Session Store - Sessions as objects on this node's heap, like the servlet
+ * container kept them; lost on restart and not visible to other nodes
+ */
+public class HeapSessionStore implements SessionStore<MapSession> {
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final MapSessionRepository delegate;
+    private final SessionStoreStats stats = new SessionStoreStats();
+
+    public HeapSessionStore(Duration maxInactiveInterval) {
+        this.delegate = new MapSessionRepository(sessions);
+        this.delegate.setDefaultMaxInactiveInterval((int) maxInactiveInterval.getSeconds());
+    }
+
+    @Override
+    public MapSession createSession() {
+        return delegate.createSession();
+    }
+
+    @Override
+    public void save(MapSession session) {
+        long started = System.nanoTime();
+        delegate.save(session);
+        stats.recordWrite(started);
+    }
+
+    @Override
+    public MapSession findById(String id) {
+        long started = System.nanoTime();
+        MapSession session = delegate.findById(id);
+        stats.recordRead(started);
+        return session;
+    }
+
+    @Override
+    public void deleteById(String id) {
+        delegate.deleteById(id);
+        stats.recordDelete();
+    }
+
+    // MapSessionRepository only drops an expired session when it is looked up again
+    @Override
+    @Scheduled(fixedDelayString = "${ticketing.session.cleanup-interval-ms:60000}")
+    public void removeExpired() {
+        long removed = 0;
+        for (Iterator<Session> it = sessions.values().iterator(); it.hasNext(); ) {
+            if (it.next().isExpired()) {
+                it.remove();
+                removed++;
+            }
+        }
+        stats.recordExpired(removed);
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("store", "memory");
+        result.put("sessions", sessions.size());
+        stats.putInto(result);
+        return result;
+    }
+}
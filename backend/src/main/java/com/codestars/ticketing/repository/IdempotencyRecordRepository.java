@@ -0,0 +1,58 @@
+package com.codestars.ticketing.repository;
+
+import com.codestars.ticketing.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Idempotency Record Repository - Data Access Layer for stored request outcomes
+ */
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    /**
+     * Claim a key with a row that has no outcome yet. A plain INSERT, so the primary key
+     * decides between concurrent claims on any number of nodes: the loser gets a
+     * DataIntegrityViolationException.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_records (idempotency_key, request_fingerprint, created_at) " +
+                   "VALUES (:key, :fingerprint, :createdAt)", nativeQuery = true)
+    int insertClaim(@Param("key") String key, @Param("fingerprint") String fingerprint,
+                    @Param("createdAt") LocalDateTime createdAt);
+
+    /**
+     * Record the outcome on a claimed key
+     */
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.statusCode = :statusCode, r.responseBody = :responseBody " +
+           "WHERE r.key = :key AND r.statusCode IS NULL")
+    int completeClaim(@Param("key") String key, @Param("statusCode") int statusCode,
+                      @Param("responseBody") String responseBody);
+
+    /**
+     * Give a key back after a response that must not be replayed
+     */
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.key = :key AND r.statusCode IS NULL")
+    int releaseClaim(@Param("key") String key);
+
+    /**
+     * Remove a key's row if it has expired, or is a claim abandoned before its outcome was
+     * recorded (e.g. the node running it stopped), so the key can be claimed again
+     */
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.key = :key AND (r.createdAt < :expiredBefore " +
+           "OR (r.statusCode IS NULL AND r.createdAt < :abandonedBefore))")
+    int deleteStale(@Param("key") String key, @Param("expiredBefore") LocalDateTime expiredBefore,
+                    @Param("abandonedBefore") LocalDateTime abandonedBefore);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
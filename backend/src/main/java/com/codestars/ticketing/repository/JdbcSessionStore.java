@@ -0,0 +1,577 @@
+package com.codestars.ticketing.repository;
+
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.session.Session;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * JDBC Session Store - Sessions in the database, shared by every node that uses it
+ *
+ * Sessions are rows in ticketing_session, keyed by an internal primary id so that the
+ * session id can change, with one ticketing_session_attribute row per attribute holding
+ * its Java-serialized value. The tables are mapped by SessionRecord and SessionAttributeRecord
+ * and created with the rest of the schema.
+ *
+ * Writes are behind: save() only serializes what changed and merges it into the pending
+ * changes for that session, and a flush every ticketing.session.jdbc.flush-interval-ms
+ * writes all pending sessions in one transaction of batched statements. The last-access
+ * update that every request makes therefore costs one row write per session per flush,
+ * not one per request. Reads on this node see pending changes; other nodes see them after
+ * the flush, so a client that moves between nodes within the flush interval may briefly
+ * see its previous state. Once ticketing.session.jdbc.max-pending sessions are waiting,
+ * save() flushes on the calling thread; so does a save that changed the session id, so the
+ * old id stops working at once.
+ *
+ * When the batch fails, each session is retried in its own transaction, so one bad row (an
+ * attribute name too long for its column, say) does not hold back the others. A session whose
+ * changes fail MAX_WRITE_ATTEMPTS times on their own is dropped from the pending changes and
+ * counted; a failure that looks like the database being unavailable stops the retries and
+ * counts against no session.
+ *
+ * Flushes and expiry cleanup run on the store's own thread, not on Spring's shared scheduler,
+ * so a slow flush does not hold up other scheduled jobs and they cannot delay a flush.
+ *
+ * Attributes are loaded lazily: findById reads only the session row, the attribute rows
+ * are read when the first attribute is asked for, and each value is deserialized on its
+ * first get. A request that only touches the session's timestamps never reads them.
+ */
+public class JdbcSessionStore implements SessionStore<JdbcSessionStore.JdbcSession> {
+
+    // Failed flushes a session's changes may be part of before they are given up
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+
+    private static final String SELECT_BY_SESSION_ID = "SELECT primary_id, session_id, creation_time, last_access_time, "
+            + "max_inactive_seconds FROM ticketing_session WHERE session_id = ?";
+    private static final String SELECT_BY_PRIMARY_ID = "SELECT primary_id, session_id, creation_time, last_access_time, "
+            + "max_inactive_seconds FROM ticketing_session WHERE primary_id = ?";
+    private static final String SELECT_ATTRIBUTES = "SELECT attribute_name, attribute_bytes "
+            + "FROM ticketing_session_attribute WHERE session_primary_id = ?";
+    private static final String UPDATE_SESSION = "UPDATE ticketing_session SET session_id = ?, last_access_time = ?, "
+            + "max_inactive_seconds = ?, expiry_time = ? WHERE primary_id = ?";
+    private static final String INSERT_SESSION = "INSERT INTO ticketing_session (session_id, last_access_time, "
+            + "max_inactive_seconds, expiry_time, primary_id, creation_time) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_ATTRIBUTE = "UPDATE ticketing_session_attribute SET attribute_bytes = ? "
+            + "WHERE session_primary_id = ? AND attribute_name = ?";
+    private static final String INSERT_ATTRIBUTE = "INSERT INTO ticketing_session_attribute "
+            + "(attribute_bytes, session_primary_id, attribute_name) VALUES (?, ?, ?)";
+    private static final String DELETE_ATTRIBUTE = "DELETE FROM ticketing_session_attribute "
+            + "WHERE session_primary_id = ? AND attribute_name = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration maxInactiveInterval;
+    private final int maxPending;
+    private final SerializingConverter serializer = new SerializingConverter();
+
+    // Session id -> changes saved on this node and not yet written
+    private final Map<String, Delta> pending = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService flusher;
+
+    // Metrics
+    private final SessionStoreStats stats = new SessionStoreStats();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong sessionsFlushed = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private final AtomicLong sessionsDropped = new AtomicLong();
+    private final AtomicLong lastFlushMicros = new AtomicLong();
+    private final AtomicLong attributeLoads = new AtomicLong();
+
+    public JdbcSessionStore(JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            Duration maxInactiveInterval,
+                            int maxPending,
+                            long flushIntervalMs,
+                            long cleanupIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxInactiveInterval = maxInactiveInterval;
+        this.maxPending = Math.max(1, maxPending);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(() -> runLogged("flush", this::flush),
+                flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        flusher.scheduleWithFixedDelay(() -> runLogged("cleanup", this::removeExpired),
+                cleanupIntervalMs, cleanupIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public JdbcSession createSession() {
+        Instant now = Instant.now();
+        return new JdbcSession(UUID.randomUUID().toString(), UUID.randomUUID().toString(), true,
+                now, now, maxInactiveInterval, Collections::emptyMap);
+    }
+
+    @Override
+    public void save(JdbcSession session) {
+        long started = System.nanoTime();
+        Delta delta = session.drainChanges(serializer);
+        boolean idChanged = delta.previousSessionId != null;
+        if (idChanged) {
+            Delta earlier = pending.remove(delta.previousSessionId);
+            if (earlier != null) {
+                delta = earlier.then(delta);
+            }
+        }
+        pending.merge(delta.sessionId, delta, Delta::then);
+        if (idChanged || pending.size() >= maxPending) {
+            flush();
+        }
+        stats.recordWrite(started);
+    }
+
+    @Override
+    public JdbcSession findById(String id) {
+        long started = System.nanoTime();
+        try {
+            JdbcSession session = load(id);
+            if (session != null && session.isExpired()) {
+                deleteById(id);
+                return null;
+            }
+            return session;
+        } finally {
+            stats.recordRead(started);
+        }
+    }
+
+    @Override
+    public void deleteById(String id) {
+        synchronized (flushLock) {
+            Delta unflushed = pending.remove(id);
+            if (unflushed != null) {
+                jdbcTemplate.update("DELETE FROM ticketing_session WHERE primary_id = ?", unflushed.primaryId);
+            }
+            jdbcTemplate.update("DELETE FROM ticketing_session WHERE session_id = ?", id);
+        }
+        stats.recordDelete();
+    }
+
+    /**
+     * Write every pending session in one transaction, or each on its own if that fails;
+     * sessions not written stay pending for the next flush
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            long started = System.nanoTime();
+            Map<String, Delta> batch = new HashMap<>(pending);
+            int written;
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(batch.values()));
+                // Changes merged in while writing replaced the entry and are written next time
+                batch.forEach(pending::remove);
+                written = batch.size();
+            } catch (DataAccessException e) {
+                flushFailures.incrementAndGet();
+                System.err.println("Session flush failed, writing sessions one by one: " + e.getMessage());
+                written = writeEach(batch);
+            }
+            flushes.incrementAndGet();
+            sessionsFlushed.addAndGet(written);
+            lastFlushMicros.set((System.nanoTime() - started) / 1000);
+        }
+    }
+
+    /**
+     * Write each session in its own transaction after a failed batch
+     * @return how many were written
+     */
+    private int writeEach(Map<String, Delta> batch) {
+        int written = 0;
+        for (Map.Entry<String, Delta> entry : batch.entrySet()) {
+            Delta delta = entry.getValue();
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(Collections.singletonList(delta)));
+                pending.remove(entry.getKey(), delta);
+                written++;
+            } catch (DataAccessException e) {
+                if (isUnavailable(e)) {
+                    // Not this session's fault; everything left waits for the next flush
+                    return written;
+                }
+                if (delta.failures.incrementAndGet() >= MAX_WRITE_ATTEMPTS
+                        && pending.remove(entry.getKey(), delta)) {
+                    sessionsDropped.incrementAndGet();
+                    System.err.println("Dropped unwritable changes to session " + delta.primaryId
+                            + " after " + MAX_WRITE_ATTEMPTS + " attempts: " + e.getMessage());
+                }
+            }
+        }
+        return written;
+    }
+
+    private static boolean isUnavailable(DataAccessException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException;
+    }
+
+    @Override
+    public void removeExpired() {
+        // Pending last-access times may keep a session alive
+        flush();
+        int removed = jdbcTemplate.update("DELETE FROM ticketing_session WHERE expiry_time < ?", System.currentTimeMillis());
+        stats.recordExpired(removed);
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("store", "jdbc");
+        result.put("sessions", jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ticketing_session", Long.class));
+        result.put("pendingSessions", pending.size());
+        stats.putInto(result);
+        result.put("flushes", flushes.get());
+        result.put("sessionsFlushed", sessionsFlushed.get());
+        result.put("flushFailures", flushFailures.get());
+        result.put("sessionsDropped", sessionsDropped.get());
+        result.put("lastFlushMicros", lastFlushMicros.get());
+        result.put("attributeLoads", attributeLoads.get());
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    // A task that throws would never run again
+    private static void runLogged(String task, Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            System.err.println("Session " + task + " failed: " + e.getMessage());
+        }
+    }
+
+    private JdbcSession load(String id) {
+        Delta unflushed = pending.get(id);
+        if (unflushed != null && unflushed.isNew) {
+            // Not written yet, or rewritten in full on the next flush: the delta is the whole session
+            Map<String, byte[]> attributes = new HashMap<>(unflushed.attributes);
+            attributes.values().removeIf(value -> value == null);
+            return new JdbcSession(unflushed.primaryId, unflushed.sessionId, false,
+                    Instant.ofEpochMilli(unflushed.creationTime), Instant.ofEpochMilli(unflushed.lastAccessTime),
+                    Duration.ofSeconds(unflushed.maxInactiveSeconds), () -> attributes);
+        }
+
+        List<JdbcSession> rows = unflushed != null
+                ? jdbcTemplate.query(SELECT_BY_PRIMARY_ID, (rs, n) -> mapSession(rs.getString(1), rs.getLong(3),
+                        rs.getLong(4), rs.getInt(5), unflushed), unflushed.primaryId)
+                : jdbcTemplate.query(SELECT_BY_SESSION_ID, (rs, n) -> mapSession(rs.getString(1), rs.getLong(3),
+                        rs.getLong(4), rs.getInt(5), null), id);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        JdbcSession session = rows.get(0);
+        session.id = id;
+        return session;
+    }
+
+    private JdbcSession mapSession(String primaryId, long creationTime, long lastAccessTime, int maxInactiveSeconds,
+                                   Delta unflushed) {
+        Supplier<Map<String, byte[]>> attributes = () -> {
+            attributeLoads.incrementAndGet();
+            Map<String, byte[]> loaded = new HashMap<>();
+            jdbcTemplate.query(SELECT_ATTRIBUTES, rs -> {
+                loaded.put(rs.getString(1), rs.getBytes(2));
+            }, primaryId);
+            if (unflushed != null) {
+                unflushed.attributes.forEach((name, value) -> {
+                    if (value == null) {
+                        loaded.remove(name);
+                    } else {
+                        loaded.put(name, value);
+                    }
+                });
+            }
+            return loaded;
+        };
+        if (unflushed != null) {
+            lastAccessTime = unflushed.lastAccessTime;
+            maxInactiveSeconds = unflushed.maxInactiveSeconds;
+        }
+        return new JdbcSession(primaryId, null, false, Instant.ofEpochMilli(creationTime),
+                Instant.ofEpochMilli(lastAccessTime), Duration.ofSeconds(maxInactiveSeconds), attributes);
+    }
+
+    private void write(Iterable<Delta> deltas) {
+        List<Object[]> sessionRows = new ArrayList<>();
+        List<Object[]> attributeRows = new ArrayList<>();
+        List<Object[]> removedAttributes = new ArrayList<>();
+        for (Delta delta : deltas) {
+            sessionRows.add(new Object[]{delta.sessionId, delta.lastAccessTime, delta.maxInactiveSeconds,
+                    delta.expiryTime(), delta.primaryId, delta.creationTime});
+            delta.attributes.forEach((name, value) -> {
+                if (value == null) {
+                    removedAttributes.add(new Object[]{delta.primaryId, name});
+                } else {
+                    attributeRows.add(new Object[]{value, delta.primaryId, name});
+                }
+            });
+        }
+        // Update first and insert what was not there, so new, known and since-expired sessions take the same path
+        upsert(UPDATE_SESSION, INSERT_SESSION, sessionRows, 5);
+        upsert(UPDATE_ATTRIBUTE, INSERT_ATTRIBUTE, attributeRows, 3);
+        if (!removedAttributes.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_ATTRIBUTE, removedAttributes);
+        }
+    }
+
+    /**
+     * Run the update for every row and the insert for rows it did not match; the insert takes
+     * the update's parameters in the same order, plus any extra columns. A driver may report a
+     * batched statement as SUCCESS_NO_INFO, without its count; those rows are updated again one
+     * at a time to learn whether they matched.
+     */
+    private void upsert(String update, String insert, List<Object[]> rows, int updateParameters) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<Object[]> updates = new ArrayList<>(rows.size());
+        rows.forEach(row -> updates.add(Arrays.copyOf(row, updateParameters)));
+        int[] counts = jdbcTemplate.batchUpdate(update, updates);
+        List<Object[]> inserts = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            int count = counts[i];
+            if (count == Statement.SUCCESS_NO_INFO) {
+                count = jdbcTemplate.update(update, updates.get(i));
+            }
+            if (count <= 0) {
+                inserts.add(rows.get(i));
+            }
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(insert, inserts);
+        }
+    }
+
+    /**
+     * A session read from or created in the database; tracks what changed since it was loaded
+     */
+    public static final class JdbcSession implements Session {
+
+        private static final DeserializingConverter DESERIALIZER =
+                new DeserializingConverter(JdbcSessionStore.class.getClassLoader());
+
+        private final String primaryId;
+        private String id;
+        private String previousId;
+        private boolean isNew;
+        private final Instant creationTime;
+        private Instant lastAccessedTime;
+        private Duration maxInactiveInterval;
+
+        private final Supplier<Map<String, byte[]>> attributeLoader;
+        private Map<String, byte[]> storedAttributes;
+        // Values read or set through this instance; null for a removed attribute
+        private final Map<String, Object> values = new HashMap<>();
+        private final Set<String> changedAttributes = new HashSet<>();
+
+        private JdbcSession(String primaryId, String id, boolean isNew, Instant creationTime, Instant lastAccessedTime,
+                            Duration maxInactiveInterval, Supplier<Map<String, byte[]>> attributeLoader) {
+            this.primaryId = primaryId;
+            this.id = id;
+            this.isNew = isNew;
+            this.creationTime = creationTime;
+            this.lastAccessedTime = lastAccessedTime;
+            this.maxInactiveInterval = maxInactiveInterval;
+            this.attributeLoader = attributeLoader;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String changeSessionId() {
+            if (previousId == null) {
+                previousId = id;
+            }
+            id = UUID.randomUUID().toString();
+            return id;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T getAttribute(String name) {
+            if (values.containsKey(name)) {
+                return (T) values.get(name);
+            }
+            byte[] bytes = storedAttributes().get(name);
+            if (bytes == null) {
+                return null;
+            }
+            Object value = DESERIALIZER.convert(bytes);
+            values.put(name, value);
+            return (T) value;
+        }
+
+        @Override
+        public Set<String> getAttributeNames() {
+            Set<String> names = new HashSet<>(storedAttributes().keySet());
+            values.forEach((name, value) -> {
+                if (value == null) {
+                    names.remove(name);
+                } else {
+                    names.add(name);
+                }
+            });
+            return names;
+        }
+
+        @Override
+        public void setAttribute(String name, Object value) {
+            values.put(name, value);
+            changedAttributes.add(name);
+        }
+
+        @Override
+        public void removeAttribute(String name) {
+            setAttribute(name, null);
+        }
+
+        @Override
+        public Instant getCreationTime() {
+            return creationTime;
+        }
+
+        @Override
+        public void setLastAccessedTime(Instant lastAccessedTime) {
+            this.lastAccessedTime = lastAccessedTime;
+        }
+
+        @Override
+        public Instant getLastAccessedTime() {
+            return lastAccessedTime;
+        }
+
+        @Override
+        public void setMaxInactiveInterval(Duration interval) {
+            this.maxInactiveInterval = interval;
+        }
+
+        @Override
+        public Duration getMaxInactiveInterval() {
+            return maxInactiveInterval;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return !maxInactiveInterval.isNegative()
+                    && !Instant.now().isBefore(lastAccessedTime.plus(maxInactiveInterval));
+        }
+
+        private Map<String, byte[]> storedAttributes() {
+            if (storedAttributes == null) {
+                storedAttributes = attributeLoader.get();
+            }
+            return storedAttributes;
+        }
+
+        /**
+         * Everything to write for this save, serialized now; the session starts tracking afresh
+         */
+        private Delta drainChanges(SerializingConverter serializer) {
+            Map<String, byte[]> attributes = new HashMap<>();
+            if (isNew) {
+                // First write: every attribute goes out
+                for (String name : getAttributeNames()) {
+                    attributes.put(name, serializer.convert(getAttribute(name)));
+                }
+            } else {
+                for (String name : changedAttributes) {
+                    Object value = values.get(name);
+                    attributes.put(name, value != null ? serializer.convert(value) : null);
+                }
+            }
+            Delta delta = new Delta(primaryId, id, previousId, isNew, creationTime.toEpochMilli(),
+                    lastAccessedTime.toEpochMilli(), (int) maxInactiveInterval.getSeconds(), attributes,
+                    new AtomicInteger());
+            isNew = false;
+            previousId = null;
+            changedAttributes.clear();
+            return delta;
+        }
+    }
+
+    /**
+     * Changes to one session not yet written; attributes map to their serialized value, or
+     * null when removed
+     */
+    private static final class Delta {
+
+        private final String primaryId;
+        private final String sessionId;
+        private final String previousSessionId;
+        private final boolean isNew;
+        private final long creationTime;
+        private final long lastAccessTime;
+        private final int maxInactiveSeconds;
+        private final Map<String, byte[]> attributes;
+        // Failed attempts to write these changes on their own, carried into later merges
+        private final AtomicInteger failures;
+
+        private Delta(String primaryId, String sessionId, String previousSessionId, boolean isNew, long creationTime,
+                      long lastAccessTime, int maxInactiveSeconds, Map<String, byte[]> attributes,
+                      AtomicInteger failures) {
+            this.primaryId = primaryId;
+            this.sessionId = sessionId;
+            this.previousSessionId = previousSessionId;
+            this.isNew = isNew;
+            this.creationTime = creationTime;
+            this.lastAccessTime = lastAccessTime;
+            this.maxInactiveSeconds = maxInactiveSeconds;
+            this.attributes = attributes;
+            this.failures = failures;
+        }
+
+        private Delta then(Delta next) {
+            Map<String, byte[]> merged = new HashMap<>(attributes);
+            merged.putAll(next.attributes);
+            return new Delta(primaryId, next.sessionId, null, isNew || next.isNew, creationTime,
+                    next.lastAccessTime, next.maxInactiveSeconds, merged, failures);
+        }
+
+        private long expiryTime() {
+            return maxInactiveSeconds < 0 ? Long.MAX_VALUE : lastAccessTime + maxInactiveSeconds * 1000L;
+        }
+    }
+}
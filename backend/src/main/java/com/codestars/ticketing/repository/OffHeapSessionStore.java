@@ -0,0 +1,262 @@
+package com.codestars.ticketing.repository;
+
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.session.MapSession;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Off-Heap Session Store - Sessions serialized into direct buffers on this node
+ *
+ * Each session has one direct ByteBuffer, and a save encodes the whole session into it, so
+ * the garbage collector only sees one small buffer object per session, however many
+ * attributes it holds. Buffers are sized in powers of two and rewritten in place while the
+ * session still fits, so a save only allocates direct memory when a session outgrows its
+ * buffer. Reads and writes of one session take that session's lock; a read copies out only
+ * the attribute bytes it deserializes, outside the lock. Attribute values use Java
+ * serialization and must be Serializable. Sessions are still lost on restart and not
+ * visible to other nodes.
+ *
+ * Layout: creation, last access and max inactive seconds as longs at offsets 0, 8 and 16,
+ * so expiry can be checked without decoding; then the id, the attribute count and each
+ * attribute's name and serialized bytes.
+ */
+public class OffHeapSessionStore implements SessionStore<MapSession> {
+
+    private static final int LAST_ACCESS_OFFSET = 8;
+    private static final int MAX_INACTIVE_OFFSET = 16;
+    private static final int MIN_CAPACITY = 256;
+
+    private final Map<String, Slot> sessions = new ConcurrentHashMap<>();
+    private final Duration maxInactiveInterval;
+    private final SerializingConverter serializer = new SerializingConverter();
+    private final DeserializingConverter deserializer = new DeserializingConverter(getClass().getClassLoader());
+    private final AtomicLong allocations = new AtomicLong();
+
+    // Metrics
+    private final SessionStoreStats stats = new SessionStoreStats();
+    private final AtomicLong storedBytes = new AtomicLong();
+
+    public OffHeapSessionStore(Duration maxInactiveInterval) {
+        this.maxInactiveInterval = maxInactiveInterval;
+    }
+
+    @Override
+    public MapSession createSession() {
+        MapSession session = new MapSession();
+        session.setMaxInactiveInterval(maxInactiveInterval);
+        return session;
+    }
+
+    @Override
+    public void save(MapSession session) {
+        long started = System.nanoTime();
+        if (!session.getId().equals(session.getOriginalId())) {
+            release(sessions.remove(session.getOriginalId()));
+        }
+        byte[] encoded = encode(session);
+        while (!write(session.getId(), encoded)) {
+            // Deleted between the lookup and the lock: save it into a new slot
+        }
+        stats.recordWrite(started);
+    }
+
+    @Override
+    public MapSession findById(String id) {
+        long started = System.nanoTime();
+        try {
+            Slot slot = sessions.get(id);
+            if (slot == null) {
+                return null;
+            }
+            MapSession session;
+            Map<String, byte[]> attributes = new LinkedHashMap<>();
+            synchronized (slot) {
+                if (slot.buffer == null) {
+                    return null;
+                }
+                if (isExpired(slot.buffer, System.currentTimeMillis())) {
+                    deleteById(id);
+                    return null;
+                }
+                session = decode(slot.buffer, attributes);
+            }
+            attributes.forEach((name, value) -> session.setAttribute(name, deserializer.convert(value)));
+            return session;
+        } finally {
+            stats.recordRead(started);
+        }
+    }
+
+    @Override
+    public void deleteById(String id) {
+        release(sessions.remove(id));
+        stats.recordDelete();
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${ticketing.session.cleanup-interval-ms:60000}")
+    public void removeExpired() {
+        long now = System.currentTimeMillis();
+        long removed = 0;
+        for (Iterator<Slot> it = sessions.values().iterator(); it.hasNext(); ) {
+            Slot slot = it.next();
+            synchronized (slot) {
+                if (slot.buffer != null && isExpired(slot.buffer, now)) {
+                    it.remove();
+                    release(slot);
+                    removed++;
+                }
+            }
+        }
+        stats.recordExpired(removed);
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("store", "off-heap");
+        result.put("sessions", sessions.size());
+        result.put("storedBytes", storedBytes.get());
+        result.put("bufferAllocations", allocations.get());
+        stats.putInto(result);
+        return result;
+    }
+
+    private boolean write(String id, byte[] encoded) {
+        Slot slot = sessions.computeIfAbsent(id, key -> new Slot());
+        synchronized (slot) {
+            if (sessions.get(id) != slot) {
+                return false;
+            }
+            if (slot.buffer == null || slot.buffer.capacity() < encoded.length) {
+                release(slot.buffer);
+                int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(encoded.length - 1) << 1);
+                slot.buffer = ByteBuffer.allocateDirect(capacity);
+                storedBytes.addAndGet(capacity);
+                allocations.incrementAndGet();
+            }
+            slot.buffer.clear();
+            slot.buffer.put(encoded).flip();
+            return true;
+        }
+    }
+
+    private void release(Slot slot) {
+        if (slot != null) {
+            synchronized (slot) {
+                release(slot.buffer);
+                slot.buffer = null;
+            }
+        }
+    }
+
+    private void release(ByteBuffer buffer) {
+        if (buffer != null) {
+            storedBytes.addAndGet(-buffer.capacity());
+        }
+    }
+
+    private static boolean isExpired(ByteBuffer buffer, long now) {
+        long maxInactiveSeconds = buffer.getLong(MAX_INACTIVE_OFFSET);
+        return maxInactiveSeconds >= 0 && now - buffer.getLong(LAST_ACCESS_OFFSET) >= maxInactiveSeconds * 1000;
+    }
+
+    private byte[] encode(MapSession session) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(session.getCreationTime().toEpochMilli());
+            out.writeLong(session.getLastAccessedTime().toEpochMilli());
+            out.writeLong(session.getMaxInactiveInterval().getSeconds());
+            out.writeUTF(session.getId());
+            out.writeInt(session.getAttributeNames().size());
+            for (String name : session.getAttributeNames()) {
+                byte[] value = serializer.convert(session.getAttribute(name));
+                out.writeUTF(name);
+                out.writeInt(value.length);
+                out.write(value);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Read the session's fields, and its attributes' serialized bytes into the given map
+     */
+    private static MapSession decode(ByteBuffer buffer, Map<String, byte[]> attributeBytes) {
+        try (DataInputStream in = new DataInputStream(new BufferInputStream(buffer.duplicate()))) {
+            Instant creationTime = Instant.ofEpochMilli(in.readLong());
+            Instant lastAccessedTime = Instant.ofEpochMilli(in.readLong());
+            Duration maxInactive = Duration.ofSeconds(in.readLong());
+            MapSession session = new MapSession(in.readUTF());
+            session.setCreationTime(creationTime);
+            session.setLastAccessedTime(lastAccessedTime);
+            session.setMaxInactiveInterval(maxInactive);
+            int attributes = in.readInt();
+            for (int i = 0; i < attributes; i++) {
+                String name = in.readUTF();
+                byte[] value = new byte[in.readInt()];
+                in.readFully(value);
+                attributeBytes.put(name, value);
+            }
+            return session;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * One session's buffer; null once the session is deleted. Guarded by the slot itself
+     */
+    private static final class Slot {
+
+        private ByteBuffer buffer;
+    }
+
+    /**
+     * Reads a buffer in place, from its position up to its limit
+     */
+    private static final class BufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(target, offset, count);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.codestars.ticketing.repository;
+
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+
+import java.util.Map;
+
+/**
+ * Session Store - A Spring Session repository that SessionConfig can choose from
+ * ticketing.session.store, with expiry housekeeping and metrics
+ */
+public interface SessionStore<S extends Session> extends SessionRepository<S> {
+
+    /**
+     * Delete sessions that have been inactive for longer than their max inactive interval
+     */
+    void removeExpired();
+
+    Map<String, Object> getStats();
+}
@@ -0,0 +1,46 @@
+package com.codestars.ticketing.repository;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read and write counts and latency shared by the session stores
+ */
+final class SessionStoreStats {
+
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong readNanos = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
+    private final AtomicLong deletes = new AtomicLong();
+    private final AtomicLong expiredRemoved = new AtomicLong();
+
+    void recordRead(long startedNanos) {
+        reads.incrementAndGet();
+        readNanos.addAndGet(System.nanoTime() - startedNanos);
+    }
+
+    void recordWrite(long startedNanos) {
+        writes.incrementAndGet();
+        writeNanos.addAndGet(System.nanoTime() - startedNanos);
+    }
+
+    void recordDelete() {
+        deletes.incrementAndGet();
+    }
+
+    void recordExpired(long count) {
+        expiredRemoved.addAndGet(count);
+    }
+
+    void putInto(Map<String, Object> stats) {
+        long readCount = reads.get();
+        long writeCount = writes.get();
+        stats.put("reads", readCount);
+        stats.put("avgReadMicros", readCount == 0 ? 0.0 : readNanos.get() / 1000.0 / readCount);
+        stats.put("writes", writeCount);
+        stats.put("avgWriteMicros", writeCount == 0 ? 0.0 : writeNanos.get() / 1000.0 / writeCount);
+        stats.put("deletes", deletes.get());
+        stats.put("expiredRemoved", expiredRemoved.get());
+    }
+}
@@ -2,8 +2,13 @@ package com.codestars.ticketing.repository;
 
 import com.codestars.ticketing.model.Ticket;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,4 +26,52 @@ public interface TicketRepository extends JpaRepository<Ticket, Long> {
     List<Ticket> findByEventId(Long eventId);
     
     List<Ticket> findByStatus(Ticket.TicketStatus status);
+
+    @Query("SELECT COALESCE(SUM(t.quantity), 0) FROM Ticket t WHERE t.event.id = :eventId AND t.status <> :status")
+    long sumQuantityByEventIdAndStatusNot(@Param("eventId") Long eventId, @Param("status") Ticket.TicketStatus status);
+
+    @Query("SELECT t FROM Ticket t JOIN FETCH t.user JOIN FETCH t.event WHERE t.id IN :ids")
+    List<Ticket> findWithUserAndEventByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT t.id AS id, t.event.id AS eventId, t.ticketCode AS ticketCode, t.quantity AS quantity, " +
+           "t.status AS status, t.updatedAt AS updatedAt FROM Ticket t WHERE t.event.id = :eventId")
+    List<GateView> findGateViewsByEventId(@Param("eventId") Long eventId);
+
+    @Query("SELECT t.id AS id, t.event.id AS eventId, t.ticketCode AS ticketCode, t.quantity AS quantity, " +
+           "t.status AS status, t.updatedAt AS updatedAt FROM Ticket t WHERE t.event.id = :eventId AND t.updatedAt > :since")
+    List<GateView> findGateViewsByEventIdChangedSince(@Param("eventId") Long eventId,
+                                                      @Param("since") LocalDateTime since);
+
+    @Query("SELECT t.id AS id, t.event.id AS eventId, t.ticketCode AS ticketCode, t.quantity AS quantity, " +
+           "t.status AS status, t.updatedAt AS updatedAt FROM Ticket t WHERE t.ticketCode = :ticketCode")
+    Optional<GateView> findGateViewByTicketCode(@Param("ticketCode") String ticketCode);
+
+    @Query("SELECT t.id FROM Ticket t WHERE t.status = :status")
+    List<Long> findIdsByStatus(@Param("status") Ticket.TicketStatus status);
+
+    @Query("SELECT t.id FROM Ticket t WHERE t.status = :status AND t.updatedAt > :since")
+    List<Long> findIdsByStatusChangedSince(@Param("status") Ticket.TicketStatus status,
+                                           @Param("since") LocalDateTime since);
+
+    /**
+     * Move tickets between statuses in one statement; only rows still in the from status change
+     */
+    @Modifying
+    @Query("UPDATE Ticket t SET t.status = :to, t.updatedAt = :now WHERE t.id IN :ids AND t.status = :from")
+    int updateStatus(@Param("ids") Collection<Long> ids,
+                     @Param("from") Ticket.TicketStatus from,
+                     @Param("to") Ticket.TicketStatus to,
+                     @Param("now") LocalDateTime now);
+
+    /**
+     * The fields gate check-in needs, without loading the entity or its relations
+     */
+    interface GateView {
+        Long getId();
+        Long getEventId();
+        String getTicketCode();
+        Integer getQuantity();
+        Ticket.TicketStatus getStatus();
+        LocalDateTime getUpdatedAt();
+    }
 }
@@ -0,0 +1,19 @@
+package com.codestars.ticketing.security;
+
+/**
+ * Thrown when a login or registration is turned away before any password work is done,
+ * either because the hashing pool is full or because of too many failed attempts
+ */
+public class AuthThrottledException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public AuthThrottledException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
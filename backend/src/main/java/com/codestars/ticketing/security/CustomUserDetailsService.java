@@ -3,41 +3,183 @@ package com.codestars.ticketing.security;
 import com.codestars.ticketing.model.User;
 import com.codestars.ticketing.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Custom UserDetailsService - Loads user details for Spring Security
  * Assignment 14: Simple implementation for JWT authentication
+ *
+ * Every authenticated request loads its user, so loaded users are kept as immutable
+ * UserPrincipals by email, for at most ticketing.auth.user-cache.ttl-seconds and
+ * least recently used first out beyond max-entries. An update or delete of a User entity
+ * drops its entry once committed, so a role, password or enabled change applies to the
+ * next request. Unknown emails are not cached.
+ *
+ * The cache is striped by email like JwtUtil's token cache, each stripe a small LRU map under
+ * its own lock. A second map from user id to cached email lets an invalidation by id find
+ * its entry without scanning. Invalidation only reaches this node's cache; other nodes
+ * serve the old details until their entry expires.
+ *
+ * As the UserDetailsPasswordService, it also stores the new hash when a login finds the
+ * old one was made with a different BCrypt cost.
  */
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
+
+    private static final int STRIPES = 64;
+
+    private final UserRepository userRepository;
+    private final long ttlMs;
+    private final int maxEntries;
+
+    // Email -> cached principal, split into stripes that each guard themselves
+    private final PrincipalStripe[] principals = new PrincipalStripe[STRIPES];
+    // User id -> email of its cached entry
+    private final Map<Long, String> emailsById = new ConcurrentHashMap<>();
+    // Bumped by every invalidation; a load that started before one is not kept
+    private final AtomicLong generation = new AtomicLong();
+
+    // Metrics
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong passwordsRehashed = new AtomicLong();
 
     @Autowired
-    private UserRepository userRepository;
+    public CustomUserDetailsService(UserRepository userRepository,
+                                    @Value("${ticketing.auth.user-cache.ttl-seconds:300}") long ttlSeconds,
+                                    @Value("${ticketing.auth.user-cache.max-entries:10000}") int maxEntries) {
+        this.userRepository = userRepository;
+        this.ttlMs = ttlSeconds * 1000;
+        this.maxEntries = Math.max(0, maxEntries);
+        int perStripe = (this.maxEntries + STRIPES - 1) / STRIPES;
+        for (int i = 0; i < STRIPES; i++) {
+            principals[i] = new PrincipalStripe(perStripe);
+        }
+    }
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
+        long now = System.currentTimeMillis();
+        PrincipalStripe stripe = stripeFor(email);
+        synchronized (stripe) {
+            CachedPrincipal cached = stripe.get(email);
+            if (cached != null) {
+                if (cached.expiresAt > now) {
+                    hits.incrementAndGet();
+                    return cached.principal;
+                }
+                stripe.remove(email);
+            }
+        }
+        misses.incrementAndGet();
+
+        long loadGeneration = generation.get();
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
 
-        return new org.springframework.security.core.userdetails.User(
+        UserPrincipal principal = new UserPrincipal(
+                user.getId(),
                 user.getEmail(),
                 user.getPassword() != null ? user.getPassword() : "",
                 user.getEnabled(),
-                true, // accountNonExpired
-                true, // credentialsNonExpired
-                true, // accountNonLocked
                 getAuthorities(user)
         );
+        if (maxEntries == 0) {
+            return principal;
+        }
+        // Indexed before the generation check, so an invalidation that follows it finds the entry
+        emailsById.put(user.getId(), email);
+        synchronized (stripe) {
+            if (generation.get() == loadGeneration) {
+                stripe.put(email, new CachedPrincipal(principal, now + ttlMs));
+            } else {
+                emailsById.remove(user.getId(), email);
+            }
+        }
+        return principal;
+    }
+
+    /**
+     * Store a rehashed password after a successful login; a failure here does not fail the login
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails details, String newPassword) {
+        try {
+            User user = userRepository.findByEmail(details.getUsername()).orElse(null);
+            if (user == null) {
+                return details;
+            }
+            user.setPassword(newPassword);
+            // Saving publishes a UserChangedEvent, which drops the entry holding the old hash
+            userRepository.save(user);
+            passwordsRehashed.incrementAndGet();
+            return new UserPrincipal(user.getId(), user.getEmail(), newPassword, user.getEnabled(),
+                    details.getAuthorities());
+        } catch (RuntimeException e) {
+            System.err.println("Failed to store rehashed password for " + details.getUsername() + ": " + e.getMessage());
+            return details;
+        }
+    }
+
+    /**
+     * Drop a user's cached details, by id as well so an entry under a previous email goes too
+     */
+    public void invalidate(Long userId, String email) {
+        generation.incrementAndGet();
+        if (email != null) {
+            remove(email);
+        }
+        if (userId != null) {
+            String cachedEmail = emailsById.get(userId);
+            if (cachedEmail != null) {
+                remove(cachedEmail);
+            }
+        }
+        invalidations.incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        invalidate(event.getUserId(), event.getEmail());
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        int size = 0;
+        for (PrincipalStripe stripe : principals) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cachedUsers", size);
+        stats.put("maxCachedUsers", maxEntries);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("invalidations", invalidations.get());
+        stats.put("evictions", evictions.get());
+        stats.put("passwordsRehashed", passwordsRehashed.get());
+        return stats;
     }
 
     /**
@@ -48,4 +190,60 @@ public class CustomUserDetailsService implements UserDetailsService {
         authorities.add(new SimpleGrantedAuthority("ROLE_" + user.getRole().name()));
         return authorities;
     }
+
+    private void remove(String email) {
+        PrincipalStripe stripe = stripeFor(email);
+        synchronized (stripe) {
+            stripe.remove(email);
+        }
+    }
+
+    private PrincipalStripe stripeFor(String email) {
+        int h = email.hashCode();
+        return principals[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * One stripe of the principal cache, least recently used first; entries leaving it also
+     * leave the id index
+     */
+    private final class PrincipalStripe extends LinkedHashMap<String, CachedPrincipal> {
+
+        private final int maxPrincipals;
+
+        private PrincipalStripe(int maxPrincipals) {
+            super(16, 0.75f, true);
+            this.maxPrincipals = maxPrincipals;
+        }
+
+        @Override
+        public CachedPrincipal remove(Object email) {
+            CachedPrincipal removed = super.remove(email);
+            if (removed != null) {
+                emailsById.remove(removed.principal.getUserId(), email);
+            }
+            return removed;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedPrincipal> eldest) {
+            if (size() > maxPrincipals) {
+                evictions.incrementAndGet();
+                emailsById.remove(eldest.getValue().principal.getUserId(), eldest.getKey());
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static final class CachedPrincipal {
+
+        private final UserPrincipal principal;
+        private final long expiresAt;
+
+        private CachedPrincipal(UserPrincipal principal, long expiresAt) {
+            this.principal = principal;
+            this.expiresAt = expiresAt;
+        }
+    }
 }
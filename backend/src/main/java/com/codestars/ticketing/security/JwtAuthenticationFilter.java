@@ -21,7 +21,7 @@ import java.io.IOException;
  * FILTER CHAIN EXPLANATION:
  * 1. This filter intercepts EVERY HTTP request before it reaches the controller
  * 2. It extracts the JWT token from the Authorization header
- * 3. Validates the token using JwtUtil
+ * 3. Verifies the token once using JwtUtil (signature and expiry; cached until the token expires)
  * 4. If valid, loads user details and sets authentication in SecurityContext
  * 5. The request then proceeds to the next filter in the chain
  * 6. Controllers can access the authenticated user via SecurityContextHolder
@@ -42,30 +42,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         
         // Step 1: Extract JWT token from Authorization header
         String authHeader = request.getHeader("Authorization");
-        String token = null;
-        String email = null;
 
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            token = authHeader.substring(7); // Remove "Bearer " prefix
-            
-            try {
-                // Step 2: Extract email from token
-                email = jwtUtil.getEmailFromToken(token);
-            } catch (Exception e) {
-                System.err.println("Error extracting email from token: " + e.getMessage());
-            }
-        }
+        if (authHeader != null && authHeader.startsWith("Bearer ")
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            String token = authHeader.substring(7); // Remove "Bearer " prefix
 
-        // Step 3: Validate token and set authentication
-        if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            
-            // Step 4: Load user details from database
-            UserDetails userDetails = userDetailsService.loadUserByUsername(email);
+            // Step 2: Verify signature and expiry once (a hash lookup for a token seen before)
+            JwtUtil.VerifiedToken verified = jwtUtil.verify(token);
 
-            // Step 5: Validate token
-            if (jwtUtil.validateToken(token) && !jwtUtil.isTokenExpired(token)) {
-                
-                // Step 6: Create authentication object and set in SecurityContext
+            if (verified != null) {
+                // Step 3: Load user details from database
+                UserDetails userDetails = userDetailsService.loadUserByUsername(verified.getEmail());
+
+                // Step 4: Create authentication object and set in SecurityContext
                 UsernamePasswordAuthenticationToken authentication = 
                     new UsernamePasswordAuthenticationToken(
                         userDetails, 
@@ -80,7 +69,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             }
         }
 
-        // Step 7: Continue the filter chain
+        // Step 5: Continue the filter chain
         filterChain.doFilter(request, response);
     }
 }
@@ -2,14 +2,31 @@ package com.codestars.ticketing.security;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * JWT Utility Class - Simple JWT token generation and validation
  * Assignment 14: 24-hour token expiration, no refresh tokens
+ *
+ * Tokens are checked with one parser built at startup (jjwt parsers are immutable and
+ * thread-safe). A token that passed verification is remembered, keyed by its SHA-256, until
+ * its exp claim, so the next request with the same token costs a hash and a map lookup
+ * instead of an HMAC check and a JSON parse. Tokens that fail are never cached.
+ *
+ * The cache is striped like the rate limiter's buckets: each stripe is a small LRU map under
+ * its own lock, so concurrent requests only contend when their tokens hash to the same stripe.
  */
 @Component
 public class JwtUtil {
@@ -18,10 +35,31 @@ public class JwtUtil {
     private static final String SECRET_KEY = "TiketiAfrikaSecretKeyForJWTTokenGeneration2026EventTicketingSystemKenyanEvents";
     private static final long EXPIRATION_TIME = 86400000; // 24 hours in milliseconds
 
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final int STRIPES = 64;
+
     private final Key key;
+    private final JwtParser parser;
+    private final int maxCachedTokens;
+    private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(JwtUtil::newDigest);
+
+    // Token hash -> verified token, split into stripes that each guard themselves
+    private final TokenStripe[] verifiedTokens = new TokenStripe[STRIPES];
+
+    // Metrics
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong verifications = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
 
-    public JwtUtil() {
+    @Autowired
+    public JwtUtil(@Value("${ticketing.jwt.verified-cache-size:10000}") int maxCachedTokens) {
         this.key = Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build();
+        this.maxCachedTokens = Math.max(1, maxCachedTokens);
+        int perStripe = Math.max(1, this.maxCachedTokens / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            verifiedTokens[i] = new TokenStripe(perStripe);
+        }
     }
 
     /**
@@ -42,18 +80,47 @@ public class JwtUtil {
     }
 
     /**
-     * Extract email from JWT token
+     * Check signature and expiry once and return what the token says
      * @param token JWT token
-     * @return User's email
+     * @return the verified token, or null if it is malformed, forged, expired or has no subject
      */
-    public String getEmailFromToken(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-
-        return claims.getSubject();
+    public VerifiedToken verify(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        String hash = hash(token);
+        TokenStripe stripe = stripeFor(hash);
+        synchronized (stripe) {
+            VerifiedToken cached = stripe.get(hash);
+            if (cached != null) {
+                if (cached.expiresAt > now) {
+                    cacheHits.incrementAndGet();
+                    return cached;
+                }
+                stripe.remove(hash);
+            }
+        }
+
+        verifications.incrementAndGet();
+        Claims claims;
+        try {
+            claims = parser.parseClaimsJws(token).getBody();
+        } catch (JwtException | IllegalArgumentException e) {
+            rejected.incrementAndGet();
+            System.err.println("Invalid JWT token: " + e.getMessage());
+            return null;
+        }
+        if (claims.getSubject() == null || claims.getExpiration() == null) {
+            rejected.incrementAndGet();
+            return null;
+        }
+
+        VerifiedToken verified = new VerifiedToken(claims.getSubject(), claims.getExpiration().getTime());
+        synchronized (stripe) {
+            stripe.put(hash, verified);
+        }
+        return verified;
     }
 
     /**
@@ -62,34 +129,82 @@ public class JwtUtil {
      * @return true if valid, false otherwise
      */
     public boolean validateToken(String token) {
+        return verify(token) != null;
+    }
+
+    public Map<String, Object> getStats() {
+        int size = 0;
+        for (TokenStripe stripe : verifiedTokens) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cachedTokens", size);
+        stats.put("maxCachedTokens", maxCachedTokens);
+        stats.put("cacheHits", cacheHits.get());
+        stats.put("verifications", verifications.get());
+        stats.put("rejected", rejected.get());
+        return stats;
+    }
+
+    private TokenStripe stripeFor(String hash) {
+        int h = hash.hashCode();
+        return verifiedTokens[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    private String hash(String token) {
+        return ENCODER.encodeToString(digests.get().digest(token.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest newDigest() {
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
-        } catch (JwtException | IllegalArgumentException e) {
-            System.err.println("Invalid JWT token: " + e.getMessage());
-            return false;
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
         }
     }
 
     /**
-     * Check if token is expired
-     * @param token JWT token
-     * @return true if expired
+     * One stripe of the verified token cache, least recently used first
      */
-    public boolean isTokenExpired(String token) {
-        try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-            
-            return claims.getExpiration().before(new Date());
-        } catch (JwtException e) {
-            return true;
+    private static final class TokenStripe extends LinkedHashMap<String, VerifiedToken> {
+
+        private final int maxTokens;
+
+        private TokenStripe(int maxTokens) {
+            super(16, 0.75f, true);
+            this.maxTokens = maxTokens;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, VerifiedToken> eldest) {
+            return size() > maxTokens;
+        }
+    }
+
+    /**
+     * A token whose signature and expiry have been checked
+     */
+    public static final class VerifiedToken {
+
+        private final String email;
+        private final long expiresAt;
+
+        private VerifiedToken(String email, long expiresAt) {
+            this.email = email;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        /**
+         * The exp claim, in epoch milliseconds
+         */
+        public long getExpiresAt() {
+            return expiresAt;
         }
     }
 }
@@ -0,0 +1,227 @@
+package com.codestars.ticketing.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Login Attempt Throttle - Turns away logins after repeated failures, before any BCrypt work
+ *
+ * Failed logins are counted per account and client address together, and per client address,
+ * in fixed windows of ticketing.auth.login.window-seconds, starting at the first failure. Once
+ * an account at one address, or an address, reaches its limit, further logins from it are
+ * rejected until the window ends. Failures from one address never lock the account for the
+ * owner signing in from another. A successful login clears the account's count at that address
+ * but not the address's, so guessing one password across many accounts from a single address
+ * still runs into the address limit.
+ *
+ * Both tables are striped like the rate limiter's and hold at most
+ * ticketing.auth.login.max-tracked windows each, least recently used first out.
+ */
+@Service
+public class LoginAttemptThrottle {
+
+    private static final int STRIPES = 64;
+
+    private final int maxAccountFailures;
+    private final int maxAddressFailures;
+    private final long windowMs;
+    private final int maxTracked;
+
+    private final WindowTable accounts;
+    private final WindowTable addresses;
+
+    // Metrics
+    private final AtomicLong failuresRecorded = new AtomicLong();
+    private final AtomicLong accountRejections = new AtomicLong();
+    private final AtomicLong addressRejections = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @Autowired
+    public LoginAttemptThrottle(@Value("${ticketing.auth.login.max-failures-per-account:5}") int maxAccountFailures,
+                                @Value("${ticketing.auth.login.max-failures-per-address:20}") int maxAddressFailures,
+                                @Value("${ticketing.auth.login.window-seconds:300}") long windowSeconds,
+                                @Value("${ticketing.auth.login.max-tracked:100000}") int maxTracked) {
+        this.maxAccountFailures = Math.max(1, maxAccountFailures);
+        this.maxAddressFailures = Math.max(1, maxAddressFailures);
+        this.windowMs = windowSeconds * 1000;
+        this.maxTracked = Math.max(STRIPES, maxTracked);
+        this.accounts = new WindowTable(this.maxTracked / STRIPES, evictions);
+        this.addresses = new WindowTable(this.maxTracked / STRIPES, evictions);
+    }
+
+    /**
+     * @throws AuthThrottledException if the account at this address, or the address, has too many recent failures
+     */
+    public void checkAllowed(String email, String address) {
+        long now = System.currentTimeMillis();
+        FailureWindow account = accounts.get(accountKey(email, address));
+        if (account != null && account.blocks(maxAccountFailures, now)) {
+            accountRejections.incrementAndGet();
+            throw new AuthThrottledException("Too many failed sign-in attempts for this account, please try again later",
+                    account.secondsLeft(now));
+        }
+        FailureWindow client = address != null ? addresses.get(address) : null;
+        if (client != null && client.blocks(maxAddressFailures, now)) {
+            addressRejections.incrementAndGet();
+            throw new AuthThrottledException("Too many failed sign-in attempts, please try again later",
+                    client.secondsLeft(now));
+        }
+    }
+
+    public void recordFailure(String email, String address) {
+        long now = System.currentTimeMillis();
+        accounts.count(accountKey(email, address), now, windowMs);
+        if (address != null) {
+            addresses.count(address, now, windowMs);
+        }
+        failuresRecorded.incrementAndGet();
+    }
+
+    public void recordSuccess(String email, String address) {
+        accounts.remove(accountKey(email, address));
+    }
+
+    /**
+     * Forget windows that have ended
+     */
+    @Scheduled(fixedDelayString = "${ticketing.auth.login.cleanup-interval-ms:60000}")
+    public void removeExpired() {
+        long now = System.currentTimeMillis();
+        accounts.removeEnded(now);
+        addresses.removeEnded(now);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("trackedAccounts", accounts.size());
+        stats.put("trackedAddresses", addresses.size());
+        stats.put("maxTracked", maxTracked);
+        stats.put("maxFailuresPerAccount", maxAccountFailures);
+        stats.put("maxFailuresPerAddress", maxAddressFailures);
+        stats.put("failuresRecorded", failuresRecorded.get());
+        stats.put("accountRejections", accountRejections.get());
+        stats.put("addressRejections", addressRejections.get());
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+
+    // Emails are matched exactly at login; the throttle must not be sidestepped by changing case
+    private static String accountKey(String email, String address) {
+        return email.trim().toLowerCase(Locale.ROOT) + "|" + (address != null ? address : "");
+    }
+
+    /**
+     * Failure windows by key, split into stripes that each evict their least recently used window
+     */
+    private static final class WindowTable {
+
+        private final Stripe[] stripes = new Stripe[STRIPES];
+
+        private WindowTable(int perStripe, AtomicLong evictions) {
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new Stripe(Math.max(1, perStripe), evictions);
+            }
+        }
+
+        private FailureWindow get(String key) {
+            Stripe stripe = stripeFor(key);
+            synchronized (stripe) {
+                return stripe.get(key);
+            }
+        }
+
+        private void count(String key, long now, long windowMs) {
+            Stripe stripe = stripeFor(key);
+            synchronized (stripe) {
+                stripe.put(key, FailureWindow.count(stripe.get(key), now, windowMs));
+            }
+        }
+
+        private void remove(String key) {
+            Stripe stripe = stripeFor(key);
+            synchronized (stripe) {
+                stripe.remove(key);
+            }
+        }
+
+        private void removeEnded(long now) {
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    stripe.values().removeIf(window -> window.endsAt <= now);
+                }
+            }
+        }
+
+        private int size() {
+            int size = 0;
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    size += stripe.size();
+                }
+            }
+            return size;
+        }
+
+        private Stripe stripeFor(String key) {
+            int hash = key.hashCode();
+            return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+        }
+    }
+
+    /**
+     * One stripe of a window table, least recently used first
+     */
+    private static final class Stripe extends LinkedHashMap<String, FailureWindow> {
+
+        private final int maxWindows;
+        private final AtomicLong evictions;
+
+        private Stripe(int maxWindows, AtomicLong evictions) {
+            super(16, 0.75f, true);
+            this.maxWindows = maxWindows;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FailureWindow> eldest) {
+            if (size() > maxWindows) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static final class FailureWindow {
+
+        private final long endsAt;
+        private final int failures;
+
+        private FailureWindow(long endsAt, int failures) {
+            this.endsAt = endsAt;
+            this.failures = failures;
+        }
+
+        private static FailureWindow count(FailureWindow window, long now, long windowMs) {
+            if (window == null || window.endsAt <= now) {
+                return new FailureWindow(now + windowMs, 1);
+            }
+            return new FailureWindow(window.endsAt, window.failures + 1);
+        }
+
+        private boolean blocks(int maxFailures, long now) {
+            return endsAt > now && failures >= maxFailures;
+        }
+
+        private long secondsLeft(long now) {
+            return (endsAt - now + 999) / 1000;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.codestars.ticketing.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Password Hashing Service - Runs BCrypt work on a small pool of its own
+ *
+ * BCrypt is deliberately slow, and a burst of logins run on request threads would take
+ * every core away from browsing and purchases. Hashing and verification run here instead,
+ * on ticketing.auth.hashing.threads threads (one per core by default) with at most
+ * ticketing.auth.hashing.queue-capacity jobs waiting. The caller waits for its result;
+ * when the queue is full it gets an AuthThrottledException straight away, so at most
+ * threads + queue-capacity request threads are ever waiting on passwords.
+ */
+@Service
+public class PasswordHashingService {
+
+    private final ThreadPoolExecutor workers;
+    private final long retryAfterSeconds;
+
+    // Metrics
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong workNanos = new AtomicLong();
+
+    @Autowired
+    public PasswordHashingService(@Value("${ticketing.auth.hashing.threads:0}") int threads,
+                                  @Value("${ticketing.auth.hashing.queue-capacity:32}") int queueCapacity,
+                                  @Value("${ticketing.auth.hashing.retry-after-seconds:2}") long retryAfterSeconds) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.retryAfterSeconds = retryAfterSeconds;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Run password work on the pool and wait for it; exceptions it throws are rethrown as is
+     *
+     * @throws AuthThrottledException if the queue is full
+     */
+    public <T> T run(Callable<T> work) {
+        long submitted = System.nanoTime();
+        Future<T> result;
+        try {
+            result = workers.submit(() -> {
+                long started = System.nanoTime();
+                waitNanos.addAndGet(started - submitted);
+                try {
+                    return work.call();
+                } finally {
+                    workNanos.addAndGet(System.nanoTime() - started);
+                    completed.incrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new AuthThrottledException("Too many sign-ins in progress, please try again shortly", retryAfterSeconds);
+        }
+
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long done = completed.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", workers.getMaximumPoolSize());
+        stats.put("active", workers.getActiveCount());
+        stats.put("queued", workers.getQueue().size());
+        stats.put("queueCapacity", workers.getQueue().size() + workers.getQueue().remainingCapacity());
+        stats.put("completed", done);
+        stats.put("rejected", rejected.get());
+        stats.put("avgWaitMicros", done == 0 ? 0 : waitNanos.get() / done / 1000);
+        stats.put("avgWorkMicros", done == 0 ? 0 : workNanos.get() / done / 1000);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,73 @@
+package com.codestars.ticketing.security;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate Limit Filter - Turns away requests over RateLimiter's limits with 429 Too Many Requests
+ *
+ * Runs in the security filter chain after JwtAuthenticationFilter, so a signed-in user is
+ * limited by account as well as by address. Not a @Component: Spring Boot would register it
+ * again as a servlet filter outside the chain, before the user is known.
+ *
+ * Rejections write a fixed body and a Retry-After value from a table built at startup, so
+ * turning a flood away costs next to nothing beyond the bucket check itself.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final byte[] REJECTED_BODY =
+            "{\"success\":false,\"error\":\"Too many requests\"}".getBytes(StandardCharsets.UTF_8);
+    private static final String[] RETRY_AFTER = new String[3601];
+
+    static {
+        for (int i = 0; i < RETRY_AFTER.length; i++) {
+            RETRY_AFTER[i] = Integer.toString(i);
+        }
+    }
+
+    private final RateLimiter rateLimiter;
+
+    public RateLimitFilter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        RateLimiter.Route route = rateLimiter.route(request);
+        if (route == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String user = authentication != null && authentication.isAuthenticated()
+                ? authentication.getName() : null;
+        // The client's address, taken from X-Forwarded-For by Tomcat when a trusted proxy sent it
+        long waitNanos = route.acquire(request.getRemoteAddr(), user, System.nanoTime());
+        if (waitNanos == 0) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long retryAfter = Math.min(RETRY_AFTER.length - 1,
+                Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1)));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", RETRY_AFTER[(int) retryAfter]);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(REJECTED_BODY.length);
+        response.getOutputStream().write(REJECTED_BODY);
+    }
+}
@@ -0,0 +1,357 @@
+package com.codestars.ticketing.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.stereotype.Service;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rate Limiter - Token buckets per client address, per user and per route
+ *
+ * Each limited route has up to three limits, written as <requests>/<period> (e.g. 30/1m):
+ * one bucket per client address, one per authenticated user, and one for the whole route.
+ * A bucket holds up to <requests> tokens and refills at <requests> per <period>. A request
+ * is checked against all of its buckets first and takes one token from each only if none is
+ * empty, so a rejected request costs nothing: a client over its own limit does not use up
+ * the route's total, and a user who is turned away keeps the tokens of their address.
+ *
+ * Routes are matched like Spring Security matches its own rules, with AntPathRequestMatcher
+ * on the path within the application: the context path and path parameters such as
+ * ;jsessionid are not part of it, and each path is also matched with a trailing slash,
+ * which Spring MVC routes to the same handler.
+ *
+ * Address and user buckets live in striped tables: each stripe is a small LRU map under its
+ * own lock, so threads only contend when their keys hash to the same stripe, and once
+ * ticketing.rate-limit.max-keys buckets exist the longest-idle one is dropped for a new key.
+ * A dropped bucket was idle long enough to have refilled in almost every case. Checking a
+ * known key is a hash lookup and a little arithmetic, with no allocation.
+ */
+@Service
+public class RateLimiter {
+
+    private static final Pattern LIMIT = Pattern.compile("(\\d+)/(\\d*)(ms|s|m|h)");
+    private static final int STRIPES = 64;
+
+    private final boolean enabled;
+    private final List<Route> routes = new ArrayList<>();
+
+    @Autowired
+    public RateLimiter(@Value("${ticketing.rate-limit.enabled:true}") boolean enabled,
+                       @Value("${ticketing.rate-limit.max-keys:100000}") int maxKeys,
+                       @Value("${ticketing.rate-limit.purchase.per-address:30/1m}") String purchasePerAddress,
+                       @Value("${ticketing.rate-limit.purchase.per-user:10/1m}") String purchasePerUser,
+                       @Value("${ticketing.rate-limit.purchase.total:2000/1s}") String purchaseTotal,
+                       @Value("${ticketing.rate-limit.search.per-address:20/1s}") String searchPerAddress,
+                       @Value("${ticketing.rate-limit.search.per-user:20/1s}") String searchPerUser,
+                       @Value("${ticketing.rate-limit.search.total:5000/1s}") String searchTotal,
+                       @Value("${ticketing.rate-limit.auth.per-address:20/1m}") String authPerAddress,
+                       @Value("${ticketing.rate-limit.auth.total:200/1s}") String authTotal,
+                       @Value("${ticketing.rate-limit.waiting-room.per-address:10/1m}") String joinPerAddress,
+                       @Value("${ticketing.rate-limit.waiting-room.total:1000/1s}") String joinTotal) {
+        this.enabled = enabled;
+        // Each route gets its own share of the key budget for its address and user tables
+        int keysPerTable = Math.max(STRIPES, maxKeys / 8);
+        routes.add(new Route("purchase", "POST", new String[]{"/api/ticket/purchase"},
+                purchasePerAddress, purchasePerUser, purchaseTotal, keysPerTable));
+        routes.add(new Route("search", "GET", new String[]{"/api/events/search"},
+                searchPerAddress, searchPerUser, searchTotal, keysPerTable));
+        routes.add(new Route("auth", "POST", new String[]{"/api/auth/login", "/api/auth/register"},
+                authPerAddress, "off", authTotal, keysPerTable));
+        routes.add(new Route("waiting-room", "POST", new String[]{"/api/waiting-room/*/join"},
+                joinPerAddress, "off", joinTotal, keysPerTable));
+    }
+
+    /**
+     * The limited route a request belongs to, or null if it is not limited
+     */
+    public Route route(HttpServletRequest request) {
+        if (!enabled) {
+            return null;
+        }
+        for (Route route : routes) {
+            if (route.matches(request)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        for (Route route : routes) {
+            stats.put(route.name, route.getStats());
+        }
+        return stats;
+    }
+
+    /**
+     * A limited route and its buckets
+     */
+    public static final class Route {
+
+        private final String name;
+        private final List<RequestMatcher> matchers = new ArrayList<>();
+        private final BucketTable perAddress;
+        private final BucketTable perUser;
+        private final Limit totalLimit;
+        private final Bucket routeBucket = new Bucket(System.nanoTime());
+
+        // Metrics
+        private final AtomicLong allowed = new AtomicLong();
+        private final AtomicLong rejectedByAddress = new AtomicLong();
+        private final AtomicLong rejectedByUser = new AtomicLong();
+        private final AtomicLong rejectedByTotal = new AtomicLong();
+
+        private Route(String name, String method, String[] paths,
+                      String perAddress, String perUser, String total, int maxKeys) {
+            this.name = name;
+            for (String path : paths) {
+                matchers.add(new AntPathRequestMatcher(path, method));
+                matchers.add(new AntPathRequestMatcher(path + "/", method));
+            }
+            Limit addressLimit = Limit.parse(name + ".per-address", perAddress);
+            Limit userLimit = Limit.parse(name + ".per-user", perUser);
+            this.perAddress = addressLimit != null ? new BucketTable(addressLimit, maxKeys) : null;
+            this.perUser = userLimit != null ? new BucketTable(userLimit, maxKeys) : null;
+            this.totalLimit = Limit.parse(name + ".total", total);
+            if (totalLimit != null) {
+                routeBucket.tokens = totalLimit.capacity;
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Check each of the request's buckets, and take a token from each if all have one
+         *
+         * @param user authenticated user name, or null for anonymous requests
+         * @return 0 if the request may proceed, otherwise nanoseconds until it could
+         */
+        public long acquire(String address, String user, long now) {
+            boolean byAddress = perAddress != null && address != null;
+            boolean byUser = perUser != null && user != null;
+            long wait;
+            if (byAddress && (wait = perAddress.check(address, now)) > 0) {
+                rejectedByAddress.incrementAndGet();
+                return wait;
+            }
+            if (byUser && (wait = perUser.check(user, now)) > 0) {
+                rejectedByUser.incrementAndGet();
+                return wait;
+            }
+            // Checked and taken in one step, last: nothing after it can turn the request away
+            if (totalLimit != null) {
+                synchronized (routeBucket) {
+                    wait = routeBucket.check(totalLimit, now);
+                    if (wait == 0) {
+                        routeBucket.take();
+                    }
+                }
+                if (wait > 0) {
+                    rejectedByTotal.incrementAndGet();
+                    return wait;
+                }
+            }
+            // A request racing for the same last token may leave a bucket slightly in debt,
+            // which its refill pays back before the next token is handed out
+            if (byAddress) {
+                perAddress.take(address);
+            }
+            if (byUser) {
+                perUser.take(user);
+            }
+            allowed.incrementAndGet();
+            return 0;
+        }
+
+        private boolean matches(HttpServletRequest request) {
+            for (RequestMatcher matcher : matchers) {
+                if (matcher.matches(request)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private Map<String, Object> getStats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("allowed", allowed.get());
+            stats.put("rejectedByAddress", rejectedByAddress.get());
+            stats.put("rejectedByUser", rejectedByUser.get());
+            stats.put("rejectedByTotal", rejectedByTotal.get());
+            stats.put("trackedAddresses", perAddress != null ? perAddress.size() : 0);
+            stats.put("trackedUsers", perUser != null ? perUser.size() : 0);
+            stats.put("evictedKeys", (perAddress != null ? perAddress.evictions.get() : 0)
+                    + (perUser != null ? perUser.evictions.get() : 0));
+            return stats;
+        }
+    }
+
+    /**
+     * Bucket size and refill rate
+     */
+    private static final class Limit {
+
+        private final double capacity;
+        private final double tokensPerNano;
+
+        private Limit(long requests, long periodNanos) {
+            this.capacity = requests;
+            this.tokensPerNano = (double) requests / periodNanos;
+        }
+
+        /**
+         * "30/1m", "20/s", "500/100ms"; "off" or an empty value for no limit
+         */
+        private static Limit parse(String property, String value) {
+            String spec = value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+            if (spec.isEmpty() || spec.equals("off")) {
+                return null;
+            }
+            Matcher matcher = LIMIT.matcher(spec);
+            if (!matcher.matches() || Long.parseLong(matcher.group(1)) == 0) {
+                throw new IllegalArgumentException("Invalid ticketing.rate-limit." + property + " '" + value
+                        + "'; expected <requests>/<period> such as 30/1m, or off");
+            }
+            long amount = matcher.group(2).isEmpty() ? 1 : Long.parseLong(matcher.group(2));
+            TimeUnit unit;
+            switch (matcher.group(3)) {
+                case "ms":
+                    unit = TimeUnit.MILLISECONDS;
+                    break;
+                case "s":
+                    unit = TimeUnit.SECONDS;
+                    break;
+                case "m":
+                    unit = TimeUnit.MINUTES;
+                    break;
+                default:
+                    unit = TimeUnit.HOURS;
+            }
+            return new Limit(Long.parseLong(matcher.group(1)), Math.max(1, unit.toNanos(amount)));
+        }
+    }
+
+    /**
+     * Tokens left and when they were last topped up; callers hold the owning lock
+     */
+    private static final class Bucket {
+
+        private double tokens;
+        private long refilledAt;
+
+        private Bucket(long now) {
+            this.refilledAt = now;
+        }
+
+        /**
+         * Top up for the time passed
+         * @return 0 if a token is available, otherwise nanoseconds until one is
+         */
+        private long check(Limit limit, long now) {
+            tokens = Math.min(limit.capacity, tokens + (now - refilledAt) * limit.tokensPerNano);
+            refilledAt = now;
+            if (tokens >= 1) {
+                return 0;
+            }
+            return Math.max(1, (long) ((1 - tokens) / limit.tokensPerNano));
+        }
+
+        private void take() {
+            tokens -= 1;
+        }
+    }
+
+    /**
+     * Buckets by key, split into stripes that each evict their least recently used bucket
+     */
+    private static final class BucketTable {
+
+        private final Limit limit;
+        private final Stripe[] stripes = new Stripe[STRIPES];
+        private final AtomicLong evictions = new AtomicLong();
+
+        private BucketTable(Limit limit, int maxKeys) {
+            this.limit = limit;
+            int perStripe = Math.max(1, maxKeys / STRIPES);
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new Stripe(perStripe, evictions);
+            }
+        }
+
+        private long check(String key, long now) {
+            Stripe stripe = stripeFor(key);
+            synchronized (stripe) {
+                Bucket bucket = stripe.get(key);
+                if (bucket == null) {
+                    bucket = new Bucket(now);
+                    bucket.tokens = limit.capacity;
+                    stripe.put(key, bucket);
+                }
+                return bucket.check(limit, now);
+            }
+        }
+
+        private void take(String key) {
+            Stripe stripe = stripeFor(key);
+            synchronized (stripe) {
+                Bucket bucket = stripe.get(key);
+                // Gone only if evicted since the check, as the longest idle; nothing to take from
+                if (bucket != null) {
+                    bucket.take();
+                }
+            }
+        }
+
+        private Stripe stripeFor(String key) {
+            int hash = key.hashCode();
+            return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+        }
+
+        private int size() {
+            int size = 0;
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    size += stripe.size();
+                }
+            }
+            return size;
+        }
+    }
+
+    private static final class Stripe extends LinkedHashMap<String, Bucket> {
+
+        private final int maxKeys;
+        private final AtomicLong evictions;
+
+        private Stripe(int maxKeys, AtomicLong evictions) {
+            super(16, 0.75f, true);
+            this.maxKeys = maxKeys;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+            if (size() > maxKeys) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+}
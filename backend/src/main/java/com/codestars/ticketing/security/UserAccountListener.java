@@ -0,0 +1,29 @@
+package com.codestars.ticketing.security;
+
+import com.codestars.ticketing.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * JPA listener on User that turns updates and deletes into UserChangedEvents.
+ * New users need no event: nothing can be cached for an email that did not exist.
+ * Hibernate creates it through Spring, so it can be injected.
+ */
+public class UserAccountListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    public UserAccountListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void onUserWritten(User user) {
+        eventPublisher.publishEvent(new UserChangedEvent(user.getId(), user.getEmail()));
+    }
+}
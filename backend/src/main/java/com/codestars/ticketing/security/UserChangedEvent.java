@@ -0,0 +1,24 @@
+package com.codestars.ticketing.security;
+
+/**
+ * Published when a user is updated or deleted, so cached copies of it can be dropped
+ * Listen with @TransactionalEventListener to see only committed changes
+ */
+public class UserChangedEvent {
+
+    private final Long userId;
+    private final String email;
+
+    public UserChangedEvent(Long userId, String email) {
+        this.userId = userId;
+        this.email = email;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+}
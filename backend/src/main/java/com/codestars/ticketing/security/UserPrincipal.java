@@ -0,0 +1,85 @@
+package com.codestars.ticketing.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * User Principal - Immutable UserDetails that can be shared between requests
+ *
+ * Spring's own User erases its password once a login succeeds, which would break the
+ * next login served from the same cached instance; this class has nothing to erase.
+ */
+public final class UserPrincipal implements UserDetails {
+
+    private final Long userId;
+    private final String email;
+    private final String password;
+    private final boolean enabled;
+    private final List<GrantedAuthority> authorities;
+
+    public UserPrincipal(Long userId, String email, String password, boolean enabled,
+                         Collection<? extends GrantedAuthority> authorities) {
+        this.userId = userId;
+        this.email = email;
+        this.password = password;
+        this.enabled = enabled;
+        this.authorities = List.copyOf(authorities);
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof UserPrincipal && email.equals(((UserPrincipal) other).email);
+    }
+
+    @Override
+    public int hashCode() {
+        return email.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "UserPrincipal[" + email + ", " + authorities + "]";
+    }
+}
@@ -3,11 +3,14 @@ package com.codestars.ticketing.service;
 import com.codestars.ticketing.model.User;
 import com.codestars.ticketing.model.UserRole;
 import com.codestars.ticketing.repository.UserRepository;
+import com.codestars.ticketing.security.AuthThrottledException;
 import com.codestars.ticketing.security.JwtUtil;
+import com.codestars.ticketing.security.LoginAttemptThrottle;
+import com.codestars.ticketing.security.PasswordHashingService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -17,6 +20,10 @@ import java.util.regex.Pattern;
 /**
  * Authentication Service - Business logic for user registration and login
  * Assignment 14: Includes Kenyan phone number validation
+ *
+ * BCrypt work runs on the PasswordHashingService pool rather than the request thread, and
+ * logins are checked against the LoginAttemptThrottle before any of it is done. Both turn
+ * requests away with an AuthThrottledException.
  */
 @Service
 public class AuthService {
@@ -33,6 +40,12 @@ public class AuthService {
     @Autowired
     private AuthenticationManager authenticationManager;
 
+    @Autowired
+    private PasswordHashingService passwordHashing;
+
+    @Autowired
+    private LoginAttemptThrottle loginThrottle;
+
     // Kenyan phone number patterns
     private static final Pattern KENYAN_PHONE_PATTERN = 
         Pattern.compile("^(\\+254|0)[17]\\d{8}$");
@@ -61,7 +74,7 @@ public class AuthService {
         User user = new User();
         user.setName(name);
         user.setEmail(email);
-        user.setPassword(passwordEncoder.encode(password)); // BCrypt encryption
+        user.setPassword(passwordHashing.run(() -> passwordEncoder.encode(password))); // BCrypt encryption
         user.setPhoneNumber(phoneNumber);
         user.setCounty(county);
         user.setRole(UserRole.USER);
@@ -72,20 +85,26 @@ public class AuthService {
 
     /**
      * Authenticate user and generate JWT token
+     *
+     * @param clientAddress remote address of the request, for the per-address failure limit
+     * @throws AuthThrottledException if the account at this address or the address is throttled,
+     *                                or hashing is saturated
      */
-    public String login(String email, String password) {
+    public String login(String email, String password, String clientAddress) {
+        loginThrottle.checkAllowed(email, clientAddress);
         try {
-            // Authenticate using Spring Security
-            Authentication authentication = authenticationManager.authenticate(
+            // Authenticate using Spring Security; the BCrypt check runs on the hashing pool
+            passwordHashing.run(() -> authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(email, password)
-            );
-
-            // If authentication successful, generate JWT token
-            return jwtUtil.generateToken(email);
-
-        } catch (Exception e) {
+            ));
+        } catch (AuthenticationException e) {
+            loginThrottle.recordFailure(email, clientAddress);
             throw new RuntimeException("Invalid email or password");
         }
+        loginThrottle.recordSuccess(email, clientAddress);
+
+        // If authentication successful, generate JWT token
+        return jwtUtil.generateToken(email);
     }
 
     /**
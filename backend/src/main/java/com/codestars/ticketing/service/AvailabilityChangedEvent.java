@@ -0,0 +1,27 @@
+package com.codestars.ticketing.service;
+
+/**
+ * Published by InventoryService inside the transaction that reserves or returns tickets
+ * Listen with @TransactionalEventListener to see only committed changes
+ */
+public class AvailabilityChangedEvent {
+
+    private final Long eventId;
+    private final int delta;
+
+    public AvailabilityChangedEvent(Long eventId, int delta) {
+        this.eventId = eventId;
+        this.delta = delta;
+    }
+
+    public Long getEventId() {
+        return eventId;
+    }
+
+    /**
+     * Change in available tickets: negative for a reservation, positive for a release
+     */
+    public int getDelta() {
+        return delta;
+    }
+}
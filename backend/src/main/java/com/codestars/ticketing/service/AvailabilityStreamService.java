@@ -0,0 +1,352 @@
+package com.codestars.ticketing.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Availability Stream Service - Pushes live availableTickets to Server-Sent Event subscribers
+ *
+ * Every purchase, hold, release and cancellation arrives as an AvailabilityChangedEvent;
+ * for events somebody is watching, the deltas are summed per event until the next push.
+ * A push runs at most once per interval and sends each changed event's current count and
+ * its net change since the previous push, serialized once and written to every subscriber
+ * of that event. A sale of thousands of tickets a second is therefore one message per
+ * event per interval, and an event nobody is watching costs nothing.
+ *
+ * Subscribers are async servlet responses, so an idle one holds a connection but no
+ * thread. Messages are complete SSE text, written as-is through a plain ResponseBodyEmitter
+ * (the controller sets the text/event-stream content type). A push only appends the
+ * message to each subscriber's own queue; a small pool of availability-stream threads
+ * writes the queues out, one thread per subscriber at a time. A client that stops reading
+ * can therefore only hold up the thread writing to it, and once
+ * ticketing.stream.max-queued-messages are waiting for it, it is dropped and its browser
+ * reconnects.
+ */
+@Service
+public class AvailabilityStreamService {
+
+    private static final String HEARTBEAT = ":\n\n";
+    private static final MediaType TEXT_UTF8 = new MediaType("text", "plain", StandardCharsets.UTF_8);
+
+    private final EventCatalogCache catalogCache;
+    private final ObjectMapper objectMapper;
+    private final long timeoutMs;
+    private final long reconnectMs;
+    private final int maxSubscribers;
+    private final int maxQueuedMessages;
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> pendingChanges = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ExecutorService writers;
+
+    // Metrics
+    private final AtomicInteger peakSubscribers = new AtomicInteger();
+    private final AtomicLong subscribersRejected = new AtomicLong();
+    private final AtomicLong subscribersDropped = new AtomicLong();
+    private final AtomicLong slowSubscribersDropped = new AtomicLong();
+    private final AtomicLong changesReceived = new AtomicLong();
+    private final AtomicLong updatesPushed = new AtomicLong();
+    private final AtomicLong messagesSent = new AtomicLong();
+    private final AtomicLong lastPushMicros = new AtomicLong();
+    private final AtomicLong maxPushMicros = new AtomicLong();
+
+    @Autowired
+    public AvailabilityStreamService(EventCatalogCache catalogCache,
+                                     ObjectMapper objectMapper,
+                                     @Value("${ticketing.stream.timeout-ms:1800000}") long timeoutMs,
+                                     @Value("${ticketing.stream.reconnect-ms:3000}") long reconnectMs,
+                                     @Value("${ticketing.stream.max-subscribers:50000}") int maxSubscribers,
+                                     @Value("${ticketing.stream.max-queued-messages:30}") int maxQueuedMessages,
+                                     @Value("${ticketing.stream.writer-threads:4}") int writerThreads) {
+        this.catalogCache = catalogCache;
+        this.objectMapper = objectMapper;
+        this.timeoutMs = timeoutMs;
+        this.reconnectMs = reconnectMs;
+        this.maxSubscribers = Math.max(1, maxSubscribers);
+        this.maxQueuedMessages = Math.max(1, maxQueuedMessages);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.writers = Executors.newFixedThreadPool(Math.max(1, writerThreads), runnable -> {
+            Thread thread = new Thread(runnable, "availability-stream-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Open a stream for the given events; the first message carries each event's current count
+     *
+     * @throws IllegalArgumentException if an event does not exist
+     * @throws IllegalStateException    if the node already has its maximum number of subscribers
+     */
+    public ResponseBodyEmitter subscribe(List<Long> eventIds) {
+        List<CatalogEvent> events = new ArrayList<>(eventIds.size());
+        for (Long eventId : eventIds) {
+            events.add(catalogCache.getEvent(eventId)
+                    .orElseThrow(() -> new IllegalArgumentException("Event not found: " + eventId)));
+        }
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            subscribersRejected.incrementAndGet();
+            throw new IllegalStateException("Too many availability subscribers");
+        }
+        peakSubscribers.accumulateAndGet(subscriberCount.get(), Math::max);
+
+        Subscriber subscriber = new Subscriber(createEmitter(timeoutMs), eventIds);
+        subscriber.emitter.onCompletion(() -> remove(subscriber));
+        subscriber.emitter.onTimeout(() -> remove(subscriber));
+        subscriber.emitter.onError(error -> remove(subscriber));
+        for (Long eventId : eventIds) {
+            subscribers.compute(eventId, (id, watching) -> {
+                Set<Subscriber> set = watching != null ? watching : ConcurrentHashMap.newKeySet();
+                set.add(subscriber);
+                return set;
+            });
+        }
+
+        StringBuilder initial = new StringBuilder("retry:").append(reconnectMs).append('\n');
+        for (CatalogEvent event : events) {
+            initial.append(availabilityFrame(event.getId(), event.getAvailableTickets(), 0));
+        }
+        enqueue(subscriber, initial.toString());
+        return subscriber.emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAvailabilityChanged(AvailabilityChangedEvent event) {
+        if (subscribers.containsKey(event.getEventId())) {
+            pendingChanges.merge(event.getEventId(), event.getDelta(), Integer::sum);
+            changesReceived.incrementAndGet();
+        }
+    }
+
+    /**
+     * Queue the changes collected since the last push for their subscribers
+     */
+    @Scheduled(fixedDelayString = "${ticketing.stream.interval-ms:1000}")
+    public void pushChanges() {
+        if (pendingChanges.isEmpty()) {
+            return;
+        }
+        long started = System.nanoTime();
+        for (Long eventId : new ArrayList<>(pendingChanges.keySet())) {
+            Integer change = pendingChanges.remove(eventId);
+            if (change != null) {
+                pushChange(eventId, change);
+            }
+        }
+        long micros = (System.nanoTime() - started) / 1000;
+        lastPushMicros.set(micros);
+        maxPushMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * Comment line to every subscriber: keeps proxies from closing idle streams and finds
+     * clients that have gone away
+     */
+    @Scheduled(fixedDelayString = "${ticketing.stream.heartbeat-ms:20000}")
+    public void sendHeartbeats() {
+        if (subscriberCount.get() == 0) {
+            return;
+        }
+        Set<Subscriber> everyone = new HashSet<>();
+        subscribers.values().forEach(everyone::addAll);
+        for (Subscriber subscriber : everyone) {
+            // A subscriber with messages still queued is not idle and gets no heartbeat
+            if (subscriber.queued.get() == 0) {
+                enqueue(subscriber, HEARTBEAT);
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("subscribers", subscriberCount.get());
+        stats.put("peakSubscribers", peakSubscribers.get());
+        stats.put("maxSubscribers", maxSubscribers);
+        stats.put("watchedEvents", subscribers.size());
+        stats.put("subscribersRejected", subscribersRejected.get());
+        stats.put("subscribersDropped", subscribersDropped.get());
+        stats.put("slowSubscribersDropped", slowSubscribersDropped.get());
+        stats.put("changesReceived", changesReceived.get());
+        stats.put("updatesPushed", updatesPushed.get());
+        stats.put("messagesSent", messagesSent.get());
+        stats.put("lastPushMicros", lastPushMicros.get());
+        stats.put("maxPushMicros", maxPushMicros.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.shutdownNow();
+        subscribers.values().forEach(watching -> watching.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    private void pushChange(Long eventId, Integer change) {
+        Set<Subscriber> watching = subscribers.get(eventId);
+        if (watching == null || watching.isEmpty()) {
+            return;
+        }
+        Optional<CatalogEvent> event = catalogCache.getEvent(eventId);
+        if (event.isEmpty()) {
+            return;
+        }
+        String message = availabilityFrame(eventId, event.get().getAvailableTickets(), change);
+        for (Subscriber subscriber : watching) {
+            enqueue(subscriber, message);
+        }
+        updatesPushed.incrementAndGet();
+    }
+
+    /**
+     * Add a message to a subscriber's queue and make sure a writer is on it. Never blocks:
+     * a subscriber that already has the maximum waiting is dropped instead.
+     */
+    private void enqueue(Subscriber subscriber, String message) {
+        if (subscriber.removed.get()) {
+            return;
+        }
+        if (subscriber.queued.incrementAndGet() > maxQueuedMessages) {
+            subscriber.queued.decrementAndGet();
+            if (remove(subscriber)) {
+                slowSubscribersDropped.incrementAndGet();
+            }
+            // The writer closes the stream once its current write returns
+            scheduleDrain(subscriber);
+            return;
+        }
+        subscriber.queue.add(message);
+        scheduleDrain(subscriber);
+    }
+
+    /**
+     * The response a subscriber's messages are written to; overridden in tests to play a slow client
+     */
+    ResponseBodyEmitter createEmitter(long timeoutMs) {
+        return new ResponseBodyEmitter(timeoutMs);
+    }
+
+    private void scheduleDrain(Subscriber subscriber) {
+        if (subscriber.draining.compareAndSet(false, true)) {
+            try {
+                writers.execute(() -> drain(subscriber));
+            } catch (RuntimeException e) {
+                subscriber.draining.set(false); // shutting down
+            }
+        }
+    }
+
+    /**
+     * Write out a subscriber's queue; runs on at most one writer thread per subscriber
+     */
+    private void drain(Subscriber subscriber) {
+        while (true) {
+            String message;
+            while ((message = subscriber.queue.poll()) != null) {
+                subscriber.queued.decrementAndGet();
+                if (!subscriber.removed.get()) {
+                    send(subscriber, message);
+                }
+            }
+            if (subscriber.removed.get() && subscriber.closed.compareAndSet(false, true)) {
+                // Dropped while queued messages were waiting; let the client reconnect
+                subscriber.emitter.complete();
+            }
+            subscriber.draining.set(false);
+            // A message queued after the last poll but before draining was cleared
+            if (subscriber.queue.isEmpty() || !subscriber.draining.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    private void send(Subscriber subscriber, String message) {
+        try {
+            subscriber.emitter.send(message, TEXT_UTF8);
+            messagesSent.incrementAndGet();
+        } catch (IOException | IllegalStateException e) {
+            // Client went away, or the stream already completed
+            if (remove(subscriber)) {
+                subscribersDropped.incrementAndGet();
+            }
+            if (subscriber.closed.compareAndSet(false, true)) {
+                subscriber.emitter.completeWithError(e);
+            }
+        }
+    }
+
+    /**
+     * Unregister a subscriber; true if this call removed it
+     */
+    private boolean remove(Subscriber subscriber) {
+        if (!subscriber.removed.compareAndSet(false, true)) {
+            return false;
+        }
+        for (Long eventId : subscriber.eventIds) {
+            subscribers.computeIfPresent(eventId, (id, watching) -> {
+                watching.remove(subscriber);
+                return watching.isEmpty() ? null : watching;
+            });
+        }
+        subscriberCount.decrementAndGet();
+        return true;
+    }
+
+    private String availabilityFrame(Long eventId, int availableTickets, int change) {
+        return "event:availability\ndata:" + toJson(eventId, availableTickets, change) + "\n\n";
+    }
+
+    private String toJson(Long eventId, int availableTickets, int change) {
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("eventId", eventId);
+        message.put("availableTickets", availableTickets);
+        message.put("change", change);
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Subscriber {
+
+        private final ResponseBodyEmitter emitter;
+        private final List<Long> eventIds;
+        private final Queue<String> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean removed = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscriber(ResponseBodyEmitter emitter, List<Long> eventIds) {
+            this.emitter = emitter;
+            this.eventIds = eventIds;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.codestars.ticketing.service;
+
+/**
+ * Published when an event is created, edited or deleted (not on availability changes)
+ * Listen with @TransactionalEventListener to see only committed changes
+ */
+public class CatalogChangedEvent {
+
+    private final Long eventId;
+
+    public CatalogChangedEvent(Long eventId) {
+        this.eventId = eventId;
+    }
+
+    public Long getEventId() {
+        return eventId;
+    }
+}
@@ -0,0 +1,114 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.model.Event;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Catalog Event - Immutable copy of an event's own fields for the catalog cache
+ *
+ * availableTickets is read from a shared counter that purchases and cancellations update
+ * in place, so a cached instance never has to be rebuilt when tickets sell. Serializes to
+ * the same JSON as Event.
+ */
+@JsonPropertyOrder({"id", "name", "description", "location", "eventDate", "priceKES",
+        "availableTickets", "totalTickets", "category", "imageUrl", "highDemand"})
+public final class CatalogEvent {
+
+    private final Long id;
+    private final String name;
+    private final String description;
+    private final String location;
+    private final LocalDateTime eventDate;
+    private final Double priceKES;
+    private final Integer totalTickets;
+    private final String category;
+    private final String imageUrl;
+    private final Boolean highDemand;
+    private final Long version;
+    private final String town;
+    private final AtomicInteger availability;
+
+    CatalogEvent(Event event, AtomicInteger availability) {
+        this.id = event.getId();
+        this.name = event.getName();
+        this.description = event.getDescription();
+        this.location = event.getLocation();
+        this.eventDate = event.getEventDate();
+        this.priceKES = event.getPriceKES();
+        this.totalTickets = event.getTotalTickets();
+        this.category = event.getCategory();
+        this.imageUrl = event.getImageUrl();
+        this.highDemand = event.getHighDemand();
+        this.version = event.getVersion();
+        this.town = townOf(event.getLocation());
+        this.availability = availability;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public LocalDateTime getEventDate() {
+        return eventDate;
+    }
+
+    public Double getPriceKES() {
+        return priceKES;
+    }
+
+    public Integer getAvailableTickets() {
+        return availability.get();
+    }
+
+    public Integer getTotalTickets() {
+        return totalTickets;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public Boolean getHighDemand() {
+        return highDemand;
+    }
+
+    @JsonIgnore
+    public Long getVersion() {
+        return version;
+    }
+
+    /**
+     * The part of the location after its last comma, e.g. "Nairobi" for "KICC, Nairobi"
+     */
+    @JsonIgnore
+    public String getTown() {
+        return town;
+    }
+
+    private static String townOf(String location) {
+        if (location.contains(",")) {
+            return location.substring(location.lastIndexOf(",") + 1).trim();
+        }
+        return location;
+    }
+}
@@ -0,0 +1,69 @@
+package com.codestars.ticketing.service;
+
+import java.util.Objects;
+
+/**
+ * Catalog Revision - Change count of a piece of catalog content, for ETag headers
+ *
+ * Holders replace their revision with next() after applying a change, never before, so a
+ * response whose body was read after taking the revision is never older than its ETag.
+ * ETags include a per-process prefix, as counts restart from zero when the server does.
+ *
+ * No Last-Modified is derived from it: HTTP dates have whole seconds, so a client revalidating
+ * with If-Modified-Since would be told 304 after a second change within the same second.
+ *
+ * An event's revision also carries the entity version last loaded from the database, trusted
+ * until the cached copy expires; an edit made on another node changes the version on reload
+ * and so moves the revision on, without the 304 path having to read the event.
+ */
+public final class CatalogRevision {
+
+    private static final String INSTANCE = Long.toString(System.currentTimeMillis(), 36);
+
+    public static final CatalogRevision INITIAL = new CatalogRevision(0, null, 0);
+
+    private final long changes;
+    private final Long version;
+    private final long versionExpiresAt;
+
+    private CatalogRevision(long changes, Long version, long versionExpiresAt) {
+        this.changes = changes;
+        this.version = version;
+        this.versionExpiresAt = versionExpiresAt;
+    }
+
+    /**
+     * The revision after a change; an edit of the content itself should use withoutVersion()
+     * as well, so the next request reloads it
+     */
+    public CatalogRevision next() {
+        return new CatalogRevision(changes + 1, version, versionExpiresAt);
+    }
+
+    /**
+     * Record the entity version just loaded; a version other than the known one is a change
+     */
+    public CatalogRevision withVersion(Long loadedVersion, long expiresAt) {
+        long count = version == null || Objects.equals(version, loadedVersion) ? changes : changes + 1;
+        return new CatalogRevision(count, loadedVersion, expiresAt);
+    }
+
+    public CatalogRevision withoutVersion() {
+        return new CatalogRevision(changes, null, 0);
+    }
+
+    /**
+     * Whether the entity version is known and still within its cache lifetime, i.e. the ETag
+     * can be checked without loading the content
+     */
+    public boolean isCurrent() {
+        return version != null && versionExpiresAt > System.currentTimeMillis();
+    }
+
+    /**
+     * Strong ETag for this revision of the named content, e.g. "catalog" or "event-42"
+     */
+    public String eTag(String scope) {
+        return "\"" + scope + "-" + INSTANCE + "-" + changes + "\"";
+    }
+}
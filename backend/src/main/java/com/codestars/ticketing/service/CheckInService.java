@@ -0,0 +1,333 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.model.Ticket;
+import com.codestars.ticketing.repository.TicketRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Check-In Service - Gate scanning that marks tickets USED
+ *
+ * The first scan for an event loads that event's ticket codes into an in-memory index.
+ * A scan is then a hash lookup plus one compare-and-set from ACTIVE to USED, so
+ * concurrent scans of the same code at different turnstiles admit exactly one person.
+ * Successful scans are queued and written back to the tickets table in batches.
+ * Tickets issued later reach the index through transaction events. A cancellation
+ * claims its ticket in the index before it commits, so it cannot overtake a scan.
+ *
+ * The index is per node: route all gates for one event to the same backend instance.
+ */
+@Service
+public class CheckInService {
+
+    private static final int WRITE_BATCH_SIZE = 1000;
+
+    private final TicketRepository ticketRepository;
+    private final TicketCodeGenerator codeGenerator;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<Long, EventIndex> indexes = new ConcurrentHashMap<>();
+    private final Queue<Long> pendingUsed = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    // Metrics
+    private final AtomicLong scans = new AtomicLong();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    @Autowired
+    public CheckInService(TicketRepository ticketRepository,
+                          TicketCodeGenerator codeGenerator,
+                          PlatformTransactionManager transactionManager) {
+        this.ticketRepository = ticketRepository;
+        this.codeGenerator = codeGenerator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public enum Outcome {
+        ADMITTED, ALREADY_USED, CANCELLED, WRONG_EVENT, NOT_FOUND, INVALID_CODE
+    }
+
+    /**
+     * Scan a ticket at a gate for the given event
+     */
+    public CheckInResult checkIn(Long eventId, String ticketCode) {
+        return checkIn(eventId, ticketCode, Instant.now());
+    }
+
+    /**
+     * Scan a ticket with the time the gate saw it, e.g. when replaying offline scans
+     */
+    public CheckInResult checkIn(Long eventId, String ticketCode, Instant scannedAt) {
+        scans.incrementAndGet();
+        String code = codeGenerator.normalize(ticketCode);
+        if (code == null) {
+            rejected.incrementAndGet();
+            return new CheckInResult(Outcome.INVALID_CODE, ticketCode, null, null);
+        }
+
+        EventIndex index = indexes.computeIfAbsent(eventId, this::loadIndex);
+        GateEntry entry = index.entries.get(code);
+        if (entry == null) {
+            Outcome miss = lookupMissing(eventId, code, index);
+            if (miss != null) {
+                rejected.incrementAndGet();
+                return new CheckInResult(miss, code, null, null);
+            }
+            entry = index.entries.get(code);
+        }
+
+        if (entry.state.compareAndSet(Ticket.TicketStatus.ACTIVE, Ticket.TicketStatus.USED)) {
+            entry.checkedInAt = scannedAt;
+            pendingUsed.add(entry.ticketId);
+            pendingCount.incrementAndGet();
+            admitted.incrementAndGet();
+            return new CheckInResult(Outcome.ADMITTED, code, entry.quantity, entry.checkedInAt);
+        }
+
+        if (entry.state.get() == Ticket.TicketStatus.USED) {
+            duplicates.incrementAndGet();
+            return new CheckInResult(Outcome.ALREADY_USED, code, entry.quantity, entry.checkedInAt);
+        }
+        rejected.incrementAndGet();
+        return new CheckInResult(Outcome.CANCELLED, code, entry.quantity, null);
+    }
+
+    /**
+     * Mark an ACTIVE ticket CANCELLED at the gates before its cancellation commits. The
+     * same compare-and-set as a scan decides the race: if a scan got there first this
+     * returns false and the cancellation must be abandoned; otherwise every later scan is
+     * refused. If the caller's transaction rolls back the ticket becomes ACTIVE again.
+     * Loads the event's index if no gate has scanned for it on this node yet.
+     */
+    public boolean tryCancel(Ticket ticket) {
+        if (ticket.getStatus() != Ticket.TicketStatus.ACTIVE) {
+            return false;
+        }
+        EventIndex index = indexes.computeIfAbsent(ticket.getEvent().getId(), this::loadIndex);
+        GateEntry entry = index.add(ticket.getTicketCode(),
+                new GateEntry(ticket.getId(), ticket.getQuantity(), Ticket.TicketStatus.ACTIVE));
+        if (!entry.state.compareAndSet(Ticket.TicketStatus.ACTIVE, Ticket.TicketStatus.CANCELLED)) {
+            return false;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        entry.state.compareAndSet(Ticket.TicketStatus.CANCELLED, Ticket.TicketStatus.ACTIVE);
+                    }
+                }
+            });
+        }
+        return true;
+    }
+
+    /**
+     * A ticket's status as the gates see it, including scans and cancellations not yet
+     * written back. Only answers from an index this node has already loaded for the event,
+     * so it never reads the database.
+     * @return the status, or null if this node is not checking in the event or does not know the ticket
+     */
+    public Ticket.TicketStatus indexedStatus(Long eventId, Long ticketId) {
+        EventIndex index = indexes.get(eventId);
+        if (index == null) {
+            return null;
+        }
+        GateEntry entry = index.byTicketId.get(ticketId);
+        return entry != null ? entry.state.get() : null;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTicketIssued(TicketIssuedEvent event) {
+        EventIndex index = indexes.get(event.getEventId());
+        if (index != null) {
+            index.add(event.getTicketCode(), new GateEntry(event.getTicketId(),
+                    event.getQuantity(), Ticket.TicketStatus.ACTIVE));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTicketCancelled(TicketCancelledEvent event) {
+        EventIndex index = indexes.get(event.getEventId());
+        if (index != null) {
+            GateEntry entry = index.add(event.getTicketCode(),
+                    new GateEntry(event.getTicketId(), event.getQuantity(), Ticket.TicketStatus.CANCELLED));
+            entry.state.compareAndSet(Ticket.TicketStatus.ACTIVE, Ticket.TicketStatus.CANCELLED);
+        }
+    }
+
+    /**
+     * Write queued scans back to the tickets table
+     */
+    @Scheduled(fixedDelayString = "${ticketing.checkin.flush-interval-ms:250}")
+    public void flushToDatabase() {
+        while (true) {
+            List<Long> batch = new ArrayList<>(Math.min(WRITE_BATCH_SIZE, Math.max(1, pendingCount.get())));
+            Long ticketId;
+            while (batch.size() < WRITE_BATCH_SIZE && (ticketId = pendingUsed.poll()) != null) {
+                batch.add(ticketId);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            pendingCount.addAndGet(-batch.size());
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> ticketRepository.updateStatus(batch,
+                        Ticket.TicketStatus.ACTIVE, Ticket.TicketStatus.USED, LocalDateTime.now()));
+                written.addAndGet(batch.size());
+            } catch (RuntimeException e) {
+                pendingUsed.addAll(batch);
+                pendingCount.addAndGet(batch.size());
+                System.err.println("Failed to write check-ins, will retry: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    public Map<String, Object> getStats(Long eventId) {
+        EventIndex index = indexes.get(eventId);
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("eventId", eventId);
+        stats.put("indexed", index != null);
+        if (index != null) {
+            int checkedIn = 0;
+            int active = 0;
+            for (GateEntry entry : index.entries.values()) {
+                Ticket.TicketStatus state = entry.state.get();
+                if (state == Ticket.TicketStatus.USED) {
+                    checkedIn++;
+                } else if (state == Ticket.TicketStatus.ACTIVE) {
+                    active++;
+                }
+            }
+            stats.put("ticketsCheckedIn", checkedIn);
+            stats.put("ticketsNotYetScanned", active);
+        }
+        stats.put("scans", scans.get());
+        stats.put("admitted", admitted.get());
+        stats.put("duplicates", duplicates.get());
+        stats.put("rejected", rejected.get());
+        stats.put("pendingWrites", pendingCount.get());
+        stats.put("written", written.get());
+        return stats;
+    }
+
+    private EventIndex loadIndex(Long eventId) {
+        EventIndex index = new EventIndex();
+        for (TicketRepository.GateView view : ticketRepository.findGateViewsByEventId(eventId)) {
+            index.add(view.getTicketCode(), new GateEntry(view.getId(), view.getQuantity(), view.getStatus()));
+        }
+        return index;
+    }
+
+    /**
+     * A code missing from the index: either issued while the index was loading, or not
+     * a ticket for this event. Adds the ticket and returns null in the first case.
+     */
+    private Outcome lookupMissing(Long eventId, String code, EventIndex index) {
+        Optional<TicketRepository.GateView> found = ticketRepository.findGateViewByTicketCode(code);
+        if (found.isEmpty()) {
+            return Outcome.NOT_FOUND;
+        }
+        TicketRepository.GateView view = found.get();
+        if (!view.getEventId().equals(eventId)) {
+            return Outcome.WRONG_EVENT;
+        }
+        index.add(code, new GateEntry(view.getId(), view.getQuantity(), view.getStatus()));
+        return null;
+    }
+
+    /**
+     * Outcome of one scan
+     */
+    public static final class CheckInResult {
+
+        private final Outcome outcome;
+        private final String ticketCode;
+        private final Integer quantity;
+        private final Instant checkedInAt;
+
+        private CheckInResult(Outcome outcome, String ticketCode, Integer quantity, Instant checkedInAt) {
+            this.outcome = outcome;
+            this.ticketCode = ticketCode;
+            this.quantity = quantity;
+            this.checkedInAt = checkedInAt;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        public String getTicketCode() {
+            return ticketCode;
+        }
+
+        public Integer getQuantity() {
+            return quantity;
+        }
+
+        public Instant getCheckedInAt() {
+            return checkedInAt;
+        }
+    }
+
+    /**
+     * One event's tickets by code, as the gates scan them, and by id, as tokens carry them
+     */
+    private static final class EventIndex {
+
+        private final Map<String, GateEntry> entries = new ConcurrentHashMap<>();
+        private final Map<Long, GateEntry> byTicketId = new ConcurrentHashMap<>();
+
+        /**
+         * @return the entry now indexed for the code: the given one, or one added earlier
+         */
+        private GateEntry add(String code, GateEntry entry) {
+            GateEntry existing = entries.putIfAbsent(code, entry);
+            if (existing != null) {
+                return existing;
+            }
+            byTicketId.put(entry.ticketId, entry);
+            return entry;
+        }
+    }
+
+    private static final class GateEntry {
+
+        private final Long ticketId;
+        private final int quantity;
+        private final AtomicReference<Ticket.TicketStatus> state;
+        private volatile Instant checkedInAt;
+
+        private GateEntry(Long ticketId, int quantity, Ticket.TicketStatus status) {
+            this.ticketId = ticketId;
+            this.quantity = quantity;
+            this.state = new AtomicReference<>(status);
+        }
+    }
+}
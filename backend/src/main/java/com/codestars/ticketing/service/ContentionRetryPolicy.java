@@ -0,0 +1,64 @@
+package com.codestars.ticketing.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Contention Retry Policy - Bounded retry with exponential backoff
+ *
+ * Retries a unit of work (normally a whole transaction) when the database reports a
+ * concurrency conflict: optimistic lock failures, lock timeouts or deadlocks. When the
+ * attempts run out it throws TemporaryFailureException, so callers can tell the client
+ * to try again rather than report a final outcome. Backoff
+ * doubles per attempt up to a cap, with full jitter so competing buyers spread out
+ * instead of colliding again on the same row.
+ */
+@Component
+public class ContentionRetryPolicy {
+
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+
+    @Autowired
+    public ContentionRetryPolicy(@Value("${ticketing.retry.max-attempts:4}") int maxAttempts,
+                                 @Value("${ticketing.retry.initial-backoff-ms:10}") long initialBackoffMs,
+                                 @Value("${ticketing.retry.max-backoff-ms:200}") long maxBackoffMs) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    /**
+     * Run the action, retrying on concurrency conflicts.
+     * Any other exception is passed straight through on the first attempt.
+     */
+    public <T> T execute(Supplier<T> action) {
+        long backoff = initialBackoffMs;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw new TemporaryFailureException("The system is busy processing other requests. Please try again.", e);
+                }
+                sleep(ThreadLocalRandom.current().nextLong(backoff + 1));
+                backoff = Math.min(backoff * 2, maxBackoffMs);
+            }
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TemporaryFailureException("Interrupted while waiting to retry", e);
+        }
+    }
+}
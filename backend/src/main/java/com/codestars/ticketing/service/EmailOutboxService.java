@@ -0,0 +1,300 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.model.EmailOutboxMessage;
+import com.codestars.ticketing.model.Ticket;
+import com.codestars.ticketing.repository.EmailOutboxRepository;
+import com.codestars.ticketing.repository.TicketRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.mail.SendFailedException;
+import javax.mail.internet.AddressException;
+import javax.mail.internet.MimeMessage;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Email Outbox Service - Transactional outbox for confirmation emails
+ *
+ * Purchases only insert an outbox row in their own transaction. A scheduled poller
+ * claims due rows in batches and hands each batch to a small, bounded worker pool,
+ * which renders the emails and sends the whole batch over one SMTP connection.
+ * Failed messages are retried with exponential backoff; permanent failures (bad
+ * addresses, unrenderable messages) and messages that run out of attempts are
+ * marked DEAD with the last error kept for inspection.
+ */
+@Service
+public class EmailOutboxService {
+
+    private final EmailOutboxRepository outboxRepository;
+    private final TicketRepository ticketRepository;
+    private final EmailService emailService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final long claimTimeoutMs;
+    private final ThreadPoolExecutor workers;
+
+    // Metrics
+    private final AtomicLong batchesSent = new AtomicLong();
+    private final AtomicLong messagesSent = new AtomicLong();
+    private final AtomicLong messagesRetried = new AtomicLong();
+    private final AtomicLong messagesDead = new AtomicLong();
+
+    @Autowired
+    public EmailOutboxService(EmailOutboxRepository outboxRepository,
+                              TicketRepository ticketRepository,
+                              EmailService emailService,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${ticketing.email.outbox.batch-size:50}") int batchSize,
+                              @Value("${ticketing.email.outbox.worker-threads:2}") int workerThreads,
+                              @Value("${ticketing.email.outbox.queue-capacity:4}") int queueCapacity,
+                              @Value("${ticketing.email.outbox.max-attempts:8}") int maxAttempts,
+                              @Value("${ticketing.email.outbox.initial-backoff-ms:30000}") long initialBackoffMs,
+                              @Value("${ticketing.email.outbox.max-backoff-ms:3600000}") long maxBackoffMs,
+                              @Value("${ticketing.email.outbox.claim-timeout-ms:600000}") long claimTimeoutMs) {
+        this.outboxRepository = outboxRepository;
+        this.ticketRepository = ticketRepository;
+        this.emailService = emailService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.claimTimeoutMs = claimTimeoutMs;
+
+        int threads = Math.max(1, workerThreads);
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                    Thread thread = new Thread(runnable, "email-outbox-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Queue a confirmation email; must be called inside the transaction that saves the ticket
+     */
+    public void enqueueTicketConfirmation(Ticket ticket) {
+        outboxRepository.save(new EmailOutboxMessage(EmailOutboxMessage.MessageType.TICKET_CONFIRMATION, ticket.getId()));
+    }
+
+    public void enqueueTicketConfirmations(Collection<Ticket> tickets) {
+        List<EmailOutboxMessage> messages = new ArrayList<>(tickets.size());
+        tickets.forEach(ticket -> messages.add(
+                new EmailOutboxMessage(EmailOutboxMessage.MessageType.TICKET_CONFIRMATION, ticket.getId())));
+        outboxRepository.saveAll(messages);
+    }
+
+    /**
+     * Claim due messages while the worker pool has room for more batches
+     */
+    @Scheduled(fixedDelayString = "${ticketing.email.outbox.poll-interval-ms:1000}")
+    public void dispatchDueMessages() {
+        while (workers.getQueue().remainingCapacity() > 0) {
+            String token = UUID.randomUUID().toString();
+            List<EmailOutboxMessage> batch = transactionTemplate.execute(status -> claimBatch(token));
+            if (batch == null || batch.isEmpty()) {
+                return;
+            }
+            try {
+                workers.execute(() -> sendBatch(batch));
+            } catch (RejectedExecutionException e) {
+                // Leave the claim; it is released after the claim timeout
+                return;
+            }
+            if (batch.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Recover messages claimed by a worker that never reported back
+     */
+    @Scheduled(fixedDelayString = "${ticketing.email.outbox.claim-timeout-ms:600000}")
+    public void releaseStaleClaims() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(claimTimeoutMs, ChronoUnit.MILLIS);
+        Integer released = transactionTemplate.execute(status -> outboxRepository.releaseStaleClaims(cutoff,
+                EmailOutboxMessage.Status.PENDING, EmailOutboxMessage.Status.SENDING));
+        if (released != null && released > 0) {
+            System.out.println("Released " + released + " stale email outbox claims");
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", outboxRepository.countByStatus(EmailOutboxMessage.Status.PENDING));
+        stats.put("sending", outboxRepository.countByStatus(EmailOutboxMessage.Status.SENDING));
+        stats.put("sent", outboxRepository.countByStatus(EmailOutboxMessage.Status.SENT));
+        stats.put("dead", outboxRepository.countByStatus(EmailOutboxMessage.Status.DEAD));
+        stats.put("activeWorkers", workers.getActiveCount());
+        stats.put("queuedBatches", workers.getQueue().size());
+        stats.put("batchesSent", batchesSent.get());
+        stats.put("messagesSent", messagesSent.get());
+        stats.put("messagesRetried", messagesRetried.get());
+        stats.put("messagesDead", messagesDead.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    private List<EmailOutboxMessage> claimBatch(String token) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> ids = outboxRepository.findDueIds(EmailOutboxMessage.Status.PENDING, now,
+                PageRequest.of(0, batchSize));
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        if (outboxRepository.claim(ids, token, now,
+                EmailOutboxMessage.Status.PENDING, EmailOutboxMessage.Status.SENDING) == 0) {
+            return List.of();
+        }
+        return outboxRepository.findByClaimToken(token);
+    }
+
+    /**
+     * Render and send one claimed batch, then record the outcome of every message
+     */
+    private void sendBatch(List<EmailOutboxMessage> batch) {
+        Map<Long, EmailOutboxMessage> byTicketId = new HashMap<>();
+        batch.forEach(message -> byTicketId.put(message.getTicketId(), message));
+
+        Map<MimeMessage, EmailOutboxMessage> rendered = new LinkedHashMap<>();
+        for (Ticket ticket : ticketRepository.findWithUserAndEventByIdIn(byTicketId.keySet())) {
+            EmailOutboxMessage message = byTicketId.remove(ticket.getId());
+            try {
+                rendered.put(emailService.createTicketConfirmation(ticket, ticket.getUser()), message);
+            } catch (Exception e) {
+                markFailed(message, e, true);
+            }
+        }
+        // Anything left refers to a ticket that no longer exists
+        byTicketId.values().forEach(message ->
+                markFailed(message, new IllegalStateException("Ticket " + message.getTicketId() + " not found"), true));
+
+        if (!rendered.isEmpty()) {
+            Map<Object, Exception> failures = deliver(rendered.keySet().toArray(new MimeMessage[0]));
+            rendered.forEach((mime, message) -> {
+                Exception failure = failures.get(mime);
+                if (failure == null) {
+                    message.setStatus(EmailOutboxMessage.Status.SENT);
+                    message.setSentAt(LocalDateTime.now());
+                    message.setAttempts(message.getAttempts() + 1);
+                    message.setClaimToken(null);
+                    message.setLastError(null);
+                    messagesSent.incrementAndGet();
+                } else {
+                    markFailed(message, failure, isPermanent(failure));
+                }
+            });
+            batchesSent.incrementAndGet();
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> outboxRepository.saveAll(batch));
+        } catch (RuntimeException e) {
+            // The claim timeout puts these back in the queue
+            System.err.println("Failed to record email outbox results: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the messages that failed, mapped to their error
+     */
+    private Map<Object, Exception> deliver(MimeMessage[] messages) {
+        try {
+            emailService.send(messages);
+            return Map.of();
+        } catch (MailSendException e) {
+            if (!e.getFailedMessages().isEmpty()) {
+                return new HashMap<>(e.getFailedMessages());
+            }
+            return failAll(messages, e);
+        } catch (MailAuthenticationException e) {
+            System.err.println("Mail server rejected credentials: " + e.getMessage());
+            return failAll(messages, e);
+        } catch (MailException e) {
+            return failAll(messages, e);
+        }
+    }
+
+    private Map<Object, Exception> failAll(MimeMessage[] messages, Exception e) {
+        Map<Object, Exception> failures = new HashMap<>();
+        for (MimeMessage message : messages) {
+            failures.put(message, e);
+        }
+        return failures;
+    }
+
+    private void markFailed(EmailOutboxMessage message, Exception error, boolean permanent) {
+        int attempts = message.getAttempts() + 1;
+        message.setAttempts(attempts);
+        message.setClaimToken(null);
+        message.setLastError(truncate(String.valueOf(error.getMessage())));
+
+        if (permanent || attempts >= maxAttempts) {
+            message.setStatus(EmailOutboxMessage.Status.DEAD);
+            messagesDead.incrementAndGet();
+            System.err.println("Email outbox message " + message.getId() + " dead-lettered: " + error.getMessage());
+            return;
+        }
+
+        long backoff = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempts - 1, 20));
+        message.setStatus(EmailOutboxMessage.Status.PENDING);
+        message.setNextAttemptAt(LocalDateTime.now().plus(backoff, ChronoUnit.MILLIS));
+        messagesRetried.incrementAndGet();
+    }
+
+    /**
+     * Errors that will not go away by retrying: malformed messages and rejected recipients
+     */
+    private boolean isPermanent(Exception error) {
+        if (error instanceof MailParseException || error instanceof MailPreparationException) {
+            return true;
+        }
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof AddressException) {
+                return true;
+            }
+            if (cause instanceof SendFailedException) {
+                SendFailedException sendFailed = (SendFailedException) cause;
+                return sendFailed.getInvalidAddresses() != null && sendFailed.getInvalidAddresses().length > 0;
+            }
+        }
+        return false;
+    }
+
+    private String truncate(String value) {
+        return value.length() > 500 ? value.substring(0, 500) : value;
+    }
+}
@@ -4,112 +4,139 @@ import com.codestars.ticketing.model.Event;
 import com.codestars.ticketing.model.Ticket;
 import com.codestars.ticketing.model.User;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import javax.mail.MessagingException;
 import javax.mail.internet.MimeMessage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
 
 @Service
 public class EmailService {
 
+    private static final DateTimeFormatter EVENT_DATE_FORMAT =
+            DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy 'at' hh:mm a");
+    // DecimalFormat is not thread-safe
+    private static final ThreadLocal<DecimalFormat> PRICE_FORMAT =
+            ThreadLocal.withInitial(() -> new DecimalFormat("#,##0.00"));
+    private static final ThreadLocal<StringBuilder> BUFFER =
+            ThreadLocal.withInitial(() -> new StringBuilder(8192));
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
     @Autowired
     private JavaMailSender mailSender;
 
-    public void sendTicketConfirmation(Ticket ticket, User user) throws MessagingException {
+    @Value("${ticketing.email.fragment-cache-size:1000}")
+    private int maxFragments;
+
+    private EmailTemplate confirmationTemplate;
+
+    // Confirmation template with the event fields already filled in, keyed by event id.
+    // Access-ordered so events no longer selling (or deleted) drop out first; guarded by itself
+    private final LinkedHashMap<Long, EventFragment> eventFragments = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, EventFragment> eldest) {
+            return size() > Math.max(1, maxFragments);
+        }
+    };
+
+    @PostConstruct
+    public void loadTemplates() throws IOException {
+        try (InputStream in = new ClassPathResource("email/ticket-confirmation.html").getInputStream()) {
+            confirmationTemplate = EmailTemplate.compile(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    public MimeMessage createTicketConfirmation(Ticket ticket, User user) throws MessagingException {
         MimeMessage message = mailSender.createMimeMessage();
         MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
 
         helper.setTo(user.getEmail());
         helper.setSubject("Ticket Confirmation - " + ticket.getEvent().getName());
         helper.setText(buildEmailTemplate(ticket, user, ticket.getEvent()), true);
+        return message;
+    }
 
-        mailSender.send(message);
+    /**
+     * Send several messages over a single SMTP connection
+     * @throws org.springframework.mail.MailSendException listing the messages that failed
+     */
+    public void send(MimeMessage... messages) {
+        mailSender.send(messages);
     }
 
+    /**
+     * Render the confirmation HTML: the event part comes from the per-event cache, only
+     * the buyer and ticket fields are written for each email
+     */
     private String buildEmailTemplate(Ticket ticket, User user, Event event) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy 'at' hh:mm a");
-        String formattedDate = event.getEventDate().format(formatter);
-        
-        return "<!DOCTYPE html>" +
-                "<html>" +
-                "<head>" +
-                "<style>" +
-                "body { font-family: Arial, sans-serif; line-height: 1.6; color: #333; }" +
-                ".container { max-width: 600px; margin: 0 auto; padding: 20px; }" +
-                ".header { background-color: #0d6efd; color: white; padding: 20px; text-align: center; }" +
-                ".content { background-color: #f8f9fa; padding: 20px; margin: 20px 0; }" +
-                ".ticket-code { background-color: #fff; border: 2px dashed #0d6efd; padding: 15px; text-align: center; font-size: 24px; font-weight: bold; margin: 20px 0; }" +
-                ".details { background-color: #fff; padding: 15px; margin: 10px 0; }" +
-                ".details-row { display: flex; justify-content: space-between; padding: 8px 0; border-bottom: 1px solid #dee2e6; }" +
-                ".label { font-weight: bold; }" +
-                ".footer { text-align: center; color: #6c757d; font-size: 12px; margin-top: 20px; }" +
-                "</style>" +
-                "</head>" +
-                "<body>" +
-                "<div class='container'>" +
-                "<div class='header'>" +
-                "<h1>Ticket Confirmation</h1>" +
-                "</div>" +
-                "<div class='content'>" +
-                "<p>Dear " + user.getName() + ",</p>" +
-                "<p>Thank you for your purchase! Your ticket has been confirmed.</p>" +
-                "<div class='ticket-code'>" +
-                ticket.getTicketCode() +
-                "</div>" +
-                "<div class='details'>" +
-                "<h3>Event Details</h3>" +
-                "<div class='details-row'>" +
-                "<span class='label'>Event:</span>" +
-                "<span>" + event.getName() + "</span>" +
-                "</div>" +
-                "<div class='details-row'>" +
-                "<span class='label'>Location:</span>" +
-                "<span>" + event.getLocation() + "</span>" +
-                "</div>" +
-                "<div class='details-row'>" +
-                "<span class='label'>Date & Time:</span>" +
-                "<span>" + formattedDate + "</span>" +
-                "</div>" +
-                "<div class='details-row'>" +
-                "<span class='label'>Category:</span>" +
-                "<span>" + event.getCategory() + "</span>" +
-                "</div>" +
-                "</div>" +
-                "<div class='details'>" +
-                "<h3>Ticket Information</h3>" +
-                "<div class='details-row'>" +
-                "<span class='label'>Quantity:</span>" +
-                "<span>" + ticket.getQuantity() + " ticket(s)</span>" +
-                "</div>" +
-                "<div class='details-row'>" +
-                "<span class='label'>Total Paid:</span>" +
-                "<span>KES " + String.format("%,.2f", ticket.getTotalPrice()) + "</span>" +
-                "</div>" +
-                "<div class='details-row'>" +
-                "<span class='label'>Status:</span>" +
-                "<span>" + ticket.getStatus() + "</span>" +
-                "</div>" +
-                "</div>" +
-                "<div style='background-color: #d1ecf1; border-left: 4px solid #0c5460; padding: 15px; margin: 20px 0;'>" +
-                "<h4 style='margin-top: 0; color: #0c5460;'>Important Instructions</h4>" +
-                "<ul style='margin: 0; padding-left: 20px;'>" +
-                "<li>Present this ticket code at the event entrance</li>" +
-                "<li>Please arrive 30 minutes before the event starts</li>" +
-                "<li>This ticket is non-refundable and non-transferable</li>" +
-                "<li>Keep this email for your records</li>" +
-                "</ul>" +
-                "</div>" +
-                "<p>We look forward to seeing you at the event!</p>" +
-                "</div>" +
-                "<div class='footer'>" +
-                "<p>2025 Event Ticketing Kenya</p>" +
-                "<p>This is an automated email. Please do not reply.</p>" +
-                "</div>" +
-                "</div>" +
-                "</body>" +
-                "</html>";
+        EmailTemplate eventTemplate = eventFragment(event);
+
+        Map<String, String> values = new HashMap<>(8);
+        values.put("userName", user.getName());
+        values.put("ticketCode", ticket.getTicketCode());
+        values.put("quantity", String.valueOf(ticket.getQuantity()));
+        values.put("totalPaid", PRICE_FORMAT.get().format(ticket.getTotalPrice()));
+        values.put("status", String.valueOf(ticket.getStatus()));
+
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        // Literal text plus room for the buyer fields, so rendering never regrows the buffer
+        buffer.ensureCapacity(eventTemplate.literalLength() + 512);
+        eventTemplate.render(values, buffer);
+        String html = buffer.toString();
+        if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+            BUFFER.remove();
+        }
+        return html;
+    }
+
+    /**
+     * The confirmation template with this event's fields filled in, rebuilt when the event is
+     * edited; at most ticketing.email.fragment-cache-size events are kept
+     */
+    private EmailTemplate eventFragment(Event event) {
+        EventFragment cached;
+        synchronized (eventFragments) {
+            cached = eventFragments.get(event.getId());
+        }
+        if (cached != null && Objects.equals(cached.version, event.getVersion())) {
+            return cached.template;
+        }
+
+        Map<String, String> values = new HashMap<>(8);
+        values.put("eventName", event.getName());
+        values.put("eventLocation", event.getLocation());
+        values.put("eventDate", event.getEventDate().format(EVENT_DATE_FORMAT));
+        values.put("eventCategory", event.getCategory());
+
+        EmailTemplate template = confirmationTemplate.bind(values);
+        synchronized (eventFragments) {
+            eventFragments.put(event.getId(), new EventFragment(event.getVersion(), template));
+        }
+        return template;
+    }
+
+    private static final class EventFragment {
+
+        private final Long version;
+        private final EmailTemplate template;
+
+        private EventFragment(Long version, EmailTemplate template) {
+            this.version = version;
+            this.template = template;
+        }
     }
 }
@@ -0,0 +1,112 @@
+package com.codestars.ticketing.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Email Template - An HTML template with {{name}} placeholders, parsed once
+ *
+ * Compiling splits the text into literal and placeholder segments. bind() fills in some
+ * placeholders and returns a smaller template with the filled values merged into the
+ * literals, so values shared by many emails are escaped and copied only once.
+ * Values are HTML-escaped as they are written.
+ */
+public final class EmailTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    // literals.length == placeholders.length + 1; literal i comes before placeholder i
+    private final String[] literals;
+    private final String[] placeholders;
+    private final int literalLength;
+
+    private EmailTemplate(List<String> literals, List<String> placeholders) {
+        this.literals = literals.toArray(new String[0]);
+        this.placeholders = placeholders.toArray(new String[0]);
+        int length = 0;
+        for (String literal : this.literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    public static EmailTemplate compile(String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        int position = 0;
+        while (true) {
+            int open = source.indexOf(OPEN, position);
+            if (open < 0) {
+                break;
+            }
+            int close = source.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder at offset " + open);
+            }
+            literals.add(source.substring(position, open));
+            placeholders.add(source.substring(open + OPEN.length(), close).trim());
+            position = close + CLOSE.length();
+        }
+        literals.add(source.substring(position));
+        return new EmailTemplate(literals, placeholders);
+    }
+
+    /**
+     * Fill the placeholders present in values and keep the rest for a later render
+     */
+    public EmailTemplate bind(Map<String, String> values) {
+        List<String> boundLiterals = new ArrayList<>();
+        List<String> remaining = new ArrayList<>();
+        StringBuilder current = new StringBuilder(literals[0]);
+        for (int i = 0; i < placeholders.length; i++) {
+            String value = values.get(placeholders[i]);
+            if (value != null) {
+                escapeHtml(value, current);
+            } else {
+                boundLiterals.add(current.toString());
+                remaining.add(placeholders[i]);
+                current.setLength(0);
+            }
+            current.append(literals[i + 1]);
+        }
+        boundLiterals.add(current.toString());
+        return new EmailTemplate(boundLiterals, remaining);
+    }
+
+    /**
+     * Append the template to out, filling every placeholder from values (missing values render empty)
+     */
+    public void render(Map<String, String> values, StringBuilder out) {
+        out.append(literals[0]);
+        for (int i = 0; i < placeholders.length; i++) {
+            String value = values.get(placeholders[i]);
+            if (value != null) {
+                escapeHtml(value, out);
+            }
+            out.append(literals[i + 1]);
+        }
+    }
+
+    /**
+     * Characters of literal text; a good initial buffer size
+     */
+    public int literalLength() {
+        return literalLength;
+    }
+
+    static void escapeHtml(String value, StringBuilder out) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<': out.append("&lt;"); break;
+                case '>': out.append("&gt;"); break;
+                case '&': out.append("&amp;"); break;
+                case '"': out.append("&quot;"); break;
+                case '\'': out.append("&#39;"); break;
+                default: out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.model.Event;
+import com.codestars.ticketing.repository.EventRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Event Catalog Cache - Read-through cache of the event catalog for browse traffic
+ *
+ * Static event fields are cached as immutable CatalogEvents, per event and as a full
+ * catalog snapshot, and expire after ticketing.catalog.ttl-seconds. The per-event cache
+ * is capped at ticketing.catalog.max-entries, evicting the oldest entries first.
+ * An expired snapshot keeps being served while one caller reloads it.
+ *
+ * Availability is kept apart in one counter per event, shared by every cached copy of
+ * that event. Committed reservations and releases update it in place, so selling
+ * tickets never invalidates anything. With in-memory inventory the counter follows
+ * InventoryService exactly; with the database strategy it applies the committed deltas
+ * and is re-read from the database whenever the event itself is reloaded. The database
+ * strategy's UPDATEs leave @Version alone, so a reload that finds a different count moves
+ * the revisions on by itself.
+ *
+ * Creating, editing or deleting an event drops its entry and the snapshot.
+ *
+ * Every change also moves the catalog's revision and the event's own revision on, which
+ * controllers turn into ETag headers to answer conditional GETs with
+ * 304 Not Modified.
+ */
+@Service
+public class EventCatalogCache {
+
+    private final EventRepository eventRepository;
+    private final InventoryService inventoryService;
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    private final Map<Long, CachedEvent> events = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> availability = new ConcurrentHashMap<>();
+    private final Object snapshotLock = new Object();
+    private final Object evictionLock = new Object();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    // Bumped by every invalidation; a load that started before one is not cached
+    private final AtomicLong generation = new AtomicLong();
+    private volatile CatalogSnapshot snapshot;
+    private final AtomicReference<CatalogRevision> catalogRevision = new AtomicReference<>(CatalogRevision.INITIAL);
+    private final Map<Long, CatalogRevision> eventRevisions = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong snapshotLoads = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @Autowired
+    public EventCatalogCache(EventRepository eventRepository,
+                             InventoryService inventoryService,
+                             @Value("${ticketing.catalog.ttl-seconds:300}") long ttlSeconds,
+                             @Value("${ticketing.catalog.max-entries:10000}") int maxEntries) {
+        this.eventRepository = eventRepository;
+        this.inventoryService = inventoryService;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /**
+     * Every event, in database order
+     */
+    public List<CatalogEvent> getAllEvents() {
+        return currentSnapshot().events;
+    }
+
+    public Optional<CatalogEvent> getEvent(Long eventId) {
+        long now = System.currentTimeMillis();
+        CachedEvent cached = events.get(eventId);
+        if (cached != null && cached.expiresAt > now) {
+            hits.incrementAndGet();
+            return Optional.of(cached.event);
+        }
+
+        misses.incrementAndGet();
+        long loadGeneration = generation.get();
+        Optional<CatalogEvent> loaded = eventRepository.findById(eventId).map(this::toCatalogEvent);
+        loaded.ifPresent(event -> store(event, now, loadGeneration));
+        return loaded;
+    }
+
+    /**
+     * Wrap events read by another query (e.g. a page) with their live availability counters
+     */
+    public List<CatalogEvent> view(List<Event> loaded) {
+        List<CatalogEvent> views = new ArrayList<>(loaded.size());
+        for (Event event : loaded) {
+            AtomicInteger counter = availability.computeIfAbsent(event.getId(), id -> {
+                Integer live = inventoryService.peekAvailableTickets(id);
+                return new AtomicInteger(live != null ? live : event.getAvailableTickets());
+            });
+            views.add(new CatalogEvent(event, counter));
+        }
+        return views;
+    }
+
+    /**
+     * Revision of everything derived from the catalog (listings, pages, search results)
+     */
+    public CatalogRevision getCatalogRevision() {
+        return catalogRevision.get();
+    }
+
+    /**
+     * Revision of one event's own fields and availability; not current until the event has
+     * been loaded on this node within the TTL
+     */
+    public CatalogRevision getEventRevision(Long eventId) {
+        return eventRevisions.getOrDefault(eventId, CatalogRevision.INITIAL);
+    }
+
+    /**
+     * Drop an event's cached fields and the catalog snapshot; its availability counter is kept
+     */
+    public void invalidate(Long eventId) {
+        generation.incrementAndGet();
+        events.remove(eventId);
+        snapshot = null;
+        invalidations.incrementAndGet();
+    }
+
+    // These two run before other listeners, so indexes built on the cache see the change
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAvailabilityChanged(AvailabilityChangedEvent event) {
+        AtomicInteger counter = availability.get(event.getEventId());
+        if (counter != null) {
+            Integer live = inventoryService.peekAvailableTickets(event.getEventId());
+            if (live != null) {
+                counter.set(live);
+            } else {
+                counter.addAndGet(event.getDelta());
+            }
+        }
+        advanceRevisions(event.getEventId());
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        invalidate(event.getEventId());
+        advanceRevisions(event.getEventId());
+        eventRevisions.computeIfPresent(event.getEventId(), (id, revision) -> revision.withoutVersion());
+    }
+
+    public Map<String, Object> getStats() {
+        CatalogSnapshot current = snapshot;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cachedEvents", events.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("snapshotEvents", current != null ? current.events.size() : 0);
+        stats.put("snapshotAgeMs", current != null ? System.currentTimeMillis() - current.loadedAt : null);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("snapshotLoads", snapshotLoads.get());
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    // Only after the change is applied, so a revision never runs ahead of the data
+    private void advanceRevisions(Long eventId) {
+        eventRevisions.compute(eventId, (id, revision) -> (revision != null ? revision : CatalogRevision.INITIAL).next());
+        catalogRevision.updateAndGet(CatalogRevision::next);
+    }
+
+    private CatalogSnapshot currentSnapshot() {
+        CatalogSnapshot current = snapshot;
+        long now = System.currentTimeMillis();
+        if (current != null && current.loadedAt + ttlMillis > now) {
+            hits.incrementAndGet();
+            return current;
+        }
+
+        // Expired: one caller reloads, everyone else keeps reading the old snapshot
+        if (current != null && !refreshing.compareAndSet(false, true)) {
+            hits.incrementAndGet();
+            return current;
+        }
+        try {
+            synchronized (snapshotLock) {
+                CatalogSnapshot latest = snapshot;
+                if (latest != null && latest != current) {
+                    return latest;
+                }
+                misses.incrementAndGet();
+                return loadSnapshot();
+            }
+        } finally {
+            if (current != null) {
+                refreshing.set(false);
+            }
+        }
+    }
+
+    private CatalogSnapshot loadSnapshot() {
+        long loadGeneration = generation.get();
+        long now = System.currentTimeMillis();
+        List<CatalogEvent> loaded = new ArrayList<>();
+        for (Event event : eventRepository.findAll()) {
+            loaded.add(toCatalogEvent(event));
+        }
+        snapshotLoads.incrementAndGet();
+
+        CatalogSnapshot previous = snapshot;
+        CatalogSnapshot fresh = new CatalogSnapshot(loaded, now);
+        if (generation.get() == loadGeneration) {
+            snapshot = fresh;
+            loaded.forEach(event -> store(event, now, loadGeneration));
+            // A periodic reload that picks up edits from other nodes is a change like any other
+            if (previous != null && !sameVersions(previous.events, loaded)) {
+                catalogRevision.updateAndGet(CatalogRevision::next);
+            }
+        }
+        return fresh;
+    }
+
+    private static boolean sameVersions(List<CatalogEvent> before, List<CatalogEvent> after) {
+        if (before.size() != after.size()) {
+            return false;
+        }
+        Map<Long, Long> versions = new HashMap<>(before.size() * 2);
+        for (CatalogEvent event : before) {
+            versions.put(event.getId(), event.getVersion());
+        }
+        for (CatalogEvent event : after) {
+            if (!versions.containsKey(event.getId()) || !Objects.equals(versions.get(event.getId()), event.getVersion())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copy an event just read from the database and (re)seed its availability counter
+     */
+    private CatalogEvent toCatalogEvent(Event event) {
+        Integer live = inventoryService.peekAvailableTickets(event.getId());
+        int available = live != null ? live : event.getAvailableTickets();
+        AtomicInteger counter = availability.computeIfAbsent(event.getId(), id -> new AtomicInteger(available));
+        if (counter.getAndSet(available) != available) {
+            // Sold or released on another node; every cached copy already shows the new count
+            advanceRevisions(event.getId());
+        }
+        return new CatalogEvent(event, counter);
+    }
+
+    private void store(CatalogEvent event, long loadedAt, long loadGeneration) {
+        if (generation.get() != loadGeneration) {
+            return;
+        }
+        long expiresAt = loadedAt + ttlMillis;
+        events.put(event.getId(), new CachedEvent(event, expiresAt));
+        eventRevisions.compute(event.getId(), (id, revision) ->
+                (revision != null ? revision : CatalogRevision.INITIAL).withVersion(event.getVersion(), expiresAt));
+        if (events.size() > maxEntries) {
+            evict();
+        }
+    }
+
+    /**
+     * Remove expired entries, then the oldest ones until the cache is back under 90% of its cap
+     */
+    private void evict() {
+        synchronized (evictionLock) {
+            if (events.size() <= maxEntries) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            int before = events.size();
+            events.values().removeIf(cached -> cached.expiresAt <= now);
+
+            int excess = events.size() - maxEntries * 9 / 10;
+            if (excess > 0) {
+                events.entrySet().stream()
+                        .sorted(Comparator.comparingLong(entry -> entry.getValue().expiresAt))
+                        .limit(excess)
+                        .map(Map.Entry::getKey)
+                        .collect(Collectors.toList())
+                        .forEach(events::remove);
+            }
+            evictions.addAndGet(before - events.size());
+        }
+    }
+
+    private static final class CachedEvent {
+
+        private final CatalogEvent event;
+        private final long expiresAt;
+
+        private CachedEvent(CatalogEvent event, long expiresAt) {
+            this.event = event;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class CatalogSnapshot {
+
+        private final List<CatalogEvent> events;
+        private final long loadedAt;
+
+        private CatalogSnapshot(List<CatalogEvent> events, long loadedAt) {
+            this.events = Collections.unmodifiableList(events);
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.model.Event;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * JPA listener on Event that turns entity writes into CatalogChangedEvents.
+ * Availability changes are bulk updates and do not pass through here.
+ * Hibernate creates it through Spring, so it can be injected.
+ */
+public class EventCatalogListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    public EventCatalogListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onEventWritten(Event event) {
+        eventPublisher.publishEvent(new CatalogChangedEvent(event.getId()));
+    }
+}
@@ -0,0 +1,223 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.repository.EventRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Event Facet Index - Category and town counts for browsing, kept in memory
+ *
+ * For every category and town the index counts all events and the upcoming events that
+ * still have tickets. Counts change one event at a time: event writes arrive as
+ * CatalogChangedEvents, sellouts (and tickets coming back) as AvailabilityChangedEvents,
+ * and a periodic sweep moves events whose date has passed out of the upcoming counts.
+ * Towns are parsed from the location once, when an event is indexed. The revision moves
+ * on only when a count actually changes.
+ */
+@Service
+public class EventFacetIndex {
+
+    private final EventRepository eventRepository;
+    private final EventCatalogCache catalogCache;
+
+    private final Map<Long, FacetEntry> entries = new ConcurrentHashMap<>();
+    private final Map<String, FacetCount> categories = new ConcurrentHashMap<>();
+    private final Map<String, FacetCount> towns = new ConcurrentHashMap<>();
+    private final FacetCount total = new FacetCount();
+    private final Object updateLock = new Object();
+    private volatile boolean loaded;
+    private final AtomicReference<CatalogRevision> revision = new AtomicReference<>(CatalogRevision.INITIAL);
+
+    @Autowired
+    public EventFacetIndex(EventRepository eventRepository, EventCatalogCache catalogCache) {
+        this.eventRepository = eventRepository;
+        this.catalogCache = catalogCache;
+    }
+
+    /**
+     * Distinct categories that have at least one event, sorted
+     */
+    public List<String> getCategories() {
+        ensureLoaded();
+        return new ArrayList<>(sorted(categories).keySet());
+    }
+
+    /**
+     * Distinct towns that have at least one event, sorted
+     */
+    public List<String> getTowns() {
+        ensureLoaded();
+        return new ArrayList<>(sorted(towns).keySet());
+    }
+
+    /**
+     * Every category and town with its event count and upcoming-with-tickets count
+     */
+    public Map<String, Object> getFacets() {
+        ensureLoaded();
+        Map<String, Object> facets = new LinkedHashMap<>();
+        facets.put("totalEvents", total.events.get());
+        facets.put("upcomingAvailable", total.upcomingAvailable.get());
+        facets.put("categories", toList(sorted(categories)));
+        facets.put("locations", toList(sorted(towns)));
+        return facets;
+    }
+
+    /**
+     * Revision of the categories, towns and their counts
+     */
+    public CatalogRevision getRevision() {
+        ensureLoaded();
+        return revision.get();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        synchronized (updateLock) {
+            if (!loaded) {
+                return;
+            }
+            FacetEntry removed = entries.remove(event.getEventId());
+            if (removed != null) {
+                removed.remove();
+            }
+            eventRepository.findById(event.getEventId())
+                    .ifPresent(updated -> add(catalogCache.view(List.of(updated)).get(0)));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAvailabilityChanged(AvailabilityChangedEvent event) {
+        FacetEntry entry = entries.get(event.getEventId());
+        if (entry != null) {
+            entry.refresh(LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Take events whose date has passed out of the upcoming counts
+     */
+    @Scheduled(fixedDelayString = "${ticketing.facets.sweep-interval-ms:60000}")
+    public void sweepPastEvents() {
+        if (!loaded) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        entries.values().forEach(entry -> entry.refresh(now));
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (updateLock) {
+            if (loaded) {
+                return;
+            }
+            catalogCache.getAllEvents().forEach(this::add);
+            loaded = true;
+        }
+    }
+
+    private void add(CatalogEvent event) {
+        FacetCount category = event.getCategory() != null
+                ? categories.computeIfAbsent(event.getCategory(), c -> new FacetCount()) : null;
+        FacetCount town = towns.computeIfAbsent(event.getTown(), t -> new FacetCount());
+        FacetEntry entry = new FacetEntry(event, category, town);
+        entries.put(event.getId(), entry);
+        entry.add(LocalDateTime.now());
+    }
+
+    private Map<String, FacetCount> sorted(Map<String, FacetCount> facet) {
+        Map<String, FacetCount> sorted = new TreeMap<>();
+        facet.forEach((value, count) -> {
+            if (count.events.get() > 0) {
+                sorted.put(value, count);
+            }
+        });
+        return sorted;
+    }
+
+    private List<Map<String, Object>> toList(Map<String, FacetCount> facet) {
+        List<Map<String, Object>> values = new ArrayList<>(facet.size());
+        facet.forEach((value, count) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("value", value);
+            item.put("events", count.events.get());
+            item.put("upcomingAvailable", count.upcomingAvailable.get());
+            values.add(item);
+        });
+        return values;
+    }
+
+    private static final class FacetCount {
+
+        private final AtomicInteger events = new AtomicInteger();
+        private final AtomicInteger upcomingAvailable = new AtomicInteger();
+    }
+
+    /**
+     * One indexed event and whether it is currently counted as upcoming with tickets
+     */
+    private final class FacetEntry {
+
+        private final CatalogEvent event;
+        private final FacetCount category;
+        private final FacetCount town;
+        private boolean upcomingAvailable;
+        private boolean removed;
+
+        private FacetEntry(CatalogEvent event, FacetCount category, FacetCount town) {
+            this.event = event;
+            this.category = category;
+            this.town = town;
+        }
+
+        private synchronized void add(LocalDateTime now) {
+            adjust(count -> count.events, 1);
+            refresh(now);
+        }
+
+        private synchronized void remove() {
+            removed = true;
+            adjust(count -> count.events, -1);
+            if (upcomingAvailable) {
+                upcomingAvailable = false;
+                adjust(count -> count.upcomingAvailable, -1);
+            }
+        }
+
+        private synchronized void refresh(LocalDateTime now) {
+            if (removed) {
+                return;
+            }
+            boolean counted = event.getEventDate().isAfter(now) && event.getAvailableTickets() > 0;
+            if (counted != upcomingAvailable) {
+                upcomingAvailable = counted;
+                adjust(count -> count.upcomingAvailable, counted ? 1 : -1);
+            }
+        }
+
+        private void adjust(Function<FacetCount, AtomicInteger> counter, int delta) {
+            counter.apply(total).addAndGet(delta);
+            counter.apply(town).addAndGet(delta);
+            if (category != null) {
+                counter.apply(category).addAndGet(delta);
+            }
+            revision.updateAndGet(CatalogRevision::next);
+        }
+    }
+}
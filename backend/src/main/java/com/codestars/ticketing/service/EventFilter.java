@@ -0,0 +1,103 @@
+package com.codestars.ticketing.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * Event Filter - Attribute filters for event search; null fields match everything
+ */
+public final class EventFilter {
+
+    public static final EventFilter NONE = new EventFilter(null, null, null, null, null, null, null);
+
+    private final String category;
+    private final String location;
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private final Double minPrice;
+    private final Double maxPrice;
+    private final Boolean available;
+
+    /**
+     * @param category  exact category, ignoring case; blank or "All" for any
+     * @param location  a town, or any text contained in the location, ignoring case; blank or "All" for any
+     * @param from      earliest event date, inclusive
+     * @param to        latest event date, inclusive
+     * @param available true for events with tickets left, false for sold-out events
+     */
+    public EventFilter(String category, String location, LocalDateTime from, LocalDateTime to,
+                       Double minPrice, Double maxPrice, Boolean available) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+            throw new IllegalArgumentException("minPrice must not be more than maxPrice");
+        }
+        this.category = isAny(category) ? null : category.trim().toLowerCase(Locale.ROOT);
+        this.location = isAny(location) ? null : location.trim().toLowerCase(Locale.ROOT);
+        this.from = from;
+        this.to = to;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.available = available;
+    }
+
+    /**
+     * Parse a from/to query parameter: an ISO date-time, or a date meaning the start of that
+     * day (from) or its last moment (to)
+     */
+    public static LocalDateTime parseDate(String value, boolean endOfDay) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            if (value.trim().length() == 10) {
+                LocalDate date = LocalDate.parse(value.trim());
+                return endOfDay ? date.plusDays(1).atStartOfDay().minusNanos(1) : date.atStartOfDay();
+            }
+            return LocalDateTime.parse(value.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date: " + value + ". Use yyyy-MM-dd or yyyy-MM-ddTHH:mm.");
+        }
+    }
+
+    /**
+     * Lower case, or null for any
+     */
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * Lower case, or null for any
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public Boolean getAvailable() {
+        return available;
+    }
+
+    private static boolean isAny(String value) {
+        return value == null || value.isBlank() || value.equalsIgnoreCase("All");
+    }
+}
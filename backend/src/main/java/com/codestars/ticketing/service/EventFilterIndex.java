@@ -0,0 +1,284 @@
+package com.codestars.ticketing.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Event Filter Index - Columnar index for combining category, town, date, price and availability filters
+ *
+ * Events are numbered 0..n-1 in id order. Each category and town has a bitmap of its
+ * events (for a town, every event whose location contains its name), and eventDate and priceKES are kept as sorted arrays next to the event number
+ * they belong to, so a range is two binary searches and a run of set bits. A filter is
+ * the intersection of those bitmaps. "Has availability" is checked on the remaining
+ * events against the catalog's live counters, so sellouts need no index update.
+ *
+ * The columns are rebuilt from the catalog cache on the first query after an event is
+ * created, edited or deleted; rebuilding is a sort of the catalog and event writes are rare.
+ */
+@Service
+public class EventFilterIndex {
+
+    private final EventCatalogCache catalogCache;
+
+    private final Object buildLock = new Object();
+    // Bumped by every event write; a build that started before one is not kept
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Columns columns;
+
+    // Metrics
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong queryNanos = new AtomicLong();
+    private final AtomicLong builds = new AtomicLong();
+
+    @Autowired
+    public EventFilterIndex(EventCatalogCache catalogCache) {
+        this.catalogCache = catalogCache;
+    }
+
+    /**
+     * Events matching the filter, in id order
+     */
+    public List<CatalogEvent> filter(EventFilter filter) {
+        Match match = match(filter);
+        List<CatalogEvent> events = new ArrayList<>(match.bits.cardinality());
+        for (int i = match.bits.nextSetBit(0); i >= 0; i = match.bits.nextSetBit(i + 1)) {
+            CatalogEvent event = match.columns.events[i];
+            if (match.accepts(event)) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Evaluate the filter once, for checking many candidate events (e.g. text search hits)
+     */
+    public Match match(EventFilter filter) {
+        long started = System.nanoTime();
+        Columns current = currentColumns();
+        int n = current.events.length;
+
+        BitSet bits = new BitSet(n);
+        bits.set(0, n);
+        boolean locationByText = false;
+        if (filter.getCategory() != null) {
+            bits.and(current.categories.getOrDefault(filter.getCategory(), new BitSet()));
+        }
+        if (filter.getLocation() != null) {
+            BitSet town = current.towns.get(filter.getLocation());
+            if (town != null) {
+                bits.and(town);
+            } else {
+                // Not a town name: fall back to matching it anywhere in the location
+                locationByText = true;
+            }
+        }
+        if (filter.getFrom() != null || filter.getTo() != null) {
+            long lower = filter.getFrom() != null ? epochSecond(filter.getFrom()) : Long.MIN_VALUE;
+            long upper = filter.getTo() != null ? epochSecond(filter.getTo()) : Long.MAX_VALUE;
+            bits.and(current.dates.range(lower, upper, n));
+        }
+        if (filter.getMinPrice() != null || filter.getMaxPrice() != null) {
+            double lower = filter.getMinPrice() != null ? filter.getMinPrice() : Double.NEGATIVE_INFINITY;
+            double upper = filter.getMaxPrice() != null ? filter.getMaxPrice() : Double.POSITIVE_INFINITY;
+            bits.and(current.prices.range(lower, upper, n));
+        }
+
+        queries.incrementAndGet();
+        queryNanos.addAndGet(System.nanoTime() - started);
+        return new Match(current, bits, locationByText ? filter.getLocation() : null, filter.getAvailable());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        generation.incrementAndGet();
+        columns = null;
+    }
+
+    public Map<String, Object> getStats() {
+        Columns current = columns;
+        long count = queries.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("events", current != null ? current.events.length : 0);
+        stats.put("categories", current != null ? current.categories.size() : 0);
+        stats.put("towns", current != null ? current.towns.size() : 0);
+        stats.put("builds", builds.get());
+        stats.put("queries", count);
+        stats.put("avgQueryMicros", count == 0 ? 0 : queryNanos.get() / count / 1000);
+        return stats;
+    }
+
+    private Columns currentColumns() {
+        Columns current = columns;
+        if (current != null) {
+            return current;
+        }
+        synchronized (buildLock) {
+            if (columns != null) {
+                return columns;
+            }
+            long buildGeneration = generation.get();
+            Columns built = new Columns(catalogCache.getAllEvents());
+            builds.incrementAndGet();
+            if (generation.get() == buildGeneration) {
+                columns = built;
+            }
+            return built;
+        }
+    }
+
+    private static long epochSecond(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * A filter evaluated against the current columns
+     */
+    public static final class Match {
+
+        private final Columns columns;
+        private final BitSet bits;
+        private final String locationText;
+        private final Boolean available;
+
+        private Match(Columns columns, BitSet bits, String locationText, Boolean available) {
+            this.columns = columns;
+            this.bits = bits;
+            this.locationText = locationText;
+            this.available = available;
+        }
+
+        public boolean matches(Long eventId) {
+            Integer ordinal = columns.ordinals.get(eventId);
+            return ordinal != null && bits.get(ordinal) && accepts(columns.events[ordinal]);
+        }
+
+        private boolean accepts(CatalogEvent event) {
+            if (locationText != null && !event.getLocation().toLowerCase(Locale.ROOT).contains(locationText)) {
+                return false;
+            }
+            return available == null || available == (event.getAvailableTickets() > 0);
+        }
+    }
+
+    /**
+     * One immutable build of the index
+     */
+    private static final class Columns {
+
+        private final CatalogEvent[] events;
+        private final Map<Long, Integer> ordinals;
+        private final Map<String, BitSet> categories = new HashMap<>();
+        private final Map<String, BitSet> towns = new HashMap<>();
+        private final SortedColumn dates;
+        private final SortedColumn prices;
+
+        private Columns(List<CatalogEvent> catalog) {
+            this.events = catalog.toArray(new CatalogEvent[0]);
+            Arrays.sort(events, Comparator.comparing(CatalogEvent::getId));
+            this.ordinals = new HashMap<>(events.length * 2);
+
+            long[] dateKeys = new long[events.length];
+            double[] priceKeys = new double[events.length];
+            for (int i = 0; i < events.length; i++) {
+                CatalogEvent event = events[i];
+                ordinals.put(event.getId(), i);
+                if (event.getCategory() != null) {
+                    categories.computeIfAbsent(event.getCategory().toLowerCase(Locale.ROOT), c -> new BitSet()).set(i);
+                }
+                towns.computeIfAbsent(event.getTown().toLowerCase(Locale.ROOT), t -> new BitSet()).set(i);
+                dateKeys[i] = epochSecond(event.getEventDate());
+                priceKeys[i] = event.getPriceKES();
+            }
+            // A town filter means "location contains", so a town's bitmap also holds events that
+            // name it elsewhere in their location, e.g. "Kisumu, Kenya" for kisumu
+            for (Map.Entry<String, BitSet> town : towns.entrySet()) {
+                for (int i = 0; i < events.length; i++) {
+                    if (events[i].getLocation().toLowerCase(Locale.ROOT).contains(town.getKey())) {
+                        town.getValue().set(i);
+                    }
+                }
+            }
+            this.dates = SortedColumn.of(dateKeys);
+            this.prices = SortedColumn.of(priceKeys);
+        }
+    }
+
+    /**
+     * Values sorted ascending, each with the number of the event it came from
+     */
+    private static final class SortedColumn {
+
+        private final double[] values;
+        private final int[] ordinals;
+
+        private SortedColumn(double[] values, int[] ordinals) {
+            this.values = values;
+            this.ordinals = ordinals;
+        }
+
+        // Epoch seconds are well inside the range a double holds exactly
+        private static SortedColumn of(long[] keys) {
+            double[] values = new double[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                values[i] = keys[i];
+            }
+            return of(values);
+        }
+
+        private static SortedColumn of(double[] keys) {
+            Integer[] order = new Integer[keys.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingDouble(i -> keys[i]));
+
+            double[] values = new double[keys.length];
+            int[] ordinals = new int[keys.length];
+            for (int i = 0; i < order.length; i++) {
+                values[i] = keys[order[i]];
+                ordinals[i] = order[i];
+            }
+            return new SortedColumn(values, ordinals);
+        }
+
+        /**
+         * Bitmap of the events whose value lies in [lower, upper]
+         */
+        private BitSet range(double lower, double upper, int size) {
+            BitSet bits = new BitSet(size);
+            for (int i = firstAtLeast(lower); i < values.length && values[i] <= upper; i++) {
+                bits.set(ordinals[i]);
+            }
+            return bits;
+        }
+
+        private int firstAtLeast(double value) {
+            int low = 0;
+            int high = values.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[mid] < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
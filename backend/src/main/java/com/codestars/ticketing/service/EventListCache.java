@@ -0,0 +1,210 @@
+package com.codestars.ticketing.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Event List Cache - GET /api/events body, serialized and gzip-compressed ahead of time
+ *
+ * The full event list is kept as JSON bytes and as gzip bytes, built together from the
+ * catalog cache and replaced as a whole. Requests write one of the two arrays straight to
+ * the response, with no serialization or compression per request.
+ *
+ * Any committed change to the catalog (event writes and ticket sales alike) schedules a
+ * rebuild on a background thread after ticketing.catalog.encoded.rebuild-delay-ms, so a
+ * burst of sales costs one rebuild. Until it is done the previous bytes are served, with
+ * the catalog revision they were built from as their ETag.
+ *
+ * A build re-checks the revision once its bytes are published and schedules another build if
+ * the catalog moved on meanwhile, such as a change during the very first build. Edits and
+ * sales made on other nodes only reach this node when the catalog cache reloads, after
+ * ticketing.catalog.ttl-seconds; until then the bytes and their ETag both show the older state.
+ */
+@Service
+public class EventListCache {
+
+    private final EventCatalogCache catalogCache;
+    private final ObjectMapper objectMapper;
+    private final long rebuildDelayMs;
+    private final long maxAgeMs;
+
+    private final Object buildLock = new Object();
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService builder;
+    private volatile EncodedList current;
+
+    // Metrics
+    private final AtomicLong builds = new AtomicLong();
+    private final AtomicLong lastBuildMicros = new AtomicLong();
+    private final AtomicLong servedIdentity = new AtomicLong();
+    private final AtomicLong servedGzip = new AtomicLong();
+
+    @Autowired
+    public EventListCache(EventCatalogCache catalogCache,
+                          ObjectMapper objectMapper,
+                          @Value("${ticketing.catalog.encoded.rebuild-delay-ms:200}") long rebuildDelayMs,
+                          @Value("${ticketing.catalog.ttl-seconds:300}") long ttlSeconds) {
+        this.catalogCache = catalogCache;
+        this.objectMapper = objectMapper;
+        this.rebuildDelayMs = Math.max(0, rebuildDelayMs);
+        this.maxAgeMs = ttlSeconds * 1000;
+        this.builder = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-list-encoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The current encoded list; built on the calling thread only before the first build
+     */
+    public EncodedList get() {
+        EncodedList list = current;
+        if (list == null) {
+            synchronized (buildLock) {
+                list = current != null ? current : build();
+            }
+        } else if (System.currentTimeMillis() - list.builtAt > maxAgeMs) {
+            // Follow the catalog cache's own refresh from the database
+            scheduleRebuild();
+        }
+        return list;
+    }
+
+    /**
+     * Count a response served from the cache, for the metrics
+     */
+    public void recordServed(boolean gzip) {
+        (gzip ? servedGzip : servedIdentity).incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAvailabilityChanged(AvailabilityChangedEvent event) {
+        scheduleRebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        scheduleRebuild();
+    }
+
+    public Map<String, Object> getStats() {
+        EncodedList list = current;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("builds", builds.get());
+        stats.put("lastBuildMicros", lastBuildMicros.get());
+        stats.put("jsonBytes", list != null ? list.json.length : 0);
+        stats.put("gzipBytes", list != null ? list.gzip.length : 0);
+        stats.put("ageMs", list != null ? System.currentTimeMillis() - list.builtAt : null);
+        stats.put("servedIdentity", servedIdentity.get());
+        stats.put("servedGzip", servedGzip.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        builder.shutdownNow();
+    }
+
+    private void scheduleRebuild() {
+        if (current == null || !rebuildScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            builder.schedule(this::rebuild, rebuildDelayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            rebuildScheduled.set(false);
+        }
+    }
+
+    private void rebuild() {
+        // Cleared first: a change that lands during the build schedules another one
+        rebuildScheduled.set(false);
+        try {
+            synchronized (buildLock) {
+                build();
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Failed to rebuild encoded event list: " + e.getMessage());
+        }
+    }
+
+    private EncodedList build() {
+        long started = System.nanoTime();
+        // Revision first, so the ETag is never newer than the bytes
+        CatalogRevision revision = catalogCache.getCatalogRevision();
+        List<CatalogEvent> events = catalogCache.getAllEvents();
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(events);
+            EncodedList list = new EncodedList(revision, json, gzip(json), System.currentTimeMillis());
+            current = list;
+            builds.incrementAndGet();
+            lastBuildMicros.set((System.nanoTime() - started) / 1000);
+            if (catalogCache.getCatalogRevision() != revision) {
+                scheduleRebuild();
+            }
+            return list;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize event list", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * One immutable build of the list; the arrays must not be modified
+     */
+    public static final class EncodedList {
+
+        private final CatalogRevision revision;
+        private final byte[] json;
+        private final byte[] gzip;
+        private final long builtAt;
+
+        private EncodedList(CatalogRevision revision, byte[] json, byte[] gzip, long builtAt) {
+            this.revision = revision;
+            this.json = json;
+            this.gzip = gzip;
+            this.builtAt = builtAt;
+        }
+
+        public CatalogRevision getRevision() {
+            return revision;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public byte[] getGzip() {
+            return gzip;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.model.Event;
+import com.codestars.ticketing.repository.EventRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Event Page Service - Cursor (keyset) pagination over events and search results
+ *
+ * Pages are ordered by a sort key plus id. Listing pages are fetched with
+ * EventRepository's keyset queries, so page 5,000 costs the same as page 1; search pages
+ * are cut from the in-memory search index's results the same way. The index keeps no
+ * position between requests, though: every search page runs the whole search again and
+ * sorts all its hits before skipping to the cursor, so a page costs O(n log n) in the
+ * number of matches however small it is. That is fine for the catalog's few thousand
+ * events; a much larger catalog would need the hits kept per query. The cursor handed back
+ * to clients is the last row's sort key and id, base64url encoded and tagged with the sort
+ * it belongs to; clients should treat it as opaque. Availability comes from the catalog
+ * cache's live counters, like the rest of the events API.
+ */
+@Service
+public class EventPageService {
+
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+
+    private final EventRepository eventRepository;
+    private final EventCatalogCache catalogCache;
+    private final EventSearchIndex searchIndex;
+
+    @Autowired
+    public EventPageService(EventRepository eventRepository,
+                            EventCatalogCache catalogCache,
+                            EventSearchIndex searchIndex) {
+        this.eventRepository = eventRepository;
+        this.catalogCache = catalogCache;
+        this.searchIndex = searchIndex;
+    }
+
+    public enum EventSort {
+        DATE("date"), DATE_DESC("date_desc"), PRICE("price"), PRICE_DESC("price_desc"), RELEVANCE("relevance");
+
+        private final String value;
+
+        EventSort(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public static EventSort parse(String value) {
+            return parse(value, DATE);
+        }
+
+        /**
+         * @param defaultSort used when value is null or blank
+         */
+        public static EventSort parse(String value, EventSort defaultSort) {
+            if (value == null || value.isBlank()) {
+                return defaultSort;
+            }
+            for (EventSort sort : values()) {
+                if (sort.value.equalsIgnoreCase(value.trim())) {
+                    return sort;
+                }
+            }
+            throw new IllegalArgumentException("Unknown sort: " + value +
+                    ". Use date, date_desc, price, price_desc or (for search) relevance.");
+        }
+
+        private boolean byDate() {
+            return this == DATE || this == DATE_DESC;
+        }
+
+        private boolean byPrice() {
+            return this == PRICE || this == PRICE_DESC;
+        }
+    }
+
+    /**
+     * One page of every event
+     * @param cursor nextCursor of the previous page, or null for the first page
+     */
+    public EventPage listEvents(EventSort sort, String cursor, Integer limit) {
+        if (sort == EventSort.RELEVANCE) {
+            throw new IllegalArgumentException("Sort relevance is only available for search");
+        }
+        Cursor after = Cursor.decode(cursor, sort);
+        int size = pageSize(limit);
+        Pageable page = PageRequest.of(0, size + 1);
+        List<Event> events;
+        switch (sort) {
+            case DATE_DESC:
+                events = after == null ? eventRepository.findPageByDateDesc(page)
+                        : eventRepository.findPageByDateDescAfter(after.date, after.id, page);
+                break;
+            case PRICE:
+                events = after == null ? eventRepository.findPageByPrice(page)
+                        : eventRepository.findPageByPriceAfter(after.price, after.id, page);
+                break;
+            case PRICE_DESC:
+                events = after == null ? eventRepository.findPageByPriceDesc(page)
+                        : eventRepository.findPageByPriceDescAfter(after.price, after.id, page);
+                break;
+            default:
+                events = after == null ? eventRepository.findPageByDate(page)
+                        : eventRepository.findPageByDateAfter(after.date, after.id, page);
+        }
+
+        boolean hasMore = events.size() > size;
+        List<Event> rows = hasMore ? events.subList(0, size) : events;
+        Event last = hasMore ? rows.get(size - 1) : null;
+        String nextCursor = last != null
+                ? Cursor.encode(sort, last.getEventDate(), last.getPriceKES(), 0f, last.getId()) : null;
+        return new EventPage(catalogCache.view(rows), sort, nextCursor);
+    }
+
+    /**
+     * One page of events matching the search, from the search index
+     */
+    public EventPage searchEvents(String query, EventFilter filter, EventSort sort, String cursor, Integer limit) {
+        Cursor after = Cursor.decode(cursor, sort);
+        int size = pageSize(limit);
+        List<EventSearchIndex.SearchHit> hits = searchIndex.search(query, filter);
+        if (sort != EventSort.RELEVANCE) {
+            hits.sort(orderOf(sort));
+        }
+
+        List<EventSearchIndex.SearchHit> rows = new ArrayList<>(size);
+        boolean hasMore = false;
+        for (EventSearchIndex.SearchHit hit : hits) {
+            if (after != null && !after.follows(hit, sort)) {
+                continue;
+            }
+            if (rows.size() == size) {
+                hasMore = true;
+                break;
+            }
+            rows.add(hit);
+        }
+
+        List<CatalogEvent> events = new ArrayList<>(rows.size());
+        rows.forEach(hit -> events.add(hit.getEvent()));
+        EventSearchIndex.SearchHit last = hasMore ? rows.get(rows.size() - 1) : null;
+        String nextCursor = last != null ? Cursor.encode(sort, last.getEvent().getEventDate(),
+                last.getEvent().getPriceKES(), last.getScore(), last.getEvent().getId()) : null;
+        return new EventPage(events, sort, nextCursor);
+    }
+
+    private Comparator<EventSearchIndex.SearchHit> orderOf(EventSort sort) {
+        Comparator<CatalogEvent> order;
+        switch (sort) {
+            case DATE_DESC:
+                order = Comparator.comparing(CatalogEvent::getEventDate).thenComparing(CatalogEvent::getId).reversed();
+                break;
+            case PRICE:
+                order = Comparator.comparing(CatalogEvent::getPriceKES).thenComparing(CatalogEvent::getId);
+                break;
+            case PRICE_DESC:
+                order = Comparator.comparing(CatalogEvent::getPriceKES).thenComparing(CatalogEvent::getId).reversed();
+                break;
+            default:
+                order = Comparator.comparing(CatalogEvent::getEventDate).thenComparing(CatalogEvent::getId);
+        }
+        return Comparator.comparing(EventSearchIndex.SearchHit::getEvent, order);
+    }
+
+    private int pageSize(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        return limit;
+    }
+
+    /**
+     * One page plus the cursor for the next one (null on the last page)
+     */
+    public static final class EventPage {
+
+        private final List<CatalogEvent> events;
+        private final EventSort sort;
+        private final String nextCursor;
+
+        private EventPage(List<CatalogEvent> events, EventSort sort, String nextCursor) {
+            this.events = events;
+            this.sort = sort;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<CatalogEvent> getEvents() {
+            return events;
+        }
+
+        public EventSort getSort() {
+            return sort;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+
+        public boolean hasMore() {
+            return nextCursor != null;
+        }
+    }
+
+    /**
+     * Position after the last row of a page: "sort|key|id", base64url encoded
+     */
+    private static final class Cursor {
+
+        private final LocalDateTime date;
+        private final Double price;
+        private final float score;
+        private final Long id;
+
+        private Cursor(LocalDateTime date, Double price, float score, Long id) {
+            this.date = date;
+            this.price = price;
+            this.score = score;
+            this.id = id;
+        }
+
+        private static String encode(EventSort sort, LocalDateTime date, Double price, float score, Long id) {
+            String key = sort.byDate() ? date.toString()
+                    : sort.byPrice() ? String.valueOf(price)
+                    : String.valueOf(score);
+            String raw = sort.getValue() + "|" + key + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static Cursor decode(String cursor, EventSort sort) {
+            if (cursor == null || cursor.isBlank()) {
+                return null;
+            }
+            String[] parts;
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+                parts = raw.split("\\|");
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            if (!parts[0].equals(sort.getValue())) {
+                throw new IllegalArgumentException("Cursor was issued for sort " + parts[0] +
+                        ", not " + sort.getValue());
+            }
+            try {
+                Long id = Long.valueOf(parts[2]);
+                if (sort.byDate()) {
+                    return new Cursor(LocalDateTime.parse(parts[1]), null, 0f, id);
+                }
+                if (sort.byPrice()) {
+                    return new Cursor(null, Double.valueOf(parts[1]), 0f, id);
+                }
+                return new Cursor(null, null, Float.parseFloat(parts[1]), id);
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+
+        /**
+         * True if the hit comes after the cursor's row in the sort order
+         */
+        private boolean follows(EventSearchIndex.SearchHit hit, EventSort order) {
+            CatalogEvent event = hit.getEvent();
+            int keyCmp;
+            switch (order) {
+                case DATE:
+                case DATE_DESC:
+                    keyCmp = event.getEventDate().compareTo(date);
+                    break;
+                case PRICE:
+                case PRICE_DESC:
+                    keyCmp = event.getPriceKES().compareTo(price);
+                    break;
+                default:
+                    // Highest score first, then ascending id
+                    keyCmp = Float.compare(score, hit.getScore());
+            }
+            int idCmp = event.getId().compareTo(id);
+            if (order == EventSort.DATE_DESC || order == EventSort.PRICE_DESC) {
+                keyCmp = -keyCmp;
+                idCmp = -idCmp;
+            }
+            return keyCmp > 0 || (keyCmp == 0 && idCmp > 0);
+        }
+    }
+}
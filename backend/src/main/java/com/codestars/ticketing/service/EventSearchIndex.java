@@ -0,0 +1,324 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.repository.EventRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Event Search Index - In-memory inverted index over event name, location, category and description
+ *
+ * Text is lower-cased, stripped of accents and split into words. Each word maps to the
+ * events that contain it with a field-weighted count (a word in the name counts more
+ * than one in the description). A query matches events that contain every query word,
+ * either exactly or as a prefix ("fest" finds "festival"), and is ranked by the summed
+ * weight times the word's inverse document frequency, prefix matches counting half.
+ * Attribute filters (category, town, dates, price, availability) are evaluated once by
+ * EventFilterIndex and checked against each candidate.
+ *
+ * The index is built from the catalog cache on the first search and kept up to date
+ * one event at a time from CatalogChangedEvents; availability comes from the catalog's
+ * live counters, so searches never touch the database.
+ *
+ * The postings and documents are never changed in place. An update copies the word map
+ * and the posting lists of the words it touches, applies the change to the copies and
+ * publishes them with one volatile write, so a search always sees one whole version of
+ * the index and never an event that is half removed. Catalog edits are rare, so the
+ * copy (proportional to the number of distinct words) is cheap next to the searches.
+ */
+@Service
+public class EventSearchIndex {
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float LOCATION_WEIGHT = 2.0f;
+    private static final float CATEGORY_WEIGHT = 2.0f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+    private static final float PREFIX_FACTOR = 0.5f;
+
+    private final EventRepository eventRepository;
+    private final EventCatalogCache catalogCache;
+    private final EventFilterIndex filterIndex;
+
+    // Replaced as a whole on every change; null until the first search loads it
+    private volatile Index index;
+    private final Object updateLock = new Object();
+
+    // Metrics
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong searchNanos = new AtomicLong();
+    private final AtomicLong maxSearchNanos = new AtomicLong();
+    private final AtomicLong reindexed = new AtomicLong();
+
+    @Autowired
+    public EventSearchIndex(EventRepository eventRepository,
+                            EventCatalogCache catalogCache,
+                            EventFilterIndex filterIndex) {
+        this.eventRepository = eventRepository;
+        this.catalogCache = catalogCache;
+        this.filterIndex = filterIndex;
+    }
+
+    /**
+     * Events matching every word of query (blank matches everything) and the filter,
+     * best match first; without a query, in id order
+     */
+    public List<SearchHit> search(String query, EventFilter filter) {
+        List<String> words = query == null ? List.of() : tokenize(query);
+        List<SearchHit> hits = new ArrayList<>();
+        if (words.isEmpty()) {
+            filterIndex.filter(filter).forEach(event -> hits.add(new SearchHit(event, 0f)));
+            return hits;
+        }
+
+        Index current = ensureLoaded();
+        long started = System.nanoTime();
+        EventFilterIndex.Match match = filterIndex.match(filter);
+        Map<Long, Float> scores = null;
+        for (String word : words) {
+            Map<Long, Float> wordScores = scoreWord(current, word);
+            scores = scores == null ? wordScores : intersect(scores, wordScores);
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        for (Map.Entry<Long, Float> entry : scores.entrySet()) {
+            IndexedEvent document = current.documents.get(entry.getKey());
+            if (document != null && match.matches(entry.getKey())) {
+                hits.add(new SearchHit(document.event, entry.getValue()));
+            }
+        }
+        hits.sort(SearchHit.BY_RELEVANCE);
+
+        long elapsed = System.nanoTime() - started;
+        searches.incrementAndGet();
+        searchNanos.addAndGet(elapsed);
+        maxSearchNanos.accumulateAndGet(elapsed, Math::max);
+        return hits;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        synchronized (updateLock) {
+            Index current = index;
+            if (current == null) {
+                return;
+            }
+            // Build the new version off to the side; searches keep using the current one
+            Builder builder = new Builder(current);
+            builder.remove(event.getEventId());
+            eventRepository.findById(event.getEventId())
+                    .ifPresent(updated -> builder.add(catalogCache.view(List.of(updated)).get(0)));
+            index = builder.build();
+            reindexed.incrementAndGet();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long count = searches.get();
+        Index current = index;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("loaded", current != null);
+        stats.put("events", current != null ? current.documents.size() : 0);
+        stats.put("terms", current != null ? current.postings.size() : 0);
+        stats.put("searches", count);
+        stats.put("avgSearchMicros", count == 0 ? 0 : searchNanos.get() / count / 1000);
+        stats.put("maxSearchMicros", maxSearchNanos.get() / 1000);
+        stats.put("reindexedEvents", reindexed.get());
+        return stats;
+    }
+
+    /**
+     * Lower-case, accent-free words of a text
+     */
+    static List<String> tokenize(String text) {
+        String folded = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> words = new ArrayList<>();
+        for (String word : NON_WORD.split(folded)) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private Index ensureLoaded() {
+        Index current = index;
+        if (current != null) {
+            return current;
+        }
+        synchronized (updateLock) {
+            if (index == null) {
+                Builder builder = new Builder(Index.EMPTY);
+                catalogCache.getAllEvents().forEach(builder::add);
+                index = builder.build();
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Score of every event containing the word, or a word it prefixes
+     */
+    private Map<Long, Float> scoreWord(Index current, String word) {
+        Map<Long, Float> scores = new HashMap<>();
+        NavigableMap<String, Map<Long, Float>> matches =
+                current.postings.subMap(word, true, word + Character.MAX_VALUE, false);
+        int total = Math.max(1, current.documents.size());
+        for (Map.Entry<String, Map<Long, Float>> match : matches.entrySet()) {
+            Map<Long, Float> events = match.getValue();
+            float idf = (float) Math.log(1.0 + (double) total / Math.max(1, events.size()));
+            float factor = match.getKey().equals(word) ? 1.0f : PREFIX_FACTOR;
+            events.forEach((eventId, weight) -> scores.merge(eventId, weight * idf * factor, Math::max));
+        }
+        return scores;
+    }
+
+    private Map<Long, Float> intersect(Map<Long, Float> scores, Map<Long, Float> wordScores) {
+        Map<Long, Float> smaller = scores.size() <= wordScores.size() ? scores : wordScores;
+        Map<Long, Float> larger = smaller == scores ? wordScores : scores;
+        Map<Long, Float> combined = new HashMap<>();
+        smaller.forEach((eventId, score) -> {
+            Float other = larger.get(eventId);
+            if (other != null) {
+                combined.put(eventId, score + other);
+            }
+        });
+        return combined;
+    }
+
+    private static void addField(Map<String, Float> weights, String text, float weight) {
+        if (text == null) {
+            return;
+        }
+        for (String word : tokenize(text)) {
+            weights.merge(word, weight, Float::sum);
+        }
+    }
+
+    /**
+     * An event and its score for the query (0 when there was no query)
+     */
+    public static final class SearchHit {
+
+        static final Comparator<SearchHit> BY_RELEVANCE = Comparator.comparing(SearchHit::getScore).reversed()
+                .thenComparing(hit -> hit.getEvent().getId());
+
+        private final CatalogEvent event;
+        private final float score;
+
+        private SearchHit(CatalogEvent event, float score) {
+            this.event = event;
+            this.score = score;
+        }
+
+        public CatalogEvent getEvent() {
+            return event;
+        }
+
+        public float getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * One published version of the index; never modified after it is built
+     */
+    private static final class Index {
+
+        private static final Index EMPTY = new Index(new TreeMap<>(), new HashMap<>());
+
+        // word -> event id -> field-weighted occurrences; sorted so prefixes are a range scan
+        private final NavigableMap<String, Map<Long, Float>> postings;
+        private final Map<Long, IndexedEvent> documents;
+
+        private Index(NavigableMap<String, Map<Long, Float>> postings, Map<Long, IndexedEvent> documents) {
+            this.postings = postings;
+            this.documents = documents;
+        }
+    }
+
+    /**
+     * Next version of an index: copies the word map and each posting list before its first
+     * change, so the version it started from stays untouched
+     */
+    private static final class Builder {
+
+        private final TreeMap<String, Map<Long, Float>> postings;
+        private final Map<Long, IndexedEvent> documents;
+        private final Set<String> copied = new HashSet<>();
+
+        private Builder(Index base) {
+            this.postings = new TreeMap<>(base.postings);
+            this.documents = new HashMap<>(base.documents);
+        }
+
+        private void add(CatalogEvent event) {
+            Map<String, Float> weights = new HashMap<>();
+            addField(weights, event.getName(), NAME_WEIGHT);
+            addField(weights, event.getLocation(), LOCATION_WEIGHT);
+            addField(weights, event.getCategory(), CATEGORY_WEIGHT);
+            addField(weights, event.getDescription(), DESCRIPTION_WEIGHT);
+
+            weights.forEach((word, weight) -> writablePostings(word).put(event.getId(), weight));
+            documents.put(event.getId(), new IndexedEvent(event, new ArrayList<>(weights.keySet())));
+        }
+
+        private void remove(Long eventId) {
+            IndexedEvent removed = documents.remove(eventId);
+            if (removed == null) {
+                return;
+            }
+            for (String word : removed.words) {
+                Map<Long, Float> events = writablePostings(word);
+                events.remove(eventId);
+                if (events.isEmpty()) {
+                    postings.remove(word);
+                    copied.remove(word);
+                }
+            }
+        }
+
+        private Map<Long, Float> writablePostings(String word) {
+            if (copied.add(word)) {
+                Map<Long, Float> existing = postings.get(word);
+                postings.put(word, existing == null ? new HashMap<>() : new HashMap<>(existing));
+            }
+            return postings.get(word);
+        }
+
+        private Index build() {
+            return new Index(Collections.unmodifiableNavigableMap(postings), Collections.unmodifiableMap(documents));
+        }
+    }
+
+    private static final class IndexedEvent {
+
+        private final CatalogEvent event;
+        private final List<String> words;
+
+        private IndexedEvent(CatalogEvent event, List<String> words) {
+            this.event = event;
+            this.words = words;
+        }
+    }
+}
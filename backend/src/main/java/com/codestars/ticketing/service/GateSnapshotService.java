@@ -0,0 +1,227 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.model.Ticket;
+import com.codestars.ticketing.repository.EventRepository;
+import com.codestars.ticketing.repository.TicketRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gate Snapshot Service - Exports ticket snapshots for offline gates and takes their scans back
+ *
+ * A full snapshot holds every ACTIVE and USED ticket of an event. A delta holds every
+ * ticket whose status changed after a previous snapshot's nextSince, including
+ * cancellations, so a gate can refresh without downloading the full list again.
+ *
+ * updatedAt is stamped by the writer before its transaction commits, so a change can
+ * become visible after a snapshot that already covers later timestamps. nextSince is
+ * therefore the newest updatedAt actually exported minus ticketing.snapshot.delta-overlap-ms:
+ * any write that commits within that window of being stamped reaches the next delta.
+ * Tickets changed inside the overlap appear in two deltas, which gates apply harmlessly.
+ * Full snapshots are also kept in ticketing.snapshot.directory, one file per event; deltas
+ * depend on the client's since and are only sent.
+ * Scans recorded offline are replayed through CheckInService, which decides who got
+ * in first and writes the results back in its usual batches.
+ */
+@Service
+public class GateSnapshotService {
+
+    private final EventRepository eventRepository;
+    private final TicketRepository ticketRepository;
+    private final CheckInService checkInService;
+    private final Path directory;
+    private final long overlapMillis;
+
+    @Autowired
+    public GateSnapshotService(EventRepository eventRepository,
+                               TicketRepository ticketRepository,
+                               CheckInService checkInService,
+                               @Value("${ticketing.snapshot.directory:${java.io.tmpdir}/ticketing-snapshots}") String directory,
+                               @Value("${ticketing.snapshot.delta-overlap-ms:5000}") long overlapMillis) {
+        this.eventRepository = eventRepository;
+        this.ticketRepository = ticketRepository;
+        this.checkInService = checkInService;
+        this.directory = Paths.get(directory);
+        this.overlapMillis = overlapMillis;
+    }
+
+    /**
+     * Build a snapshot for an event; a full snapshot is also written to the snapshot directory
+     * @param since a previous snapshot's nextSince for a delta, or null for a full snapshot
+     * @return the encoded snapshot, or null if the event does not exist
+     */
+    public Export exportSnapshot(Long eventId, Long since) {
+        if (!eventRepository.existsById(eventId)) {
+            return null;
+        }
+        // Include scans that are still waiting to be written back
+        checkInService.flushToDatabase();
+
+        long generatedAt = System.currentTimeMillis();
+        List<TicketRepository.GateView> views = since == null
+                ? ticketRepository.findGateViewsByEventId(eventId)
+                : ticketRepository.findGateViewsByEventIdChangedSince(eventId, toLocalDateTime(since));
+
+        List<GateSnapshot.Record> records = new ArrayList<>(views.size());
+        LocalDateTime newest = null;
+        for (TicketRepository.GateView view : views) {
+            if (newest == null || view.getUpdatedAt().isAfter(newest)) {
+                newest = view.getUpdatedAt();
+            }
+            if (since == null && view.getStatus() == Ticket.TicketStatus.CANCELLED) {
+                continue;
+            }
+            records.add(GateSnapshot.Record.of(view.getTicketCode(), view.getId(), view.getQuantity(),
+                    view.getStatus()));
+        }
+
+        long nextSince = nextSince(since, newest, generatedAt);
+        byte[] snapshot = GateSnapshot.encode(eventId, generatedAt, since == null ? 0 : since, nextSince, records);
+        if (since != null) {
+            // Deltas differ per client; they are only sent, never kept
+            return new Export("event-" + eventId + "-since-" + since + ".snap", snapshot);
+        }
+        String name = "event-" + eventId + ".snap";
+        try {
+            Files.createDirectories(directory);
+            GateSnapshot.write(directory.resolve(name), snapshot);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write gate snapshot for event " + eventId, e);
+        }
+        return new Export(name, snapshot);
+    }
+
+    /**
+     * Replay scans a gate recorded while offline, oldest first
+     * @return counts per outcome plus the scans that were rejected
+     */
+    public Map<String, Object> reconcile(Long eventId, List<OfflineScan> scans) {
+        List<OfflineScan> ordered = new ArrayList<>(scans);
+        ordered.sort((a, b) -> Long.compare(a.getScannedAt(), b.getScannedAt()));
+
+        Map<CheckInService.Outcome, Integer> counts = new EnumMap<>(CheckInService.Outcome.class);
+        List<Map<String, Object>> rejected = new ArrayList<>();
+        for (OfflineScan scan : ordered) {
+            CheckInService.CheckInResult result = checkInService.checkIn(eventId, scan.getTicketCode(),
+                    Instant.ofEpochMilli(scan.getScannedAt()));
+            counts.merge(result.getOutcome(), 1, Integer::sum);
+
+            if (result.getOutcome() != CheckInService.Outcome.ADMITTED) {
+                Map<String, Object> conflict = new LinkedHashMap<>();
+                conflict.put("ticketCode", scan.getTicketCode());
+                conflict.put("gateId", scan.getGateId());
+                conflict.put("scannedAt", Instant.ofEpochMilli(scan.getScannedAt()));
+                conflict.put("outcome", result.getOutcome());
+                conflict.put("firstCheckedInAt", result.getCheckedInAt());
+                rejected.add(conflict);
+            }
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("eventId", eventId);
+        response.put("received", scans.size());
+        response.put("outcomes", counts);
+        response.put("rejected", rejected);
+        return response;
+    }
+
+    /**
+     * Where the next delta starts: just before the newest change exported. With nothing
+     * exported, a delta keeps its since and an empty event starts from the export time.
+     */
+    private long nextSince(Long since, LocalDateTime newest, long generatedAt) {
+        if (newest == null) {
+            return since != null ? since : Math.max(1, generatedAt - overlapMillis);
+        }
+        long newestMillis = newest.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long next = Math.max(1, newestMillis - overlapMillis);
+        // Never move backwards, or repeated empty deltas would widen without end
+        return since != null ? Math.max(since, next) : next;
+    }
+
+    private LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    /**
+     * One exported snapshot: its bytes, as sent, and a file name for them
+     */
+    public static final class Export {
+
+        private final String fileName;
+        private final byte[] bytes;
+        private final GateSnapshot snapshot;
+
+        private Export(String fileName, byte[] bytes) {
+            this.fileName = fileName;
+            this.bytes = bytes;
+            this.snapshot = GateSnapshot.wrap(bytes);
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        /**
+         * The encoded snapshot; must not be modified
+         */
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public GateSnapshot getSnapshot() {
+            return snapshot;
+        }
+    }
+
+    /**
+     * One scan recorded by a gate while it was offline
+     */
+    public static class OfflineScan {
+        private String ticketCode;
+        private String gateId;
+        private long scannedAt;
+
+        public String getTicketCode() {
+            return ticketCode;
+        }
+
+        public void setTicketCode(String ticketCode) {
+            this.ticketCode = ticketCode;
+        }
+
+        public String getGateId() {
+            return gateId;
+        }
+
+        public void setGateId(String gateId) {
+            this.gateId = gateId;
+        }
+
+        /**
+         * Epoch millis on the gate's clock
+         */
+        public long getScannedAt() {
+            return scannedAt;
+        }
+
+        public void setScannedAt(long scannedAt) {
+            this.scannedAt = scannedAt;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.model.IdempotencyRecord;
+import com.codestars.ticketing.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency Service - Replays the first outcome of a request sent with an Idempotency-Key
+ *
+ * Outcomes live in a bounded, expiring LRU map in front of the idempotency_records table.
+ * A retry that hits the map is answered with one hash lookup and no database access.
+ *
+ * Before the action runs, the key is claimed by inserting its row with no outcome yet; the
+ * primary key lets exactly one request win on any number of nodes, and every other request
+ * for the key gets 409 CONFLICT until the outcome is written into the row. A claim whose
+ * outcome never arrives (the node stopped mid-purchase) can be taken over after
+ * ticketing.idempotency.claim-timeout-seconds, which must outlast the slowest purchase.
+ *
+ * Only final outcomes are kept. 5xx errors (including 503 for contention) and a thrown
+ * exception give the key back, so the client can retry with it. A queued purchase that
+ * outlives the request keeps the key until its outcome is stored. Callers validate the request
+ * and check the waiting room before execute, so those rejections never claim a key.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotencyRecordRepository recordRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final long ttlMillis;
+    private final long claimTimeoutMillis;
+    private final int maxEntries;
+
+    // Access-ordered so the least recently used key is evicted first; guarded by itself
+    private final LinkedHashMap<String, Entry> entries;
+
+    // Metrics
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong databaseHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong pending = new AtomicLong();
+
+    @Autowired
+    public IdempotencyService(IdempotencyRecordRepository recordRepository,
+                              ObjectMapper objectMapper,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${ticketing.idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${ticketing.idempotency.claim-timeout-seconds:300}") long claimTimeoutSeconds,
+                              @Value("${ticketing.idempotency.max-entries:100000}") int maxEntries) {
+        this.recordRepository = recordRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttlMillis = TimeUnit.HOURS.toMillis(ttlHours);
+        this.claimTimeoutMillis = TimeUnit.SECONDS.toMillis(claimTimeoutSeconds);
+        this.maxEntries = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > IdempotencyService.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Run the action once per key and replay its response for every retry
+     * @param key         client-supplied Idempotency-Key
+     * @param fingerprint identifies the request; reusing a key for a different request is rejected
+     * @param action      produces the response the first time the key is seen; may throw
+     *                    PendingResponseException to answer before its outcome is known
+     */
+    public ResponseEntity<?> execute(String key, String fingerprint, Supplier<ResponseEntity<?>> action) {
+        long now = System.currentTimeMillis();
+        Entry claimed = new Entry(fingerprint, now + ttlMillis);
+        Entry existing;
+        synchronized (entries) {
+            existing = entries.get(key);
+            if (existing != null && existing.expiresAt <= now) {
+                entries.remove(key);
+                existing = null;
+            }
+            if (existing == null) {
+                entries.put(key, claimed);
+            }
+        }
+
+        if (existing != null) {
+            cacheHits.incrementAndGet();
+            return replay(existing, fingerprint);
+        }
+
+        IdempotencyRecord stored;
+        try {
+            stored = claim(key, fingerprint);
+        } catch (RuntimeException e) {
+            forget(key, claimed);
+            System.err.println("Failed to claim Idempotency-Key " + key + ": " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", "1")
+                    .body(errorBody("The system is busy processing other requests. Please try again."));
+        }
+        if (stored != null) {
+            forget(key, claimed);
+            databaseHits.incrementAndGet();
+            Entry restored = new Entry(stored.getRequestFingerprint(), expiresAt(stored));
+            if (stored.getStatusCode() != null) {
+                restored.statusCode = stored.getStatusCode();
+                restored.responseBody = stored.getResponseBody();
+                synchronized (entries) {
+                    entries.put(key, restored);
+                }
+            }
+            // Without an outcome the first request is still running, possibly on another node
+            return replay(restored, fingerprint);
+        }
+
+        misses.incrementAndGet();
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (PendingResponseException e) {
+            // Keep the key claimed so retries conflict until the real outcome is stored
+            pending.incrementAndGet();
+            e.getFinalResponse().whenComplete((outcome, failure) -> {
+                pending.decrementAndGet();
+                finish(key, claimed, failure == null ? outcome : null);
+            });
+            return e.getInterimResponse();
+        } catch (RuntimeException e) {
+            release(key, claimed);
+            throw e;
+        }
+
+        finish(key, claimed, response);
+        return response;
+    }
+
+    public Map<String, Object> getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cachedKeys", size);
+        stats.put("maxEntries", maxEntries);
+        stats.put("cacheHits", cacheHits.get());
+        stats.put("databaseHits", databaseHits.get());
+        stats.put("misses", misses.get());
+        stats.put("conflicts", conflicts.get());
+        stats.put("pendingOutcomes", pending.get());
+        return stats;
+    }
+
+    /**
+     * Drop expired records from the table; the in-memory map expires on access and by LRU
+     */
+    @Scheduled(fixedDelayString = "${ticketing.idempotency.cleanup-interval-ms:3600000}")
+    public void purgeExpired() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(ttlMillis, ChronoUnit.MILLIS);
+        Integer removed = transactionTemplate.execute(status -> recordRepository.deleteCreatedBefore(cutoff));
+        if (removed != null && removed > 0) {
+            System.out.println("Removed " + removed + " expired idempotency records");
+        }
+    }
+
+    private ResponseEntity<?> replay(Entry entry, String fingerprint) {
+        if (!entry.fingerprint.equals(fingerprint)) {
+            return ResponseEntity.unprocessableEntity()
+                    .body(errorBody("Idempotency-Key was already used for a different request"));
+        }
+        if (entry.responseBody == null) {
+            conflicts.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(errorBody("A request with this Idempotency-Key is still being processed"));
+        }
+        return ResponseEntity.status(entry.statusCode)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Idempotent-Replayed", "true")
+                .body(entry.responseBody);
+    }
+
+    /**
+     * Insert the key's claim row, clearing it first if it has expired or was abandoned
+     * @return null if this request now owns the key, otherwise the row that holds it
+     */
+    private IdempotencyRecord claim(String key, String fingerprint) {
+        for (int attempt = 0; attempt < 3; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(tx ->
+                        recordRepository.insertClaim(key, fingerprint, LocalDateTime.now()));
+                return null;
+            } catch (DataIntegrityViolationException e) {
+                LocalDateTime now = LocalDateTime.now();
+                Integer removed = transactionTemplate.execute(tx -> recordRepository.deleteStale(key,
+                        now.minus(ttlMillis, ChronoUnit.MILLIS), now.minus(claimTimeoutMillis, ChronoUnit.MILLIS)));
+                if (removed == null || removed == 0) {
+                    Optional<IdempotencyRecord> holder = recordRepository.findById(key);
+                    if (holder.isPresent()) {
+                        return holder.get();
+                    }
+                }
+                // Cleared, or removed by its owner in the meantime: claim again
+            }
+        }
+        throw new TemporaryFailureException("Could not claim Idempotency-Key " + key, null);
+    }
+
+    /**
+     * Store a final response for retries, or give the key back if the response is not final
+     * (no response at all, 5xx or 503 contention)
+     */
+    private void finish(String key, Entry claimed, ResponseEntity<?> response) {
+        if (response == null || !isFinal(response.getStatusCodeValue())) {
+            release(key, claimed);
+            return;
+        }
+
+        int status = response.getStatusCodeValue();
+        try {
+            String body = objectMapper.writeValueAsString(response.getBody());
+            transactionTemplate.executeWithoutResult(tx -> recordRepository.completeClaim(key, status, body));
+            claimed.statusCode = status;
+            claimed.responseBody = body;
+        } catch (JsonProcessingException | RuntimeException e) {
+            // The purchase already happened; the claim stays, so retries conflict rather than buy again
+            System.err.println("Failed to store idempotent response for key " + key + ": " + e.getMessage());
+        }
+    }
+
+    private static boolean isFinal(int status) {
+        return status < 500 && status != HttpStatus.ACCEPTED.value();
+    }
+
+    private void release(String key, Entry claimed) {
+        try {
+            transactionTemplate.executeWithoutResult(tx -> recordRepository.releaseClaim(key));
+        } catch (RuntimeException e) {
+            // Left to expire as an abandoned claim
+            System.err.println("Failed to release Idempotency-Key " + key + ": " + e.getMessage());
+        }
+        forget(key, claimed);
+    }
+
+    private void forget(String key, Entry claimed) {
+        synchronized (entries) {
+            entries.remove(key, claimed);
+        }
+    }
+
+    private long expiresAt(IdempotencyRecord record) {
+        return record.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() + ttlMillis;
+    }
+
+    private Map<String, Object> errorBody(String message) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("success", false);
+        error.put("error", message);
+        return error;
+    }
+
+    /**
+     * A key's outcome, or a claim on the key while the first request is running
+     */
+    private static final class Entry {
+
+        private final String fingerprint;
+        private final long expiresAt;
+        private volatile int statusCode;
+        private volatile String responseBody;
+
+        private Entry(String fingerprint, long expiresAt) {
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.model.Event;
+import com.codestars.ticketing.model.Ticket;
+import com.codestars.ticketing.repository.EventRepository;
+import com.codestars.ticketing.repository.TicketRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Inventory Service - In-memory ticket inventory for the purchase hot path
+ *
+ * Each event's remaining capacity lives in an AtomicInteger that is reserved with a
+ * compare-and-set loop, so concurrent buyers never block each other and the counter
+ * can never go below zero. Committed changes are collected per event and written back
+ * to the events table by a scheduled flush as a single UPDATE, which keeps purchases
+ * away from the Event row and its @Version column.
+ *
+ * Counters are loaded lazily from the database: capacity is recomputed from the tickets
+ * table (totalTickets minus issued quantities), so a restart never trusts a column that
+ * may be missing the last unflushed deltas.
+ *
+ * With ticketing.inventory.strategy=database the counters are bypassed and every
+ * reservation is a guarded single-statement UPDATE on the events row instead. That keeps
+ * the database authoritative, which is what a multi-node deployment needs.
+ *
+ * Every reservation and release publishes an AvailabilityChangedEvent in the caller's
+ * transaction, so read-side caches can follow availability without polling.
+ */
+@Service
+public class InventoryService {
+
+    private final EventRepository eventRepository;
+    private final TicketRepository ticketRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean databaseStrategy;
+
+    private final Map<Long, EventInventory> inventories = new ConcurrentHashMap<>();
+
+    @Autowired
+    public InventoryService(EventRepository eventRepository,
+                            TicketRepository ticketRepository,
+                            PlatformTransactionManager transactionManager,
+                            ApplicationEventPublisher eventPublisher,
+                            @Value("${ticketing.inventory.strategy:memory}") String strategy) {
+        this.eventRepository = eventRepository;
+        this.ticketRepository = ticketRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.databaseStrategy = "database".equalsIgnoreCase(strategy);
+    }
+
+    /**
+     * Whether reservations are written to the events table at once rather than kept in
+     * in-memory counters
+     */
+    public boolean isDatabaseStrategy() {
+        return databaseStrategy;
+    }
+
+    /**
+     * Atomically reserve tickets for an event.
+     * Inside a transaction the reservation is returned to the pool on rollback and only
+     * queued for write-back once the transaction commits.
+     *
+     * @return true if the tickets were reserved, false if not enough are left
+     */
+    public boolean tryReserve(Event event, int quantity) {
+        if (databaseStrategy) {
+            // Joins the caller's transaction, or runs on its own for seat holds
+            Integer updated = transactionTemplate.execute(status ->
+                    eventRepository.reserveTickets(event.getId(), quantity));
+            if (updated == null || updated != 1) {
+                return false;
+            }
+            eventPublisher.publishEvent(new AvailabilityChangedEvent(event.getId(), -quantity));
+            return true;
+        }
+
+        EventInventory inventory = inventoryFor(event);
+        if (!inventory.tryTake(quantity)) {
+            return false;
+        }
+
+        afterCompletion(
+                () -> inventory.pendingDeduction.addAndGet(quantity),
+                () -> inventory.available.addAndGet(quantity));
+        eventPublisher.publishEvent(new AvailabilityChangedEvent(event.getId(), -quantity));
+        return true;
+    }
+
+    /**
+     * Return tickets to an event's pool, e.g. after a cancellation.
+     * Inside a transaction the tickets only become available again once it commits.
+     */
+    public void release(Event event, int quantity) {
+        if (databaseStrategy) {
+            Integer updated = transactionTemplate.execute(status ->
+                    eventRepository.releaseTickets(event.getId(), quantity));
+            if (updated != null && updated == 1) {
+                eventPublisher.publishEvent(new AvailabilityChangedEvent(event.getId(), quantity));
+            }
+            return;
+        }
+
+        EventInventory inventory = inventoryFor(event);
+        afterCompletion(() -> {
+            inventory.available.addAndGet(quantity);
+            inventory.pendingDeduction.addAndGet(-quantity);
+        }, null);
+        eventPublisher.publishEvent(new AvailabilityChangedEvent(event.getId(), quantity));
+    }
+
+    /**
+     * Change an event's capacity. Event.availableTickets is not updatable through the entity,
+     * so this is the only way to add or withdraw stock: the new tickets go on sale (or are
+     * taken off sale) together with totalTickets, and a reduction is refused if more tickets
+     * have already been sold or held than the new capacity allows.
+     *
+     * @return true if the capacity is now newTotal, false if it would go below what is sold,
+     *         or the event's capacity was changed by someone else since it was read
+     */
+    public boolean changeCapacity(Event event, int newTotal) {
+        int currentTotal = event.getTotalTickets();
+        int delta = newTotal - currentTotal;
+        if (delta == 0) {
+            return true;
+        }
+
+        Boolean changed = transactionTemplate.execute(status -> {
+            if (databaseStrategy) {
+                if (eventRepository.resizeTickets(event.getId(), currentTotal, delta) != 1) {
+                    return false;
+                }
+            } else {
+                EventInventory inventory = inventoryFor(event);
+                if (eventRepository.resizeTotalTickets(event.getId(), currentTotal, delta) != 1) {
+                    return false;
+                }
+                if (delta < 0) {
+                    if (!inventory.tryTake(-delta)) {
+                        status.setRollbackOnly();
+                        return false;
+                    }
+                    afterCompletion(
+                            () -> inventory.pendingDeduction.addAndGet(-delta),
+                            () -> inventory.available.addAndGet(-delta));
+                } else {
+                    afterCompletion(() -> {
+                        inventory.available.addAndGet(delta);
+                        inventory.pendingDeduction.addAndGet(-delta);
+                    }, null);
+                }
+            }
+            eventPublisher.publishEvent(new AvailabilityChangedEvent(event.getId(), delta));
+            eventPublisher.publishEvent(new CatalogChangedEvent(event.getId()));
+            return true;
+        });
+        return Boolean.TRUE.equals(changed);
+    }
+
+    /**
+     * Current availability for an event
+     */
+    public int getAvailableTickets(Event event) {
+        if (databaseStrategy) {
+            Integer available = eventRepository.findAvailableTicketsById(event.getId());
+            return available != null ? available : 0;
+        }
+        return inventoryFor(event).available.get();
+    }
+
+    /**
+     * Availability from the in-memory counter, or null if the event has no counter loaded
+     * (or the database strategy is in use). Never touches the database.
+     */
+    public Integer peekAvailableTickets(Long eventId) {
+        EventInventory inventory = inventories.get(eventId);
+        return inventory != null ? inventory.available.get() : null;
+    }
+
+    /**
+     * Write committed inventory changes back to the events table.
+     * Each event gets at most one UPDATE per flush regardless of how many tickets were sold.
+     */
+    @Scheduled(fixedDelayString = "${ticketing.inventory.flush-interval-ms:500}")
+    public void flushToDatabase() {
+        inventories.forEach((eventId, inventory) -> {
+            int deduction = inventory.pendingDeduction.getAndSet(0);
+            if (deduction == 0) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        eventRepository.deductAvailableTickets(eventId, deduction));
+            } catch (RuntimeException e) {
+                // Keep the delta so the next flush retries it
+                inventory.pendingDeduction.addAndGet(deduction);
+                System.err.println("Failed to flush inventory for event " + eventId + ": " + e.getMessage());
+            }
+        });
+    }
+
+    private EventInventory inventoryFor(Event event) {
+        return inventories.computeIfAbsent(event.getId(), id -> loadInventory(event));
+    }
+
+    /**
+     * Rebuild an event's counter from the tickets table, which is always written in the
+     * purchase transaction. Any drift in the events.availableTickets column (for example
+     * deltas lost in a crash before the last flush) is queued as a correction.
+     */
+    private EventInventory loadInventory(Event event) {
+        long issued = ticketRepository.sumQuantityByEventIdAndStatusNot(
+                event.getId(), Ticket.TicketStatus.CANCELLED);
+        int available = (int) Math.max(0, event.getTotalTickets() - issued);
+
+        EventInventory inventory = new EventInventory(available);
+        inventory.pendingDeduction.set(event.getAvailableTickets() - available);
+        return inventory;
+    }
+
+    private void afterCompletion(Runnable onCommit, Runnable onRollback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            onCommit.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    onCommit.run();
+                } else if (onRollback != null) {
+                    onRollback.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Per-event counters: what can still be sold, and what has been sold (or returned)
+     * but not yet written back to the events table.
+     */
+    private static final class EventInventory {
+
+        private final AtomicInteger available;
+        private final AtomicInteger pendingDeduction = new AtomicInteger();
+
+        private EventInventory(int available) {
+            this.available = new AtomicInteger(available);
+        }
+
+        private boolean tryTake(int quantity) {
+            while (true) {
+                int current = available.get();
+                if (current < quantity) {
+                    return false;
+                }
+                if (available.compareAndSet(current, current - quantity)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.codestars.ticketing.service;
+
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Thrown by an idempotent action that has to answer before its work is done. The caller
+ * gets getInterimResponse() now; IdempotencyService keeps the key claimed and stores the
+ * final response from getFinalResponse() for retries once it arrives.
+ */
+public class PendingResponseException extends RuntimeException {
+
+    private final transient ResponseEntity<?> interimResponse;
+    private final transient CompletableFuture<ResponseEntity<?>> finalResponse;
+
+    public PendingResponseException(ResponseEntity<?> interimResponse,
+                                    CompletableFuture<ResponseEntity<?>> finalResponse) {
+        super("Response pending", null, false, false);
+        this.interimResponse = interimResponse;
+        this.finalResponse = finalResponse;
+    }
+
+    public ResponseEntity<?> getInterimResponse() {
+        return interimResponse;
+    }
+
+    public CompletableFuture<ResponseEntity<?>> getFinalResponse() {
+        return finalResponse;
+    }
+}
@@ -0,0 +1,23 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.model.Ticket;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Thrown when a queued purchase has not finished in time to answer the request. The
+ * purchase itself carries on and may still succeed; its outcome arrives through getPurchase()
+ */
+public class PurchasePendingException extends RuntimeException {
+
+    private final transient CompletableFuture<Ticket> purchase;
+
+    public PurchasePendingException(String message, CompletableFuture<Ticket> purchase) {
+        super(message);
+        this.purchase = purchase;
+    }
+
+    public CompletableFuture<Ticket> getPurchase() {
+        return purchase;
+    }
+}
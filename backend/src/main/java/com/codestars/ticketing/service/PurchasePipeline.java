@@ -0,0 +1,324 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.model.Event;
+import com.codestars.ticketing.model.Ticket;
+import com.codestars.ticketing.model.User;
+import com.codestars.ticketing.repository.EventRepository;
+import com.codestars.ticketing.repository.TicketRepository;
+import com.codestars.ticketing.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Purchase Pipeline - Per-event single-writer purchase queue with group commit
+ *
+ * Enabled with ticketing.purchase.mode=pipeline. Each event gets its own queue, and at
+ * most one writer drains it at a time. The writer takes up to batch-size requests
+ * (waiting up to linger-ms for a batch to fill), then commits every Ticket insert plus a
+ * single inventory reservation in one transaction. Callers wait on a future that
+ * completes with their ticket once the batch commits.
+ */
+@Service
+public class PurchasePipeline {
+
+    private final EventRepository eventRepository;
+    private final TicketRepository ticketRepository;
+    private final UserRepository userRepository;
+    private final InventoryService inventoryService;
+    private final EmailOutboxService emailOutbox;
+    private final TicketCodeGenerator codeGenerator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ContentionRetryPolicy retryPolicy;
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final ExecutorService writers;
+
+    private final Map<Long, EventLane> lanes = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final AtomicLong batchesCommitted = new AtomicLong();
+    private final AtomicLong purchasesCommitted = new AtomicLong();
+    private final AtomicInteger lastBatchSize = new AtomicInteger();
+    private final AtomicInteger maxBatchSize = new AtomicInteger();
+
+    @Autowired
+    public PurchasePipeline(EventRepository eventRepository,
+                            TicketRepository ticketRepository,
+                            UserRepository userRepository,
+                            InventoryService inventoryService,
+                            EmailOutboxService emailOutbox,
+                            TicketCodeGenerator codeGenerator,
+                            ApplicationEventPublisher eventPublisher,
+                            ContentionRetryPolicy retryPolicy,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${ticketing.purchase.mode:direct}") String mode,
+                            @Value("${ticketing.purchase.pipeline.batch-size:64}") int batchSize,
+                            @Value("${ticketing.purchase.pipeline.linger-ms:5}") long lingerMs,
+                            @Value("${ticketing.purchase.pipeline.writer-threads:4}") int writerThreads) {
+        this.eventRepository = eventRepository;
+        this.ticketRepository = ticketRepository;
+        this.userRepository = userRepository;
+        this.inventoryService = inventoryService;
+        this.emailOutbox = emailOutbox;
+        this.codeGenerator = codeGenerator;
+        this.eventPublisher = eventPublisher;
+        this.retryPolicy = retryPolicy;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = "pipeline".equalsIgnoreCase(mode);
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMs));
+        this.writers = Executors.newFixedThreadPool(Math.max(1, writerThreads), runnable -> {
+            Thread thread = new Thread(runnable, "purchase-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queue a purchase for its event's writer.
+     * The future completes with the saved ticket, or exceptionally with the purchase error.
+     */
+    public CompletableFuture<Ticket> submit(Long eventId, String userName, String userEmail,
+                                            String phoneNumber, Integer quantity) {
+        PendingPurchase purchase = new PendingPurchase(userName, userEmail, phoneNumber, quantity);
+        EventLane lane = lanes.computeIfAbsent(eventId, EventLane::new);
+
+        lane.queue.add(purchase);
+        lane.depth.incrementAndGet();
+        scheduleDrain(lane);
+        return purchase.result;
+    }
+
+    /**
+     * Queue depth per event and batch size statistics
+     */
+    public Map<String, Object> getStats() {
+        Map<Long, Integer> queueDepths = new LinkedHashMap<>();
+        lanes.forEach((eventId, lane) -> queueDepths.put(eventId, lane.depth.get()));
+
+        long batches = batchesCommitted.get();
+        long purchases = purchasesCommitted.get();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("queueDepthByEvent", queueDepths);
+        stats.put("batchesCommitted", batches);
+        stats.put("purchasesCommitted", purchases);
+        stats.put("averageBatchSize", batches == 0 ? 0.0 : (double) purchases / batches);
+        stats.put("lastBatchSize", lastBatchSize.get());
+        stats.put("maxBatchSize", maxBatchSize.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.shutdown();
+    }
+
+    private void scheduleDrain(EventLane lane) {
+        if (lane.draining.compareAndSet(false, true)) {
+            writers.execute(() -> drain(lane));
+        }
+    }
+
+    /**
+     * Single-writer loop for one event. Re-checks the queue after releasing the
+     * draining flag so a purchase queued in between is never stranded.
+     */
+    private void drain(EventLane lane) {
+        try {
+            while (!lane.queue.isEmpty()) {
+                if (lingerNanos > 0 && lane.depth.get() < batchSize) {
+                    LockSupport.parkNanos(lingerNanos);
+                }
+
+                List<PendingPurchase> batch = new ArrayList<>(batchSize);
+                PendingPurchase next;
+                while (batch.size() < batchSize && (next = lane.queue.poll()) != null) {
+                    batch.add(next);
+                }
+                lane.depth.addAndGet(-batch.size());
+                commitBatch(lane, batch);
+            }
+        } finally {
+            lane.draining.set(false);
+            if (!lane.queue.isEmpty()) {
+                scheduleDrain(lane);
+            }
+        }
+    }
+
+    private void commitBatch(EventLane lane, List<PendingPurchase> batch) {
+        List<PendingPurchase> accepted;
+        try {
+            accepted = retryPolicy.execute(() -> transactionTemplate.execute(status -> writeBatch(lane.eventId, batch)));
+        } catch (RuntimeException e) {
+            batch.forEach(purchase -> purchase.result.completeExceptionally(e));
+            if (e instanceof EventNotFoundException) {
+                lanes.remove(lane.eventId, lane);
+            }
+            return;
+        }
+
+        if (!accepted.isEmpty()) {
+            batchesCommitted.incrementAndGet();
+            purchasesCommitted.addAndGet(accepted.size());
+            lastBatchSize.set(accepted.size());
+            maxBatchSize.accumulateAndGet(accepted.size(), Math::max);
+        }
+
+        for (PendingPurchase purchase : batch) {
+            if (purchase.rejection != null) {
+                purchase.result.completeExceptionally(purchase.rejection);
+            } else {
+                purchase.result.complete(purchase.ticket);
+            }
+        }
+    }
+
+    /**
+     * One transaction for the whole batch: accept requests in arrival order while
+     * inventory lasts, reserve their total in one step, then insert users, tickets and
+     * their confirmation emails.
+     */
+    private List<PendingPurchase> writeBatch(Long eventId, List<PendingPurchase> batch) {
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new EventNotFoundException(eventId));
+
+        int available = inventoryService.getAvailableTickets(event);
+        int requested = 0;
+        List<PendingPurchase> accepted = new ArrayList<>(batch.size());
+        for (PendingPurchase purchase : batch) {
+            purchase.rejection = null;
+            purchase.ticket = null;
+            if (requested + purchase.quantity <= available) {
+                requested += purchase.quantity;
+                accepted.add(purchase);
+            } else {
+                purchase.rejection = new RuntimeException("Not enough tickets available. Only " +
+                        (available - requested) + " tickets remaining.");
+            }
+        }
+
+        if (accepted.isEmpty()) {
+            return accepted;
+        }
+
+        // Normally a single reservation; fall back to one per request if a direct purchase raced us
+        if (!inventoryService.tryReserve(event, requested)) {
+            List<PendingPurchase> reserved = new ArrayList<>(accepted.size());
+            for (PendingPurchase purchase : accepted) {
+                if (inventoryService.tryReserve(event, purchase.quantity)) {
+                    reserved.add(purchase);
+                } else {
+                    purchase.rejection = new RuntimeException("Not enough tickets available. Only " +
+                            inventoryService.getAvailableTickets(event) + " tickets remaining.");
+                }
+            }
+            accepted = reserved;
+        }
+
+        Map<String, User> users = findOrCreateUsers(accepted);
+        List<Ticket> tickets = new ArrayList<>(accepted.size());
+        for (PendingPurchase purchase : accepted) {
+            User user = users.get(purchase.userEmail);
+            purchase.ticket = new Ticket(codeGenerator.nextCode(), user, event, purchase.quantity,
+                    event.getPriceKES() * purchase.quantity);
+            tickets.add(purchase.ticket);
+        }
+        ticketRepository.saveAll(tickets);
+        emailOutbox.enqueueTicketConfirmations(tickets);
+        tickets.forEach(ticket -> eventPublisher.publishEvent(new TicketIssuedEvent(ticket.getId(),
+                eventId, ticket.getTicketCode(), ticket.getQuantity())));
+        return accepted;
+    }
+
+    private Map<String, User> findOrCreateUsers(List<PendingPurchase> purchases) {
+        Map<String, User> users = new HashMap<>();
+        List<String> emails = new ArrayList<>(purchases.size());
+        purchases.forEach(purchase -> emails.add(purchase.userEmail));
+        userRepository.findByEmailIn(emails).forEach(user -> users.put(user.getEmail(), user));
+
+        List<User> newUsers = new ArrayList<>();
+        for (PendingPurchase purchase : purchases) {
+            if (!users.containsKey(purchase.userEmail)) {
+                User user = new User(purchase.userName, purchase.userEmail, purchase.phoneNumber);
+                users.put(purchase.userEmail, user);
+                newUsers.add(user);
+            }
+        }
+        userRepository.saveAll(newUsers);
+        return users;
+    }
+
+    /**
+     * Queue and writer state for one event
+     */
+    private static final class EventLane {
+
+        private final Long eventId;
+        private final Queue<PendingPurchase> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger depth = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private EventLane(Long eventId) {
+            this.eventId = eventId;
+        }
+    }
+
+    private static final class PendingPurchase {
+
+        private final String userName;
+        private final String userEmail;
+        private final String phoneNumber;
+        private final int quantity;
+        private final CompletableFuture<Ticket> result = new CompletableFuture<>();
+
+        // Outcome of the current commit attempt
+        private Ticket ticket;
+        private RuntimeException rejection;
+
+        private PendingPurchase(String userName, String userEmail, String phoneNumber, int quantity) {
+            this.userName = userName;
+            this.userEmail = userEmail;
+            this.phoneNumber = phoneNumber;
+            this.quantity = quantity;
+        }
+    }
+
+    private static final class EventNotFoundException extends RuntimeException {
+
+        private EventNotFoundException(Long eventId) {
+            super("Event not found with id: " + eventId);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.model.Event;
+import com.codestars.ticketing.model.Ticket;
+import com.codestars.ticketing.repository.EventRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Seat Hold Service - Time-limited reservations while the buyer pays
+ *
+ * A hold takes tickets out of the event's inventory immediately and lives only in
+ * memory. Confirming it issues a Ticket without reserving again; if nobody confirms
+ * within the TTL the hashed wheel timer fires and the tickets go back to the pool.
+ * Confirm, release and expiry all start by removing the hold from the map, so exactly
+ * one of them wins for any hold.
+ *
+ * Holds are refused with ticketing.inventory.strategy=database. That strategy writes the
+ * reservation to the events row at once, so a hold lost in a restart would keep its tickets
+ * off sale for good; the memory strategy recomputes capacity from issued tickets on start.
+ */
+@Service
+public class SeatHoldService {
+
+    private final EventRepository eventRepository;
+    private final InventoryService inventoryService;
+    private final TicketService ticketService;
+    private final long ttlSeconds;
+
+    private final Map<String, SeatHold> holds = new ConcurrentHashMap<>();
+    private final ExecutorService expiryExecutor;
+    private final HashedWheelTimer timer;
+
+    private final AtomicLong holdsCreated = new AtomicLong();
+    private final AtomicLong holdsConfirmed = new AtomicLong();
+    private final AtomicLong holdsExpired = new AtomicLong();
+
+    @Autowired
+    public SeatHoldService(EventRepository eventRepository,
+                           InventoryService inventoryService,
+                           TicketService ticketService,
+                           @Value("${ticketing.hold.ttl-seconds:600}") long ttlSeconds,
+                           @Value("${ticketing.hold.wheel-tick-ms:100}") long tickMillis,
+                           @Value("${ticketing.hold.wheel-size:1024}") int wheelSize) {
+        this.eventRepository = eventRepository;
+        this.inventoryService = inventoryService;
+        this.ticketService = ticketService;
+        this.ttlSeconds = ttlSeconds;
+        this.expiryExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "seat-hold-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer = new HashedWheelTimer("seat-hold-timer", tickMillis, wheelSize, expiryExecutor);
+    }
+
+    /**
+     * Reserve tickets for the hold's TTL
+     */
+    public SeatHold createHold(Long eventId, String userName, String userEmail,
+                               String phoneNumber, Integer quantity) {
+        if (!isEnabled()) {
+            throw new IllegalStateException("Seat holds are not available with the database inventory strategy");
+        }
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new RuntimeException("Event not found with id: " + eventId));
+
+        if (!inventoryService.tryReserve(event, quantity)) {
+            throw new RuntimeException("Not enough tickets available. Only " +
+                    inventoryService.getAvailableTickets(event) + " tickets remaining.");
+        }
+
+        SeatHold hold = new SeatHold(UUID.randomUUID().toString(), event, userName, userEmail,
+                phoneNumber, quantity, LocalDateTime.now().plusSeconds(ttlSeconds));
+        // Visible before the expiry is scheduled, so an early expiry always finds the hold
+        holds.put(hold.getHoldId(), hold);
+        hold.timeout = timer.schedule(() -> expire(hold), ttlSeconds, TimeUnit.SECONDS);
+        holdsCreated.incrementAndGet();
+        return hold;
+    }
+
+    /**
+     * Whether holds can be created; they cannot with the database inventory strategy
+     */
+    public boolean isEnabled() {
+        return !inventoryService.isDatabaseStrategy();
+    }
+
+    /**
+     * Turn a live hold into a ticket
+     */
+    public Ticket confirmHold(String holdId) {
+        SeatHold hold = take(holdId);
+        try {
+            Ticket ticket = ticketService.issueReservedTicket(hold.getEvent().getId(), hold.getUserName(),
+                    hold.getUserEmail(), hold.getPhoneNumber(), hold.getQuantity());
+            holdsConfirmed.incrementAndGet();
+            return ticket;
+        } catch (RuntimeException e) {
+            inventoryService.release(hold.getEvent(), hold.getQuantity());
+            throw e;
+        }
+    }
+
+    /**
+     * Give up a hold before it expires
+     */
+    public void releaseHold(String holdId) {
+        SeatHold hold = take(holdId);
+        inventoryService.release(hold.getEvent(), hold.getQuantity());
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("activeHolds", holds.size());
+        stats.put("pendingTimeouts", timer.pendingTimeouts());
+        stats.put("holdsCreated", holdsCreated.get());
+        stats.put("holdsConfirmed", holdsConfirmed.get());
+        stats.put("holdsExpired", holdsExpired.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.stop();
+        expiryExecutor.shutdown();
+    }
+
+    private SeatHold take(String holdId) {
+        SeatHold hold = holds.remove(holdId);
+        if (hold == null) {
+            throw new RuntimeException("Hold not found or expired: " + holdId);
+        }
+        // Null if the hold is confirmed or released before its expiry was scheduled; that
+        // expiry then finds nothing to remove
+        HashedWheelTimer.Timeout timeout = hold.timeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        return hold;
+    }
+
+    private void expire(SeatHold hold) {
+        if (holds.remove(hold.getHoldId(), hold)) {
+            inventoryService.release(hold.getEvent(), hold.getQuantity());
+            holdsExpired.incrementAndGet();
+        }
+    }
+
+    /**
+     * A live hold on tickets for one buyer
+     */
+    public static final class SeatHold {
+
+        private final String holdId;
+        private final Event event;
+        private final String userName;
+        private final String userEmail;
+        private final String phoneNumber;
+        private final int quantity;
+        private final LocalDateTime expiresAt;
+        private volatile HashedWheelTimer.Timeout timeout;
+
+        private SeatHold(String holdId, Event event, String userName, String userEmail,
+                         String phoneNumber, int quantity, LocalDateTime expiresAt) {
+            this.holdId = holdId;
+            this.event = event;
+            this.userName = userName;
+            this.userEmail = userEmail;
+            this.phoneNumber = phoneNumber;
+            this.quantity = quantity;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getHoldId() {
+            return holdId;
+        }
+
+        public Event getEvent() {
+            return event;
+        }
+
+        public String getUserName() {
+            return userName;
+        }
+
+        public String getUserEmail() {
+            return userEmail;
+        }
+
+        public String getPhoneNumber() {
+            return phoneNumber;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public LocalDateTime getExpiresAt() {
+            return expiresAt;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.codestars.ticketing.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Sequence Ticket Code Generator - Time, node id and sequence codes in Crockford base32
+ *
+ * A code packs 30 bits of seconds since 2025-01-01, an 8-bit node id and a 12-bit
+ * per-second sequence into 10 base32 characters, then 30 bits from a SecureRandom into 6
+ * more, followed by a Luhn mod 32 check character: TKT-XXXX-XXXX-XXXX-XXXXC. Uniqueness
+ * comes from (second, node, sequence), so each node must have its own
+ * ticketing.ticket-code.node-id. The random part is what keeps codes from being guessed:
+ * ticket details are served by code, and knowing one code (or the issue time) still
+ * leaves about a billion candidates for its neighbours.
+ *
+ * Generation is one CAS on a packed (second, sequence) counter. If a node issues more
+ * than 4096 codes in one second it borrows the next second, at most
+ * MAX_BORROWED_SECONDS ahead of the clock; beyond that it waits for the clock. A new
+ * generator starts as if it had used up every second a previous run on the same node
+ * could have borrowed, so a quick restart never repeats (second, sequence) pairs. The
+ * clock itself must not be set back across a restart. Crockford's alphabet has no I, L,
+ * O or U, and decoding treats I/L as 1 and O as 0, so codes are easy to read aloud and type.
+ *
+ * Codes issued in earlier formats (TKT- plus 8 hex characters, or 12 base32 characters
+ * and a check character) are still accepted.
+ */
+@Component
+public class SequenceTicketCodeGenerator implements TicketCodeGenerator {
+
+    private static final String PREFIX = "TKT-";
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int[] DECODE = new int[128];
+
+    private static final long EPOCH_SECONDS = 1735689600L; // 2025-01-01T00:00:00Z
+    private static final int SEQUENCE_BITS = 12;
+    private static final int NODE_BITS = 8;
+    private static final int SECONDS_BITS = 30;
+    private static final int RANDOM_BITS = 30;
+    private static final int STAMP_CHARS = 10; // (30 + 8 + 12) bits / 5 bits per character
+    private static final int CODE_CHARS = STAMP_CHARS + RANDOM_BITS / 5;
+    private static final int PREVIOUS_CODE_CHARS = 12;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long MAX_BORROWED_SECONDS = 2;
+    private static final int LEGACY_HEX_CHARS = 8;
+
+    // One generator per thread, seeded from the OS: a shared SecureRandom serialises its callers
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(() -> {
+        try {
+            return SecureRandom.getInstance("SHA1PRNG");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    });
+
+    static {
+        Arrays.fill(DECODE, -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            DECODE[ALPHABET[i]] = i;
+            DECODE[Character.toLowerCase(ALPHABET[i])] = i;
+        }
+        DECODE['O'] = DECODE['o'] = 0;
+        DECODE['I'] = DECODE['i'] = 1;
+        DECODE['L'] = DECODE['l'] = 1;
+    }
+
+    private final long nodeId;
+    private final LongSupplier clock;
+
+    // (seconds since epoch << SEQUENCE_BITS) | sequence of the last code issued
+    private final AtomicLong lastStamp;
+
+    @Autowired
+    public SequenceTicketCodeGenerator(@Value("${ticketing.ticket-code.node-id:0}") int nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock epoch millis; replaceable so benchmarks are not held to 4096 codes per second
+     */
+    SequenceTicketCodeGenerator(int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId >= (1 << NODE_BITS)) {
+            throw new IllegalArgumentException("ticketing.ticket-code.node-id must be between 0 and " +
+                    ((1 << NODE_BITS) - 1));
+        }
+        this.nodeId = nodeId;
+        this.clock = clock;
+        // Everything up to the furthest second a previous run could have borrowed counts as used
+        long seconds = currentSeconds() + MAX_BORROWED_SECONDS;
+        this.lastStamp = new AtomicLong((seconds << SEQUENCE_BITS) | SEQUENCE_MASK);
+    }
+
+    @Override
+    public String nextCode() {
+        long stamp = nextStamp();
+        long seconds = (stamp >>> SEQUENCE_BITS) & ((1L << SECONDS_BITS) - 1);
+        long value = seconds;
+        value = (value << NODE_BITS) | nodeId;
+        value = (value << SEQUENCE_BITS) | (stamp & SEQUENCE_MASK);
+        long random = RANDOM.get().nextInt(1 << RANDOM_BITS);
+
+        int[] digits = new int[CODE_CHARS + 1];
+        for (int i = CODE_CHARS - 1; i >= STAMP_CHARS; i--) {
+            digits[i] = (int) (random & 31);
+            random >>>= 5;
+        }
+        for (int i = STAMP_CHARS - 1; i >= 0; i--) {
+            digits[i] = (int) (value & 31);
+            value >>>= 5;
+        }
+        digits[CODE_CHARS] = checkDigit(digits, CODE_CHARS);
+        return format(digits, CODE_CHARS + 1);
+    }
+
+    @Override
+    public String normalize(String input) {
+        if (input == null) {
+            return null;
+        }
+        String body = input.trim();
+        if (body.regionMatches(true, 0, PREFIX, 0, PREFIX.length())) {
+            body = body.substring(PREFIX.length());
+        }
+
+        if (isLegacyCode(body)) {
+            return PREFIX + body.toUpperCase();
+        }
+
+        int[] digits = new int[CODE_CHARS + 1];
+        int count = 0;
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (c == '-' || c == ' ') {
+                continue;
+            }
+            if (c >= 128 || DECODE[c] < 0 || count == digits.length) {
+                return null;
+            }
+            digits[count++] = DECODE[c];
+        }
+        if (count != CODE_CHARS + 1 && count != PREVIOUS_CODE_CHARS + 1) {
+            return null;
+        }
+        if (checkDigit(digits, count - 1) != digits[count - 1]) {
+            return null;
+        }
+        return format(digits, count);
+    }
+
+    private boolean isLegacyCode(String body) {
+        if (body.length() != LEGACY_HEX_CHARS) {
+            return false;
+        }
+        for (int i = 0; i < body.length(); i++) {
+            if (Character.digit(body.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Canonical form of code digits (the last one being the check character): the prefix,
+     * then groups of four with the check character joined to the last group
+     */
+    private static String format(int[] digits, int count) {
+        char[] code = new char[PREFIX.length() + count + (count - 2) / 4];
+        PREFIX.getChars(0, PREFIX.length(), code, 0);
+        int position = PREFIX.length();
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && i % 4 == 0 && i < count - 1) {
+                code[position++] = '-';
+            }
+            code[position++] = ALPHABET[digits[i]];
+        }
+        return new String(code);
+    }
+
+    private long nextStamp() {
+        while (true) {
+            long last = lastStamp.get();
+            long nowSeconds = currentSeconds();
+            long lastSeconds = last >>> SEQUENCE_BITS;
+            long next;
+            if (nowSeconds > lastSeconds) {
+                next = nowSeconds << SEQUENCE_BITS;
+            } else if ((last & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                next = last + 1;
+            } else if (lastSeconds < nowSeconds + MAX_BORROWED_SECONDS) {
+                next = (lastSeconds + 1) << SEQUENCE_BITS; // sequence exhausted: borrow the next second
+            } else {
+                // Borrowed as far ahead as allowed: wait for the clock to catch up
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                continue;
+            }
+            if (lastStamp.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    private long currentSeconds() {
+        return clock.getAsLong() / 1000 - EPOCH_SECONDS;
+    }
+
+    /**
+     * Luhn mod 32 check character: catches every single-character error and almost
+     * every swap of adjacent characters
+     */
+    private static int checkDigit(int[] digits, int length) {
+        int factor = 2;
+        int sum = 0;
+        for (int i = length - 1; i >= 0; i--) {
+            int addend = factor * digits[i];
+            factor = factor == 2 ? 1 : 2;
+            addend = addend / 32 + addend % 32;
+            sum += addend;
+        }
+        return (32 - sum % 32) % 32;
+    }
+}
@@ -0,0 +1,12 @@
+package com.codestars.ticketing.service;
+
+/**
+ * Thrown when a request could not be completed for a passing reason, such as database
+ * contention, and nothing was changed; the same request may succeed if sent again
+ */
+public class TemporaryFailureException extends RuntimeException {
+
+    public TemporaryFailureException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,19 @@
+package com.codestars.ticketing.service;
+
+/**
+ * Ticket Code Generator - Produces the codes printed on tickets and checked at the gate
+ * Provide another bean of this type to replace the default format
+ */
+public interface TicketCodeGenerator {
+
+    /**
+     * A new code, unique across every node sharing the database
+     */
+    String nextCode();
+
+    /**
+     * Canonical form of a code as typed or scanned, or null if it is malformed or fails
+     * its check digit. Used to reject typos before any lookup.
+     */
+    String normalize(String input);
+}
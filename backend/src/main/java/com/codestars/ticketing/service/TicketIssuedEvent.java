@@ -0,0 +1,36 @@
+package com.codestars.ticketing.service;
+
+/**
+ * Published inside the transaction that saves a new ticket
+ * Listen with @TransactionalEventListener to see only committed tickets
+ */
+public class TicketIssuedEvent {
+
+    private final Long ticketId;
+    private final Long eventId;
+    private final String ticketCode;
+    private final int quantity;
+
+    public TicketIssuedEvent(Long ticketId, Long eventId, String ticketCode, int quantity) {
+        this.ticketId = ticketId;
+        this.eventId = eventId;
+        this.ticketCode = ticketCode;
+        this.quantity = quantity;
+    }
+
+    public Long getTicketId() {
+        return ticketId;
+    }
+
+    public Long getEventId() {
+        return eventId;
+    }
+
+    public String getTicketCode() {
+        return ticketCode;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+}
@@ -7,8 +7,16 @@ import com.codestars.ticketing.repository.EventRepository;
 import com.codestars.ticketing.repository.TicketRepository;
 import com.codestars.ticketing.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Ticket Service - Business Logic Layer
@@ -21,35 +29,74 @@ public class TicketService {
     private final TicketRepository ticketRepository;
     private final EventRepository eventRepository;
     private final UserRepository userRepository;
-    private final EmailService emailService;
+    private final EmailOutboxService emailOutbox;
+    private final InventoryService inventoryService;
+    private final ContentionRetryPolicy retryPolicy;
+    private final TransactionTemplate transactionTemplate;
+    private final PurchasePipeline purchasePipeline;
+    private final TicketCodeGenerator codeGenerator;
+    private final CheckInService checkInService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long pipelineTimeoutMs;
 
     @Autowired
     public TicketService(TicketRepository ticketRepository, 
                         EventRepository eventRepository,
                         UserRepository userRepository,
-                        EmailService emailService) {
+                        EmailOutboxService emailOutbox,
+                        InventoryService inventoryService,
+                        ContentionRetryPolicy retryPolicy,
+                        PlatformTransactionManager transactionManager,
+                        PurchasePipeline purchasePipeline,
+                        TicketCodeGenerator codeGenerator,
+                        CheckInService checkInService,
+                        ApplicationEventPublisher eventPublisher,
+                        @Value("${ticketing.purchase.pipeline.timeout-ms:30000}") long pipelineTimeoutMs) {
         this.ticketRepository = ticketRepository;
         this.eventRepository = eventRepository;
         this.userRepository = userRepository;
-        this.emailService = emailService;
+        this.emailOutbox = emailOutbox;
+        this.inventoryService = inventoryService;
+        this.retryPolicy = retryPolicy;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.purchasePipeline = purchasePipeline;
+        this.codeGenerator = codeGenerator;
+        this.checkInService = checkInService;
+        this.eventPublisher = eventPublisher;
+        this.pipelineTimeoutMs = pipelineTimeoutMs;
     }
 
     /**
      * Purchase a ticket for an event
      * Demonstrates transactional business logic with proper error handling
+     * Each attempt runs in its own transaction so concurrency conflicts can be retried
+     * In pipeline mode the purchase is handed to the event's writer and committed in a batch
      */
-    @Transactional
     public Ticket purchaseTicket(Long eventId, String userName, String userEmail, 
                                 String phoneNumber, Integer quantity) {
-        
+        if (purchasePipeline.isEnabled()) {
+            return awaitPipeline(purchasePipeline.submit(eventId, userName, userEmail, phoneNumber, quantity));
+        }
+        return retryPolicy.execute(() -> transactionTemplate.execute(status ->
+                doPurchaseTicket(eventId, userName, userEmail, phoneNumber, quantity)));
+    }
+
+    private Ticket doPurchaseTicket(Long eventId, String userName, String userEmail,
+                                    String phoneNumber, Integer quantity) {
         Event event = eventRepository.findById(eventId)
                 .orElseThrow(() -> new RuntimeException("Event not found with id: " + eventId));
 
-        if (!event.hasAvailableTickets(quantity)) {
+        // Atomic reservation - in memory by default, or a guarded UPDATE with the database strategy
+        if (!inventoryService.tryReserve(event, quantity)) {
             throw new RuntimeException("Not enough tickets available. Only " + 
-                    event.getAvailableTickets() + " tickets remaining.");
+                    inventoryService.getAvailableTickets(event) + " tickets remaining.");
         }
 
+        return createTicket(event, userName, userEmail, phoneNumber, quantity);
+    }
+
+    private Ticket createTicket(Event event, String userName, String userEmail,
+                                String phoneNumber, Integer quantity) {
         User user = userRepository.findByEmail(userEmail)
                 .orElseGet(() -> {
                     User newUser = new User(userName, userEmail, phoneNumber);
@@ -57,46 +104,83 @@ public class TicketService {
                 });
 
         Double totalPrice = event.getPriceKES() * quantity;
-        Ticket ticket = new Ticket(user, event, quantity, totalPrice);
-
-        event.reduceAvailableTickets(quantity);
-        eventRepository.save(event);
+        Ticket ticket = new Ticket(codeGenerator.nextCode(), user, event, quantity, totalPrice);
         
         Ticket savedTicket = ticketRepository.save(ticket);
-        
+
+        // Sent by the outbox workers once this transaction commits
+        emailOutbox.enqueueTicketConfirmation(savedTicket);
+        eventPublisher.publishEvent(new TicketIssuedEvent(savedTicket.getId(), event.getId(),
+                savedTicket.getTicketCode(), savedTicket.getQuantity()));
+
+        return savedTicket;
+    }
+
+    /**
+     * Issue a ticket for inventory that was already reserved, e.g. a confirmed seat hold
+     */
+    public Ticket issueReservedTicket(Long eventId, String userName, String userEmail,
+                                      String phoneNumber, Integer quantity) {
+        return retryPolicy.execute(() -> transactionTemplate.execute(status -> {
+            Event event = eventRepository.findById(eventId)
+                    .orElseThrow(() -> new RuntimeException("Event not found with id: " + eventId));
+            return createTicket(event, userName, userEmail, phoneNumber, quantity);
+        }));
+    }
+
+    private Ticket awaitPipeline(CompletableFuture<Ticket> pending) {
         try {
-            emailService.sendTicketConfirmation(savedTicket, user);
-        } catch (Exception e) {
-            System.err.println("Failed to send confirmation email: " + e.getMessage());
+            return pending.get(pipelineTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (TimeoutException e) {
+            // The writer still owns the purchase and may complete it after we answer
+            throw new PurchasePendingException(
+                    "Your purchase is still being processed. Please check your email for confirmation.", pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PurchasePendingException("Purchase was interrupted", pending);
         }
-        
-        return savedTicket;
     }
 
     /**
      * Get ticket by ticket code
+     * Codes that fail the check digit are rejected before touching the database
      */
     public Ticket getTicketByCode(String ticketCode) {
-        return ticketRepository.findByTicketCode(ticketCode)
+        String canonicalCode = codeGenerator.normalize(ticketCode);
+        if (canonicalCode == null) {
+            throw new RuntimeException("Invalid ticket code: " + ticketCode + ". Please check it and try again.");
+        }
+        return ticketRepository.findByTicketCode(canonicalCode)
                 .orElseThrow(() -> new RuntimeException("Ticket not found with code: " + ticketCode));
     }
 
     /**
      * Cancel a ticket
      */
-    @Transactional
     public Ticket cancelTicket(String ticketCode) {
+        return retryPolicy.execute(() -> transactionTemplate.execute(status -> doCancelTicket(ticketCode)));
+    }
+
+    private Ticket doCancelTicket(String ticketCode) {
         Ticket ticket = getTicketByCode(ticketCode);
         
-        if (ticket.getStatus() != Ticket.TicketStatus.ACTIVE) {
+        // Decided at the gate index, where scans are decided: once this succeeds no scan can
+        // admit the ticket, and if a scan already has, the cancellation stops here
+        if (!checkInService.tryCancel(ticket)) {
             throw new RuntimeException("Only active tickets can be cancelled");
         }
 
-        ticket.setStatus(Ticket.TicketStatus.CANCELLED);
+        // Release before changing status so a first-time counter load still counts this ticket
+        inventoryService.release(ticket.getEvent(), ticket.getQuantity());
 
-        Event event = ticket.getEvent();
-        event.setAvailableTickets(event.getAvailableTickets() + ticket.getQuantity());
-        eventRepository.save(event);
+        ticket.setStatus(Ticket.TicketStatus.CANCELLED);
+        eventPublisher.publishEvent(new TicketCancelledEvent(ticket.getId(), ticket.getEvent().getId(),
+                ticket.getTicketCode(), ticket.getQuantity()));
 
         return ticketRepository.save(ticket);
     }
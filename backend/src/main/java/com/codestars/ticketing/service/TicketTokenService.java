@@ -0,0 +1,171 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.model.Ticket;
+import com.codestars.ticketing.repository.TicketRepository;
+import com.codestars.ticketing.security.HmacSigner;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ticket Token Service - Signed tokens that prove a ticket is genuine without a lookup
+ *
+ * A token signs a 19-byte payload (type, ticket id, event id, quantity) with the shared
+ * HMAC key, giving about 70 URL-safe characters that fit in a small QR code. Verifying
+ * one is an HMAC plus a lookup in the in-memory set of cancelled ticket ids, then the
+ * ticket's gate status if this node's CheckInService already indexes the event, so a token
+ * for a ticket already scanned in is reported as USED. Verifying never loads an index or
+ * reads the tickets table; where no index is loaded the ticket is reported ACTIVE with
+ * gateChecked false.
+ *
+ * The revoked set is loaded at startup and updated at once when a cancellation commits on
+ * this node. Cancellations made on other nodes are picked up from the tickets table every
+ * ticketing.ticket-token.revocation-refresh-ms, so a token can verify on another node for
+ * up to that long after its ticket was cancelled. Gate status is per node, like
+ * CheckInService: verify tokens on the node that runs the event's gates.
+ */
+@Service
+public class TicketTokenService {
+
+    private static final byte TOKEN_TYPE = 'T';
+    private static final int PAYLOAD_SIZE = 1 + 8 + 8 + 2;
+    // updatedAt is stamped before commit, so each refresh looks this far behind the last one
+    private static final long REFRESH_OVERLAP_SECONDS = 30;
+
+    private final HmacSigner signer;
+    private final TicketRepository ticketRepository;
+    private final CheckInService checkInService;
+    private final Set<Long> revoked = ConcurrentHashMap.newKeySet();
+    private volatile LocalDateTime refreshedAt;
+
+    @Autowired
+    public TicketTokenService(HmacSigner signer,
+                              TicketRepository ticketRepository,
+                              CheckInService checkInService) {
+        this.signer = signer;
+        this.ticketRepository = ticketRepository;
+        this.checkInService = checkInService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadRevokedTickets() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        revoked.addAll(ticketRepository.findIdsByStatus(Ticket.TicketStatus.CANCELLED));
+        refreshedAt = startedAt;
+    }
+
+    /**
+     * Pick up cancellations committed on other nodes
+     */
+    @Scheduled(fixedDelayString = "${ticketing.ticket-token.revocation-refresh-ms:5000}")
+    public void refreshRevokedTickets() {
+        LocalDateTime since = refreshedAt;
+        if (since == null) {
+            return; // not loaded yet
+        }
+        LocalDateTime startedAt = LocalDateTime.now();
+        revoked.addAll(ticketRepository.findIdsByStatusChangedSince(Ticket.TicketStatus.CANCELLED,
+                since.minusSeconds(REFRESH_OVERLAP_SECONDS)));
+        refreshedAt = startedAt;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTicketCancelled(TicketCancelledEvent event) {
+        revoked.add(event.getTicketId());
+    }
+
+    public String issueToken(Ticket ticket) {
+        ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_SIZE);
+        payload.put(TOKEN_TYPE)
+                .putLong(ticket.getId())
+                .putLong(ticket.getEvent().getId())
+                .putShort((short) ticket.getQuantity().intValue());
+        return signer.sign(payload.array());
+    }
+
+    /**
+     * Check a token's signature, revocation and gate status
+     * @return the verified contents, or null if the token is forged or malformed
+     */
+    public VerifiedTicket verify(String token) {
+        byte[] payload = signer.verify(token);
+        if (payload == null || payload.length != PAYLOAD_SIZE || payload[0] != TOKEN_TYPE) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(payload, 1, PAYLOAD_SIZE - 1);
+        long ticketId = buffer.getLong();
+        long eventId = buffer.getLong();
+        int quantity = buffer.getShort();
+        if (revoked.contains(ticketId)) {
+            return new VerifiedTicket(ticketId, eventId, quantity, Ticket.TicketStatus.CANCELLED, false);
+        }
+        Ticket.TicketStatus gateStatus = checkInService.indexedStatus(eventId, ticketId);
+        return gateStatus != null
+                ? new VerifiedTicket(ticketId, eventId, quantity, gateStatus, true)
+                : new VerifiedTicket(ticketId, eventId, quantity, Ticket.TicketStatus.ACTIVE, false);
+    }
+
+    /**
+     * Contents of a token whose signature checked out
+     */
+    public static final class VerifiedTicket {
+
+        private final long ticketId;
+        private final long eventId;
+        private final int quantity;
+        private final Ticket.TicketStatus status;
+        private final boolean gateChecked;
+
+        private VerifiedTicket(long ticketId, long eventId, int quantity, Ticket.TicketStatus status,
+                               boolean gateChecked) {
+            this.ticketId = ticketId;
+            this.eventId = eventId;
+            this.quantity = quantity;
+            this.status = status;
+            this.gateChecked = gateChecked;
+        }
+
+        public long getTicketId() {
+            return ticketId;
+        }
+
+        public long getEventId() {
+            return eventId;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public boolean isRevoked() {
+            return status == Ticket.TicketStatus.CANCELLED;
+        }
+
+        public boolean isUsed() {
+            return status == Ticket.TicketStatus.USED;
+        }
+
+        /**
+         * ACTIVE, USED or CANCELLED
+         */
+        public Ticket.TicketStatus getStatus() {
+            return status;
+        }
+
+        /**
+         * Whether the status came from this node's gate index; if not, an ACTIVE ticket may
+         * already have been scanned in at gates served by another node
+         */
+        public boolean isGateChecked() {
+            return gateChecked;
+        }
+    }
+}
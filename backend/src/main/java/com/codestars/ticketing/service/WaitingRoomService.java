@@ -0,0 +1,290 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.model.Event;
+import com.codestars.ticketing.repository.EventRepository;
+import com.codestars.ticketing.security.HmacSigner;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Waiting Room Service - Admission control for high-demand on-sales
+ *
+ * Buyers of a high-demand event join a queue and receive a signed queue token holding
+ * their position. A scheduled task advances each event's admission horizon at a fixed
+ * rate; once a buyer's position is inside the horizon, their queue token can be exchanged
+ * for a signed admission token. Ticket endpoints check that token with an HMAC and a
+ * clock read, so unadmitted traffic is turned away before any database work.
+ *
+ * Each position gets one admission: the first status poll after it is reached issues the
+ * token, later polls return the same token with the same expiry, and once it has expired the
+ * position is spent. The first purchase or hold made with an admission token binds it to that
+ * buyer's email; other buyers cannot use it. Joining is rate limited per client address
+ * (ticketing.rate-limit.waiting-room.*), so positions cannot be collected in bulk.
+ *
+ * Queue state, issued admissions and buyer bindings are in memory and per node; tokens stay
+ * valid across nodes that share the signing secret, and a node that sees an admission token
+ * for the first time binds it there.
+ */
+@Service
+public class WaitingRoomService {
+
+    private static final String QUEUE_PREFIX = "Q:";
+    private static final String ADMISSION_PREFIX = "A:";
+    private static final long TICK_MILLIS = 200;
+    // Expired admissions are dropped every this many ticks
+    private static final int PRUNE_TICKS = 25;
+
+    private final EventRepository eventRepository;
+    private final HmacSigner signer;
+    private final int admitRatePerSecond;
+    private final long admissionTtlSeconds;
+
+    private final Set<Long> highDemandEvents = ConcurrentHashMap.newKeySet();
+    private final Map<Long, EventQueue> queues = new ConcurrentHashMap<>();
+    private int ticksSincePrune;
+
+    @Autowired
+    public WaitingRoomService(EventRepository eventRepository,
+                              HmacSigner signer,
+                              @Value("${ticketing.waiting-room.admit-rate-per-second:50}") int admitRatePerSecond,
+                              @Value("${ticketing.waiting-room.admission-ttl-seconds:900}") long admissionTtlSeconds) {
+        this.eventRepository = eventRepository;
+        this.signer = signer;
+        this.admitRatePerSecond = Math.max(1, admitRatePerSecond);
+        this.admissionTtlSeconds = admissionTtlSeconds;
+    }
+
+    /**
+     * Load the high-demand flags once the data loader has run
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void refreshHighDemandEvents() {
+        Set<Long> flagged = ConcurrentHashMap.newKeySet();
+        eventRepository.findByHighDemandTrue().forEach(event -> flagged.add(event.getId()));
+        highDemandEvents.retainAll(flagged);
+        highDemandEvents.addAll(flagged);
+    }
+
+    /**
+     * Follow an event being flagged or unflagged (or deleted) without a restart
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        boolean flagged = eventRepository.findById(event.getEventId())
+                .map(Event::getHighDemand)
+                .map(Boolean.TRUE::equals)
+                .orElse(false);
+        if (flagged) {
+            highDemandEvents.add(event.getEventId());
+        } else {
+            highDemandEvents.remove(event.getEventId());
+        }
+    }
+
+    public boolean isHighDemand(Long eventId) {
+        return eventId != null && highDemandEvents.contains(eventId);
+    }
+
+    /**
+     * Take the next place in an event's queue
+     */
+    public Map<String, Object> join(Long eventId) {
+        requireHighDemand(eventId);
+        EventQueue queue = queues.computeIfAbsent(eventId, id -> new EventQueue());
+        long position = queue.issued.incrementAndGet();
+
+        Map<String, Object> response = describePosition(eventId, queue, position);
+        response.put("queueToken", signer.sign(QUEUE_PREFIX + eventId + ":" + position));
+        return response;
+    }
+
+    /**
+     * Check a queue token; once the position has been reached the response carries an
+     * admission token for the ticket endpoints, the same one on every poll until it expires
+     */
+    public Map<String, Object> status(Long eventId, String queueToken) {
+        requireHighDemand(eventId);
+        long position = parsePosition(eventId, signer.verifyToString(queueToken), QUEUE_PREFIX);
+        if (position < 0) {
+            throw new RuntimeException("Invalid queue token");
+        }
+
+        EventQueue queue = queues.computeIfAbsent(eventId, id -> new EventQueue());
+        Map<String, Object> response = describePosition(eventId, queue, position);
+        if (position <= queue.admittedThrough.get()) {
+            long now = Instant.now().getEpochSecond();
+            Admission admission = queue.admissionFor(position, now + admissionTtlSeconds);
+            if (admission != null && admission.expiresAt > now) {
+                response.put("admissionToken",
+                        signer.sign(ADMISSION_PREFIX + eventId + ":" + position + ":" + admission.expiresAt));
+                response.put("admissionExpiresAt", Instant.ofEpochSecond(admission.expiresAt).toString());
+            } else {
+                response.put("admissionExpired", true);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Cheap gate for ticket endpoints: events that are not high-demand always pass,
+     * otherwise a valid, unexpired admission token for this event is required, unused or
+     * already used by the same buyer
+     */
+    public boolean isAdmitted(Long eventId, String admissionToken, String buyerEmail) {
+        if (!isHighDemand(eventId)) {
+            return true;
+        }
+
+        String payload = signer.verifyToString(admissionToken);
+        String expectedPrefix = ADMISSION_PREFIX + eventId + ":";
+        if (payload == null || buyerEmail == null || !payload.startsWith(expectedPrefix)) {
+            return false;
+        }
+        int expirySeparator = payload.lastIndexOf(':');
+        long position;
+        long expiresAt;
+        try {
+            position = Long.parseLong(payload.substring(expectedPrefix.length(), expirySeparator));
+            expiresAt = Long.parseLong(payload.substring(expirySeparator + 1));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return false;
+        }
+        if (expiresAt <= Instant.now().getEpochSecond()) {
+            return false;
+        }
+
+        EventQueue queue = queues.computeIfAbsent(eventId, id -> new EventQueue());
+        // Issued here, or on another node (then bound here on first use)
+        Admission admission = queue.admissions.computeIfAbsent(position, p -> new Admission(expiresAt));
+        String buyer = buyerEmail.trim().toLowerCase(Locale.ROOT);
+        return admission.buyer.compareAndSet(null, buyer) || buyer.equals(admission.buyer.get());
+    }
+
+    /**
+     * Queue length and admit rate for one event
+     */
+    public Map<String, Object> getStats(Long eventId) {
+        requireHighDemand(eventId);
+        EventQueue queue = queues.computeIfAbsent(eventId, id -> new EventQueue());
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("eventId", eventId);
+        stats.put("queueLength", queue.issued.get() - queue.admittedThrough.get());
+        stats.put("admitRatePerSecond", admitRatePerSecond);
+        stats.put("admittedThrough", queue.admittedThrough.get());
+        stats.put("joined", queue.issued.get());
+        return stats;
+    }
+
+    /**
+     * Move every queue's admission horizon forward. Admissions do not bank up while a
+     * queue is empty, so a sudden rush is still admitted at the configured rate.
+     */
+    @Scheduled(fixedRate = TICK_MILLIS)
+    public void admitNextBatch() {
+        boolean prune = ++ticksSincePrune >= PRUNE_TICKS;
+        if (prune) {
+            ticksSincePrune = 0;
+        }
+        long now = Instant.now().getEpochSecond();
+        queues.values().forEach(queue -> {
+            if (prune) {
+                queue.admissions.values().removeIf(admission -> admission.expiresAt <= now);
+            }
+            queue.credit += admitRatePerSecond * TICK_MILLIS / 1000.0;
+            long admit = (long) queue.credit;
+            queue.credit -= admit;
+
+            long issued = queue.issued.get();
+            queue.admittedThrough.accumulateAndGet(admit, (current, step) -> Math.min(issued, current + step));
+        });
+    }
+
+    private Map<String, Object> describePosition(Long eventId, EventQueue queue, long position) {
+        long ahead = Math.max(0, position - queue.admittedThrough.get());
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("eventId", eventId);
+        response.put("position", position);
+        response.put("ahead", ahead);
+        response.put("estimatedWaitSeconds", ahead / admitRatePerSecond);
+        response.put("admitted", ahead == 0);
+        return response;
+    }
+
+    private long parsePosition(Long eventId, String payload, String prefix) {
+        String expectedPrefix = prefix + eventId + ":";
+        if (payload == null || !payload.startsWith(expectedPrefix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(payload.substring(expectedPrefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void requireHighDemand(Long eventId) {
+        if (!isHighDemand(eventId)) {
+            throw new RuntimeException("Event " + eventId + " does not use the waiting room");
+        }
+    }
+
+    /**
+     * Positions handed out and admitted for one event
+     */
+    private static final class EventQueue {
+
+        private final AtomicLong issued = new AtomicLong();
+        private final AtomicLong admittedThrough = new AtomicLong();
+        // Fractional admissions carried between ticks; only touched by the scheduler
+        private double credit;
+        // Positions whose admission has been issued, one bit each; guarded by itself
+        private final BitSet admissionIssued = new BitSet();
+        // Admissions that have not expired yet, by position
+        private final Map<Long, Admission> admissions = new ConcurrentHashMap<>();
+
+        /**
+         * The position's admission, issued now with the given expiry if it never was
+         * @return null if it was issued before and has since expired
+         */
+        private Admission admissionFor(long position, long expiresAt) {
+            synchronized (admissionIssued) {
+                int bit = (int) Math.min(Integer.MAX_VALUE, position);
+                if (admissionIssued.get(bit)) {
+                    return admissions.get(position);
+                }
+                admissionIssued.set(bit);
+                return admissions.computeIfAbsent(position, p -> new Admission(expiresAt));
+            }
+        }
+    }
+
+    /**
+     * One position's admission: when it expires and the buyer it was first used by
+     */
+    private static final class Admission {
+
+        private final long expiresAt;
+        private final AtomicReference<String> buyer = new AtomicReference<>();
+
+        private Admission(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.model.Event;
+import com.codestars.ticketing.repository.EventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A client that stops reading must not hold up the other subscribers of the same event
+ */
+@SpringBootTest
+@ActiveProfiles({"dev", "test"})
+class AvailabilityStreamServiceTest {
+
+    private static final int MAX_QUEUED = 5;
+    private static final int PUSHES = 20;
+
+    @Autowired
+    private EventCatalogCache catalogCache;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void slowSubscriberIsDroppedWithoutStallingOthers() throws Exception {
+        Event event = eventRepository.save(new Event("Stream Night", "Test event", "Test Venue, Nairobi",
+                LocalDateTime.now().plusDays(30), 1000.0, 100, "Test", null));
+        CountDownLatch unblock = new CountDownLatch(1);
+        TestStreamService streams = new TestStreamService(unblock);
+        try {
+            streams.nextIsSlow = true;
+            ResponseBodyEmitter slow = streams.subscribe(List.of(event.getId()));
+            RecordingEmitter fast = (RecordingEmitter) streams.subscribe(List.of(event.getId()));
+
+            // One push per interval, as the scheduler would; the fast client keeps up with each
+            for (int i = 0; i < PUSHES; i++) {
+                streams.onAvailabilityChanged(new AvailabilityChangedEvent(event.getId(), -1));
+                streams.pushChanges();
+                assertThat(fast.awaitMessages(i + 2)).isTrue();
+            }
+
+            // Initial count plus every push, while the slow client is still stuck in its first write
+            assertThat(fast.messages).hasSize(1 + PUSHES);
+            assertThat(fast.messages.get(0)).startsWith("retry:").contains("event:availability\ndata:");
+            assertThat(streams.getStats()).containsEntry("slowSubscribersDropped", 1L)
+                    .containsEntry("subscribers", 1);
+            assertThat(((RecordingEmitter) slow).messages).isEmpty();
+        } finally {
+            unblock.countDown();
+            streams.shutdown();
+        }
+    }
+
+    private final class TestStreamService extends AvailabilityStreamService {
+
+        private final CountDownLatch unblock;
+        private volatile boolean nextIsSlow;
+
+        private TestStreamService(CountDownLatch unblock) {
+            super(catalogCache, objectMapper, 60_000, 3000, 100, MAX_QUEUED, 2);
+            this.unblock = unblock;
+        }
+
+        @Override
+        ResponseBodyEmitter createEmitter(long timeoutMs) {
+            boolean slow = nextIsSlow;
+            nextIsSlow = false;
+            return new RecordingEmitter(slow ? unblock : null);
+        }
+    }
+
+    /**
+     * Keeps what it is sent; a slow one blocks in its first write until released
+     */
+    private static final class RecordingEmitter extends ResponseBodyEmitter {
+
+        private final CountDownLatch blockUntil;
+        private final List<String> messages = new CopyOnWriteArrayList<>();
+
+        private RecordingEmitter(CountDownLatch blockUntil) {
+            this.blockUntil = blockUntil;
+        }
+
+        private boolean awaitMessages(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (messages.size() < count) {
+                if (System.nanoTime() > deadline) {
+                    return false;
+                }
+                Thread.sleep(1);
+            }
+            return true;
+        }
+
+        @Override
+        public void send(Object object, MediaType mediaType) {
+            if (blockUntil != null) {
+                try {
+                    blockUntil.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            messages.add((String) object);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.codestars.ticketing.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * Benchmarks - Minimal timing harness for the *Benchmark classes
+ *
+ * The benchmarks are not part of the normal test run (Surefire only picks up *Test
+ * classes); run one explicitly, e.g. mvn test -Dtest=TicketCodeBenchmark. Each operation
+ * is warmed up before it is timed, and results are printed as nanoseconds per operation.
+ */
+final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    /**
+     * Time an operation on several threads at once
+     * @param operation called with the index of the call on its thread
+     * @return average nanoseconds per operation across all threads
+     */
+    static double nanosPerOp(String name, int threads, int operationsPerThread, IntConsumer operation)
+            throws Exception {
+        run(threads, operationsPerThread / 2, operation);
+        long elapsed = run(threads, operationsPerThread, operation);
+        double nanosPerOp = (double) elapsed * threads / ((long) threads * operationsPerThread);
+        System.out.println(String.format(Locale.ROOT, "%-40s %2d threads %12.1f ns/op", name, threads, nanosPerOp));
+        return nanosPerOp;
+    }
+
+    private static long run(int threads, int operationsPerThread, IntConsumer operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                workers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < operationsPerThread; i++) {
+                        operation.accept(i);
+                    }
+                    return null;
+                }));
+            }
+            long started = System.nanoTime();
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+            return System.nanoTime() - started;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
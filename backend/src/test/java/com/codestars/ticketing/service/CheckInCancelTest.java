@@ -0,0 +1,121 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.model.Event;
+import com.codestars.ticketing.model.Ticket;
+import com.codestars.ticketing.repository.EventRepository;
+import com.codestars.ticketing.repository.TicketRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A cancellation and a gate scan of the same ticket: exactly one of them wins
+ */
+@SpringBootTest
+@ActiveProfiles({"dev", "test"})
+class CheckInCancelTest {
+
+    private static final int RACES = 100;
+
+    @Autowired
+    private TicketService ticketService;
+
+    @Autowired
+    private CheckInService checkInService;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private TicketRepository ticketRepository;
+
+    @Test
+    void scannedTicketCannotBeCancelled() {
+        Event event = newEvent(1);
+        Ticket ticket = buy(event, 0);
+
+        assertThat(checkInService.checkIn(event.getId(), ticket.getTicketCode()).getOutcome())
+                .isEqualTo(CheckInService.Outcome.ADMITTED);
+        assertThatThrownBy(() -> ticketService.cancelTicket(ticket.getTicketCode()))
+                .hasMessageContaining("Only active tickets");
+
+        checkInService.flushToDatabase();
+        assertThat(ticketRepository.findById(ticket.getId()).orElseThrow().getStatus())
+                .isEqualTo(Ticket.TicketStatus.USED);
+    }
+
+    @Test
+    void cancelledTicketIsRefusedAtTheGate() {
+        Event event = newEvent(1);
+        Ticket ticket = buy(event, 0);
+
+        ticketService.cancelTicket(ticket.getTicketCode());
+
+        assertThat(checkInService.checkIn(event.getId(), ticket.getTicketCode()).getOutcome())
+                .isEqualTo(CheckInService.Outcome.CANCELLED);
+    }
+
+    @Test
+    void racingScanAndCancelHaveOneWinner() throws Exception {
+        Event event = newEvent(RACES);
+        // Load the gate index so every scan below is decided in memory
+        checkInService.checkIn(event.getId(), "TKT-00000000");
+
+        for (int i = 0; i < RACES; i++) {
+            Ticket ticket = buy(event, i);
+            CountDownLatch start = new CountDownLatch(1);
+            CompletableFuture<Boolean> cancelled = CompletableFuture.supplyAsync(() -> {
+                await(start);
+                try {
+                    ticketService.cancelTicket(ticket.getTicketCode());
+                    return true;
+                } catch (RuntimeException e) {
+                    return false;
+                }
+            });
+            CompletableFuture<CheckInService.Outcome> scanned = CompletableFuture.supplyAsync(() -> {
+                await(start);
+                return checkInService.checkIn(event.getId(), ticket.getTicketCode()).getOutcome();
+            });
+            start.countDown();
+
+            boolean cancelWon = cancelled.get(10, TimeUnit.SECONDS);
+            CheckInService.Outcome scan = scanned.get(10, TimeUnit.SECONDS);
+            assertThat(scan).isEqualTo(cancelWon ? CheckInService.Outcome.CANCELLED : CheckInService.Outcome.ADMITTED);
+        }
+
+        checkInService.flushToDatabase();
+        for (Ticket ticket : ticketRepository.findAll()) {
+            if (ticket.getEvent().getId().equals(event.getId())) {
+                assertThat(ticket.getStatus()).isIn(Ticket.TicketStatus.USED, Ticket.TicketStatus.CANCELLED);
+            }
+        }
+    }
+
+    private Event newEvent(int tickets) {
+        return eventRepository.save(new Event("Gate Race Night", "Test event", "Test Venue, Nairobi",
+                LocalDateTime.now().plusDays(30), 1000.0, tickets, "Test", null));
+    }
+
+    private Ticket buy(Event event, int buyer) {
+        return ticketService.purchaseTicket(event.getId(), "Buyer", "gate" + buyer + "@checkin.test",
+                "+254700000000", 1);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.model.Event;
+import com.codestars.ticketing.model.Ticket;
+import com.codestars.ticketing.repository.EventRepository;
+import com.codestars.ticketing.repository.TicketRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fires many parallel purchases at a small stock and checks that exactly the stock was sold:
+ * no oversell, no lost sale, and the tickets table, the live counter and the events table
+ * all agree. Run once per inventory strategy by the subclasses.
+ */
+@ActiveProfiles({"dev", "test"})
+abstract class ConcurrentPurchaseTest {
+
+    private static final int STOCK = 40;
+    private static final int BUYERS = 200;
+    private static final int THREADS = 32;
+
+    @Autowired
+    private TicketService ticketService;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private TicketRepository ticketRepository;
+
+    @Test
+    void parallelPurchasesSellExactlyTheStock() throws Exception {
+        Event event = eventRepository.save(new Event("Concurrency Test Night", "Test event", "Test Venue, Nairobi",
+                LocalDateTime.now().plusDays(30), 1000.0, STOCK, "Test", null));
+
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService buyers = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < BUYERS; i++) {
+            String email = "buyer" + i + "@concurrency.test";
+            results.add(buyers.submit(() -> {
+                start.await();
+                try {
+                    ticketService.purchaseTicket(event.getId(), "Buyer", email, "+254700000000", 1);
+                    sold.incrementAndGet();
+                } catch (RuntimeException e) {
+                    refused.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(60, TimeUnit.SECONDS);
+        }
+        buyers.shutdown();
+
+        assertThat(sold.get()).isEqualTo(STOCK);
+        assertThat(refused.get()).isEqualTo(BUYERS - STOCK);
+        assertThat(ticketRepository.sumQuantityByEventIdAndStatusNot(event.getId(), Ticket.TicketStatus.CANCELLED))
+                .isEqualTo(STOCK);
+        assertThat(inventoryService.getAvailableTickets(event)).isZero();
+
+        inventoryService.flushToDatabase();
+        assertThat(eventRepository.findAvailableTicketsById(event.getId())).isZero();
+    }
+
+    @Test
+    void capacityCanOnlyShrinkToWhatIsUnsold() {
+        Event event = eventRepository.save(new Event("Capacity Test Night", "Test event", "Test Venue, Nairobi",
+                LocalDateTime.now().plusDays(30), 1000.0, 10, "Test", null));
+        for (int i = 0; i < 6; i++) {
+            ticketService.purchaseTicket(event.getId(), "Buyer", "capacity" + i + "@concurrency.test",
+                    "+254700000000", 1);
+        }
+
+        assertThat(inventoryService.changeCapacity(event, 5)).isFalse();
+        assertThat(inventoryService.changeCapacity(event, 8)).isTrue();
+
+        Event resized = eventRepository.findById(event.getId()).orElseThrow();
+        assertThat(resized.getTotalTickets()).isEqualTo(8);
+        assertThat(inventoryService.getAvailableTickets(resized)).isEqualTo(2);
+
+        // A stale entity that still says 10 is refused rather than applied twice
+        assertThat(inventoryService.changeCapacity(event, 12)).isFalse();
+
+        inventoryService.flushToDatabase();
+        assertThat(eventRepository.findAvailableTicketsById(event.getId())).isEqualTo(2);
+    }
+}
@@ -0,0 +1,60 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.model.Event;
+import com.codestars.ticketing.repository.EventRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Catalog ETags follow availability changed behind the cache's back, as another node using
+ * the database inventory strategy does without touching the event's version
+ */
+@SpringBootTest(properties = "ticketing.inventory.strategy=database")
+@ActiveProfiles({"dev", "test"})
+class EventCatalogCacheTest {
+
+    @Autowired
+    private EventCatalogCache catalogCache;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void reloadThatFindsOtherSalesMovesTheRevisionsOn() {
+        Event event = eventRepository.save(new Event("Revision Night", "Test event", "Test Venue, Nairobi",
+                LocalDateTime.now().plusDays(30), 1000.0, 10, "Test", null));
+        Long eventId = event.getId();
+        assertThat(catalogCache.getEvent(eventId).get().getAvailableTickets()).isEqualTo(10);
+        String eventETag = catalogCache.getEventRevision(eventId).eTag("event-" + eventId);
+        String catalogETag = catalogCache.getCatalogRevision().eTag("catalog");
+
+        // A sale on another node: the guarded UPDATE, and no event on this one
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                eventRepository.reserveTickets(eventId, 3));
+        Long version = eventRepository.findById(eventId).get().getVersion();
+        assertThat(version).isEqualTo(catalogCache.getEvent(eventId).get().getVersion());
+
+        // As when the cached copy expires
+        catalogCache.invalidate(eventId);
+        assertThat(catalogCache.getEvent(eventId).get().getAvailableTickets()).isEqualTo(7);
+        assertThat(catalogCache.getEventRevision(eventId).eTag("event-" + eventId)).isNotEqualTo(eventETag);
+        assertThat(catalogCache.getCatalogRevision().eTag("catalog")).isNotEqualTo(catalogETag);
+
+        // Reloading the same count is not a change
+        eventETag = catalogCache.getEventRevision(eventId).eTag("event-" + eventId);
+        catalogCache.invalidate(eventId);
+        catalogCache.getEvent(eventId);
+        assertThat(catalogCache.getEventRevision(eventId).eTag("event-" + eventId)).isEqualTo(eventETag);
+    }
+}
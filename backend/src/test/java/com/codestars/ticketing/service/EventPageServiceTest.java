@@ -0,0 +1,96 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.model.Event;
+import com.codestars.ticketing.repository.EventRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Search pages: walking the cursor in small pages returns exactly the rows of one big page,
+ * in the sort's order, for ascending and descending sorts and for tied relevance scores
+ */
+@SpringBootTest
+@ActiveProfiles({"dev", "test"})
+class EventPageServiceTest {
+
+    private static final String WORD = "keysetpage";
+
+    @Autowired
+    private EventPageService eventPageService;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Test
+    void cursorPagesMatchOneFullPageForEverySort() {
+        LocalDateTime base = LocalDateTime.now().plusDays(40).withNano(0);
+        // Ties on date, on price and on score (same field, same word count), broken by id
+        save("Keysetpage Gala", "Test event", base, 1000.0);
+        save("Keysetpage Gala", "Test event", base, 1000.0);
+        save("Keysetpage Night", "Test event", base, 1500.0);
+        save("Jazz Evening", "A keysetpage test", base.plusDays(1), 1000.0);
+        save("Jazz Evening", "A keysetpage test", base.plusDays(1), 500.0);
+        save("Rock Evening", "A keysetpage test", base.plusDays(2), 1500.0);
+        save("Rock Evening", "A keysetpage test", base.minusDays(1), 500.0);
+
+        for (EventPageService.EventSort sort : EventPageService.EventSort.values()) {
+            List<CatalogEvent> all = eventPageService
+                    .searchEvents(WORD, EventFilter.NONE, sort, null, EventPageService.MAX_LIMIT).getEvents();
+            assertThat(all).hasSize(7);
+            if (sort != EventPageService.EventSort.RELEVANCE) {
+                assertThat(all).isSortedAccordingTo(orderOf(sort));
+            }
+
+            for (int limit = 1; limit <= 3; limit++) {
+                List<Long> walked = new ArrayList<>();
+                String cursor = null;
+                do {
+                    EventPageService.EventPage page = eventPageService
+                            .searchEvents(WORD, EventFilter.NONE, sort, cursor, limit);
+                    assertThat(page.getEvents()).hasSizeLessThanOrEqualTo(limit);
+                    page.getEvents().forEach(event -> walked.add(event.getId()));
+                    cursor = page.getNextCursor();
+                } while (cursor != null);
+                assertThat(walked).as("sort %s, limit %d", sort.getValue(), limit).isEqualTo(ids(all));
+            }
+        }
+
+        // Name matches score above description matches; equal scores come in ascending id order
+        List<CatalogEvent> byRelevance = eventPageService.searchEvents(WORD, EventFilter.NONE,
+                EventPageService.EventSort.RELEVANCE, null, EventPageService.MAX_LIMIT).getEvents();
+        assertThat(byRelevance.subList(0, 3)).allMatch(event -> event.getName().startsWith("Keysetpage"));
+        assertThat(ids(byRelevance.subList(0, 3))).isSorted();
+        assertThat(ids(byRelevance.subList(3, 7))).isSorted();
+    }
+
+    private void save(String name, String description, LocalDateTime date, double price) {
+        eventRepository.save(new Event(name, description, "Test Venue, Nairobi", date, price, 100, "Test", null));
+    }
+
+    private static Comparator<CatalogEvent> orderOf(EventPageService.EventSort sort) {
+        switch (sort) {
+            case DATE_DESC:
+                return Comparator.comparing(CatalogEvent::getEventDate).thenComparing(CatalogEvent::getId).reversed();
+            case PRICE:
+                return Comparator.comparing(CatalogEvent::getPriceKES).thenComparing(CatalogEvent::getId);
+            case PRICE_DESC:
+                return Comparator.comparing(CatalogEvent::getPriceKES).thenComparing(CatalogEvent::getId).reversed();
+            default:
+                return Comparator.comparing(CatalogEvent::getEventDate).thenComparing(CatalogEvent::getId);
+        }
+    }
+
+    private static List<Long> ids(List<CatalogEvent> events) {
+        return events.stream().map(CatalogEvent::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,123 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.model.Event;
+import com.codestars.ticketing.repository.EventRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Event search: EventSearchIndex against the search /api/events/search ran before it
+ *
+ * Seeds a catalog of a few thousand events and times the same searches both ways. The
+ * baseline is the old unpaged endpoint's path: the derived name/location/description
+ * ContainingIgnoreCase query (or every event when there is no query), then the category and
+ * location filters applied to the loaded entities. It matched the whole query as one substring,
+ * so multi-word queries such as "nairobi festival" find far fewer events than the index, which
+ * matches each word; the match counts are printed next to the timings.
+ */
+@SpringBootTest
+@ActiveProfiles({"dev", "test"})
+class EventSearchBenchmark {
+
+    private static final int EVENTS = 3000;
+    private static final int OPERATIONS = 5000;
+    // query, category, location
+    private static final String[][] SEARCHES = {
+            {"jazz", null, null},
+            {"nairobi festival", null, null},
+            {"fest", "Entertainment", null},
+            {"marathon 2024", null, null},
+            {"food wine", null, "Mombasa"},
+            {"comedy", null, null},
+            {"tech summit", "Entertainment", "Nairobi"},
+            {"beach", null, null},
+            {null, null, "Kisumu"},
+            {"kisumu", null, null}};
+
+    @Autowired
+    private EventSearchIndex searchIndex;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Test
+    void searchIndexAgainstRepositorySearch() throws Exception {
+        seedCatalog();
+
+        for (String[] search : SEARCHES) {
+            System.out.printf("%-40s baseline %5d matches, index %5d%n", Arrays.toString(search),
+                    baselineSearch(search).size(), indexSearch(search).size());
+        }
+
+        // Milliseconds per search, so fewer runs
+        Benchmarks.nanosPerOp("repository search + stream filters", 1, OPERATIONS / 10,
+                i -> baselineSearch(SEARCHES[i % SEARCHES.length]));
+        Benchmarks.nanosPerOp("EventSearchIndex.search", 1, OPERATIONS,
+                i -> indexSearch(SEARCHES[i % SEARCHES.length]));
+        Benchmarks.nanosPerOp("EventSearchIndex.search", 4, OPERATIONS,
+                i -> indexSearch(SEARCHES[i % SEARCHES.length]));
+
+        // Catalog edits build a new index version next to the one being searched
+        List<Event> events = eventRepository.findAll();
+        Benchmarks.nanosPerOp("onCatalogChanged", 1, 500, i -> searchIndex.onCatalogChanged(
+                new CatalogChangedEvent(events.get(i % events.size()).getId())));
+
+        assertThat(searchIndex.search("jazz", EventFilter.NONE)).isNotEmpty();
+    }
+
+    /**
+     * What GET /api/events/search did before the index, without paging
+     */
+    private List<Event> baselineSearch(String[] search) {
+        String query = search[0];
+        String category = search[1];
+        String location = search[2];
+        List<Event> events = eventRepository.findAll();
+        if (query != null && !query.trim().isEmpty()) {
+            events = eventRepository.findByNameContainingIgnoreCaseOrLocationContainingIgnoreCaseOrDescriptionContainingIgnoreCase(
+                    query, query, query);
+        }
+        if (category != null && !category.trim().isEmpty() && !category.equalsIgnoreCase("All")) {
+            events = events.stream()
+                    .filter(e -> e.getCategory().equalsIgnoreCase(category))
+                    .collect(Collectors.toList());
+        }
+        if (location != null && !location.trim().isEmpty() && !location.equalsIgnoreCase("All")) {
+            events = events.stream()
+                    .filter(e -> e.getLocation().toLowerCase().contains(location.toLowerCase()))
+                    .collect(Collectors.toList());
+        }
+        return events;
+    }
+
+    private List<EventSearchIndex.SearchHit> indexSearch(String[] search) {
+        return searchIndex.search(search[0],
+                new EventFilter(search[1], search[2], null, null, null, null, null));
+    }
+
+    private void seedCatalog() {
+        String[] kinds = {"Jazz Festival", "Tech Summit", "Marathon", "Food & Wine Festival", "Comedy Night",
+                "Beach Festival", "Agricultural Expo", "Film Festival"};
+        String[] towns = {"Nairobi", "Mombasa", "Kisumu", "Eldoret", "Nakuru", "Thika", "Malindi", "Nyeri"};
+        List<Event> events = new ArrayList<>(EVENTS);
+        for (int i = 0; i < EVENTS; i++) {
+            String town = towns[i % towns.length];
+            String kind = kinds[(i / towns.length) % kinds.length];
+            events.add(new Event(town + " " + kind + " " + (2024 + i % 3), "The " + kind.toLowerCase(Locale.ROOT) +
+                    " of the year in " + town + ", with music, food and friends", town + ", Kenya",
+                    LocalDateTime.now().plusDays(1 + i % 365), 500.0 + i % 50 * 100, 1000, "Entertainment", null));
+        }
+        eventRepository.saveAll(events);
+    }
+}
@@ -0,0 +1,102 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.model.Event;
+import com.codestars.ticketing.model.Ticket;
+import com.codestars.ticketing.repository.EventRepository;
+import com.codestars.ticketing.repository.TicketRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Snapshot deltas must not lose a change that commits after a snapshot covering a later time
+ */
+@SpringBootTest(properties = "ticketing.snapshot.delta-overlap-ms=5000")
+@ActiveProfiles({"dev", "test"})
+class GateSnapshotServiceTest {
+
+    @Autowired
+    private GateSnapshotService snapshotService;
+
+    @Autowired
+    private TicketService ticketService;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private TicketRepository ticketRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void lateCommitReachesTheNextDelta() throws Exception {
+        Event event = eventRepository.save(new Event("Snapshot Night", "Test event", "Test Venue, Nairobi",
+                LocalDateTime.now().plusDays(30), 1000.0, 10, "Test", null));
+        Ticket late = ticketService.purchaseTicket(event.getId(), "Buyer", "late@snapshot.test", "+254700000000", 1);
+        Ticket newest = ticketService.purchaseTicket(event.getId(), "Buyer", "newest@snapshot.test", "+254700000000", 1);
+
+        GateSnapshot full = snapshotService.exportSnapshot(event.getId(), null).getSnapshot();
+        assertThat(full.size()).isEqualTo(2);
+        long newestMillis = ticketRepository.findById(newest.getId()).orElseThrow().getUpdatedAt()
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        assertThat(full.getNextSince()).isEqualTo(newestMillis - 5000);
+
+        // A cancellation stamped before the newest exported change, but committed only now
+        LocalDateTime stamped = LocalDateTime.ofInstant(Instant.ofEpochMilli(newestMillis - 1000), ZoneId.systemDefault());
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> ticketRepository.updateStatus(
+                List.of(late.getId()), Ticket.TicketStatus.ACTIVE, Ticket.TicketStatus.CANCELLED, stamped));
+
+        GateSnapshot delta = snapshotService.exportSnapshot(event.getId(), full.getNextSince()).getSnapshot();
+        assertThat(delta.isDelta()).isTrue();
+        assertThat(delta.lookup(late.getTicketCode()).getStatus()).isEqualTo(GateSnapshot.STATUS_CANCELLED);
+        assertThat(delta.getNextSince()).isEqualTo(full.getNextSince());
+    }
+
+    @Test
+    void emptyDeltaKeepsItsSince() throws Exception {
+        Event event = eventRepository.save(new Event("Quiet Night", "Test event", "Test Venue, Nairobi",
+                LocalDateTime.now().plusDays(30), 1000.0, 10, "Test", null));
+        long since = System.currentTimeMillis() + 60_000;
+
+        GateSnapshot delta = snapshotService.exportSnapshot(event.getId(), since).getSnapshot();
+        assertThat(delta.size()).isZero();
+        assertThat(delta.getNextSince()).isEqualTo(since);
+    }
+
+    @Test
+    void concurrentFullExportsOfOneEventAllSucceed() throws Exception {
+        Event event = eventRepository.save(new Event("Busy Gate Night", "Test event", "Test Venue, Nairobi",
+                LocalDateTime.now().plusDays(30), 1000.0, 10, "Test", null));
+        ticketService.purchaseTicket(event.getId(), "Buyer", "busy@snapshot.test", "+254700000000", 1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<GateSnapshotService.Export>> exports = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                exports.add(executor.submit(() -> snapshotService.exportSnapshot(event.getId(), null)));
+            }
+            for (Future<GateSnapshotService.Export> export : exports) {
+                assertThat(export.get().getSnapshot().size()).isEqualTo(1);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(snapshotService.exportSnapshot(-1L, null)).isNull();
+    }
+}
@@ -0,0 +1,120 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Idempotency-Key claims: one run per key across nodes, and only final outcomes replayed
+ */
+@SpringBootTest
+@ActiveProfiles({"dev", "test"})
+class IdempotencyServiceTest {
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private IdempotencyRecordRepository recordRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void twoNodesRunTheSameKeyOnce() throws Exception {
+        // A second instance has its own in-memory map, like another node sharing the database
+        IdempotencyService otherNode = new IdempotencyService(recordRepository, objectMapper,
+                transactionManager, 24, 300, 1000);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch firstRunning = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<ResponseEntity<?>> first = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute("shared-key", "fp", () -> {
+                    runs.incrementAndGet();
+                    firstRunning.countDown();
+                    await(release);
+                    return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("ticketCode", "A"));
+                }));
+        assertThat(firstRunning.await(10, TimeUnit.SECONDS)).isTrue();
+
+        ResponseEntity<?> duringRun = otherNode.execute("shared-key", "fp", () -> {
+            runs.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.CREATED).build();
+        });
+        assertThat(duringRun.getStatusCodeValue()).isEqualTo(409);
+
+        release.countDown();
+        assertThat(first.get(10, TimeUnit.SECONDS).getStatusCodeValue()).isEqualTo(201);
+
+        ResponseEntity<?> afterRun = otherNode.execute("shared-key", "fp", () -> {
+            runs.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.CREATED).build();
+        });
+        assertThat(afterRun.getStatusCodeValue()).isEqualTo(201);
+        assertThat(afterRun.getHeaders().getFirst("Idempotent-Replayed")).isEqualTo("true");
+        assertThat(runs.get()).isEqualTo(1);
+    }
+
+    @Test
+    void temporaryFailuresAreNotReplayed() {
+        AtomicInteger runs = new AtomicInteger();
+        ResponseEntity<?> busy = idempotencyService.execute("busy-key", "fp", () -> {
+            runs.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        });
+        assertThat(busy.getStatusCodeValue()).isEqualTo(503);
+        assertThat(recordRepository.findById("busy-key")).isEmpty();
+
+        ResponseEntity<?> retried = idempotencyService.execute("busy-key", "fp", () -> {
+            runs.incrementAndGet();
+            return ResponseEntity.status(HttpStatus.CREATED).build();
+        });
+        assertThat(retried.getStatusCodeValue()).isEqualTo(201);
+        assertThat(runs.get()).isEqualTo(2);
+    }
+
+    @Test
+    void pendingOutcomeIsStoredWhenItArrives() {
+        CompletableFuture<ResponseEntity<?>> outcome = new CompletableFuture<>();
+        ResponseEntity<?> interim = idempotencyService.execute("pending-key", "fp", () -> {
+            throw new PendingResponseException(ResponseEntity.accepted().build(), outcome);
+        });
+        assertThat(interim.getStatusCodeValue()).isEqualTo(202);
+
+        ResponseEntity<?> whileRunning = idempotencyService.execute("pending-key", "fp",
+                () -> ResponseEntity.status(HttpStatus.CREATED).build());
+        assertThat(whileRunning.getStatusCodeValue()).isEqualTo(409);
+
+        outcome.complete(ResponseEntity.status(HttpStatus.CREATED).body(Map.of("ticketCode", "B")));
+        ResponseEntity<?> replayed = idempotencyService.execute("pending-key", "fp",
+                () -> ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
+        assertThat(replayed.getStatusCodeValue()).isEqualTo(201);
+        assertThat(recordRepository.findById("pending-key").orElseThrow().getStatusCode()).isEqualTo(201);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
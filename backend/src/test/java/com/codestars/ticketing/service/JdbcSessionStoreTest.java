@@ -0,0 +1,166 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.repository.JdbcSessionStore;
+import com.codestars.ticketing.repository.JdbcSessionStore.JdbcSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * JDBC session store: pending changes merged with the stored rows, before and after a flush
+ *
+ * The store is built with a flush interval long enough that only the test flushes it.
+ */
+@SpringBootTest
+@ActiveProfiles({"dev", "test"})
+class JdbcSessionStoreTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private JdbcSessionStore store;
+
+    @BeforeEach
+    void createStore() {
+        store = new JdbcSessionStore(jdbcTemplate, transactionManager, Duration.ofMinutes(30), 10000,
+                3600000, 3600000);
+    }
+
+    @AfterEach
+    void shutdownStore() {
+        store.shutdown();
+    }
+
+    @Test
+    void newSessionIsReadFromPendingChangesAndThenFromTheDatabase() {
+        JdbcSession created = store.createSession();
+        created.setAttribute("userEmail", "buyer@session.test");
+        store.save(created);
+
+        assertThat(rowsFor(created.getId())).isZero();
+        assertThat(store.findById(created.getId()).<String>getAttribute("userEmail"))
+                .isEqualTo("buyer@session.test");
+
+        store.flush();
+        assertThat(rowsFor(created.getId())).isEqualTo(1);
+        assertThat(store.getStats().get("pendingSessions")).isEqualTo(0);
+        assertThat(store.findById(created.getId()).<String>getAttribute("userEmail"))
+                .isEqualTo("buyer@session.test");
+
+        store.deleteById(created.getId());
+        assertThat(rowsFor(created.getId())).isZero();
+        // Its attribute rows go with it
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ticketing_session_attribute a "
+                + "WHERE NOT EXISTS (SELECT 1 FROM ticketing_session s WHERE s.primary_id = a.session_primary_id)",
+                Integer.class)).isZero();
+    }
+
+    @Test
+    void attributesAreLoadedOnlyWhenAskedFor() {
+        JdbcSession created = store.createSession();
+        created.setAttribute("userEmail", "lazy@session.test");
+        store.save(created);
+        store.flush();
+
+        long loads = attributeLoads();
+        JdbcSession session = store.findById(created.getId());
+        session.setLastAccessedTime(session.getLastAccessedTime().plusSeconds(1));
+        store.save(session);
+        assertThat(attributeLoads()).isEqualTo(loads);
+
+        assertThat(store.findById(created.getId()).<String>getAttribute("userEmail"))
+                .isEqualTo("lazy@session.test");
+        assertThat(attributeLoads()).isEqualTo(loads + 1);
+    }
+
+    @Test
+    void changesMergeAcrossSavesAndFlushes() {
+        JdbcSession created = store.createSession();
+        created.setAttribute("kept", "one");
+        created.setAttribute("removed", "two");
+        store.save(created);
+        store.flush();
+
+        JdbcSession first = store.findById(created.getId());
+        first.setAttribute("added", "three");
+        store.save(first);
+        JdbcSession second = store.findById(created.getId());
+        assertThat(second.<String>getAttribute("added")).isEqualTo("three");
+        second.removeAttribute("removed");
+        store.save(second);
+
+        JdbcSession beforeFlush = store.findById(created.getId());
+        assertThat(beforeFlush.getAttributeNames()).containsExactlyInAnyOrder("kept", "added");
+
+        store.flush();
+        JdbcSession afterFlush = store.findById(created.getId());
+        assertThat(afterFlush.getAttributeNames()).containsExactlyInAnyOrder("kept", "added");
+        assertThat(afterFlush.<String>getAttribute("kept")).isEqualTo("one");
+        assertThat(afterFlush.<String>getAttribute("added")).isEqualTo("three");
+    }
+
+    @Test
+    void changedIdReplacesTheOldOneAtOnce() {
+        JdbcSession unflushed = store.createSession();
+        unflushed.setAttribute("userEmail", "new@session.test");
+        store.save(unflushed);
+        String firstId = unflushed.getId();
+        String secondId = unflushed.changeSessionId();
+        store.save(unflushed);
+
+        assertThat(store.findById(firstId)).isNull();
+        assertThat(store.findById(secondId).<String>getAttribute("userEmail")).isEqualTo("new@session.test");
+
+        JdbcSession stored = store.findById(secondId);
+        String thirdId = stored.changeSessionId();
+        store.save(stored);
+
+        assertThat(rowsFor(secondId)).isZero();
+        assertThat(store.findById(secondId)).isNull();
+        assertThat(store.findById(thirdId).<String>getAttribute("userEmail")).isEqualTo("new@session.test");
+    }
+
+    @Test
+    void unwritableSessionIsDroppedWithoutHoldingBackTheOthers() {
+        JdbcSession good = store.createSession();
+        good.setAttribute("userEmail", "good@session.test");
+        store.save(good);
+        JdbcSession bad = store.createSession();
+        bad.setAttribute(String.join("", Collections.nCopies(250, "x")), "name too long for its column");
+        store.save(bad);
+
+        store.flush();
+        assertThat(rowsFor(good.getId())).isEqualTo(1);
+        assertThat(store.getStats().get("pendingSessions")).isEqualTo(1);
+
+        store.flush();
+        store.flush();
+        assertThat(store.getStats().get("pendingSessions")).isEqualTo(0);
+        assertThat(store.getStats().get("sessionsDropped")).isEqualTo(1L);
+        assertThat(store.findById(bad.getId())).isNull();
+        assertThat(store.findById(good.getId()).<String>getAttribute("userEmail")).isEqualTo("good@session.test");
+    }
+
+    private int rowsFor(String sessionId) {
+        Integer rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ticketing_session WHERE session_id = ?",
+                Integer.class, sessionId);
+        return rows == null ? 0 : rows;
+    }
+
+    private long attributeLoads() {
+        return (Long) store.getStats().get("attributeLoads");
+    }
+}
@@ -0,0 +1,7 @@
+package com.codestars.ticketing.service;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest(properties = "ticketing.inventory.strategy=memory")
+class MemoryInventoryConcurrentPurchaseTest extends ConcurrentPurchaseTest {
+}
@@ -0,0 +1,95 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.repository.HeapSessionStore;
+import com.codestars.ticketing.repository.JdbcSessionStore;
+import com.codestars.ticketing.repository.OffHeapSessionStore;
+import com.codestars.ticketing.repository.SessionStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.session.Session;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Session stores: read and write latency of memory, off-heap and jdbc
+ *
+ * Each store is filled with sessions holding the attributes /api/session sets, then timed
+ * for a read (findById and one attribute) and for the write every request makes (read,
+ * touch the last access time, save). The jdbc store writes behind: its sessions are flushed
+ * before each read run, so reads go to the database, and the time of the flush that follows
+ * the writes is printed with its stats.
+ */
+@SpringBootTest
+@ActiveProfiles({"dev", "test"})
+class SessionStoreBenchmark {
+
+    private static final int SESSIONS = 2000;
+    private static final int OPERATIONS = 20000;
+    private static final Duration TIMEOUT = Duration.ofMinutes(30);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void readAndWriteLatencyPerStore() throws Exception {
+        benchmark("memory", new HeapSessionStore(TIMEOUT));
+        benchmark("off-heap", new OffHeapSessionStore(TIMEOUT));
+
+        JdbcSessionStore jdbc = new JdbcSessionStore(jdbcTemplate, transactionManager, TIMEOUT, 10000, 1000, 60000);
+        try {
+            benchmark("jdbc", jdbc);
+        } finally {
+            jdbc.shutdown();
+        }
+    }
+
+    private <S extends Session> void benchmark(String name, SessionStore<S> store) throws Exception {
+        List<String> ids = new ArrayList<>(SESSIONS);
+        for (int i = 0; i < SESSIONS; i++) {
+            S session = store.createSession();
+            session.setAttribute("userEmail", "user" + i + "@tiketi.co.ke");
+            session.setAttribute("userName", "User " + i);
+            store.save(session);
+            ids.add(session.getId());
+        }
+
+        for (int threads : new int[]{1, 4}) {
+            flush(store);
+            Benchmarks.nanosPerOp(name + " read", threads, OPERATIONS, i -> {
+                S session = store.findById(ids.get(i % SESSIONS));
+                if (session.getAttribute("userEmail") == null) {
+                    throw new IllegalStateException("Session lost its attributes");
+                }
+            });
+            Benchmarks.nanosPerOp(name + " touch and save", threads, OPERATIONS, i -> {
+                S session = store.findById(ids.get(i % SESSIONS));
+                session.setLastAccessedTime(Instant.now());
+                store.save(session);
+            });
+        }
+        flush(store);
+        System.out.println(store.getStats());
+        // The jdbc table may hold sessions of other tests sharing the context
+        for (String id : ids) {
+            assertThat(store.findById(id)).isNotNull();
+        }
+    }
+
+    private static void flush(SessionStore<?> store) {
+        if (store instanceof JdbcSessionStore) {
+            ((JdbcSessionStore) store).flush();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.codestars.ticketing.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Ticket code generation: the original UUID-substring codes against SequenceTicketCodeGenerator
+ *
+ * A node issues at most 4096 codes per second (plus what it may borrow ahead), far more than
+ * any on-sale needs but far less than a benchmark asks for. The generator here runs on a clock
+ * that moves one second per 1024 reads, so the timings are the cost of generating a code
+ * rather than of waiting for the next second.
+ */
+class TicketCodeBenchmark {
+
+    private static final int OPERATIONS = 200_000;
+
+    private final AtomicLong clockReads = new AtomicLong();
+    private final long startMillis = System.currentTimeMillis();
+    private final SequenceTicketCodeGenerator generator = new SequenceTicketCodeGenerator(0,
+            () -> startMillis + clockReads.incrementAndGet() / 1024 * 1000);
+
+    @Test
+    void generateCodes() throws Exception {
+        for (int threads : new int[] {1, 8}) {
+            Benchmarks.nanosPerOp("UUID substring", threads, OPERATIONS,
+                    i -> blackhole(legacyCode()));
+            Benchmarks.nanosPerOp("SequenceTicketCodeGenerator.nextCode", threads, OPERATIONS,
+                    i -> blackhole(generator.nextCode()));
+        }
+    }
+
+    @Test
+    void normalizeCodes() throws Exception {
+        String code = generator.nextCode();
+        // As typed at a gate: no prefix, lower case, spaces between the groups
+        String typed = code.substring("TKT-".length()).toLowerCase().replace('-', ' ');
+        Benchmarks.nanosPerOp("SequenceTicketCodeGenerator.normalize", 1, OPERATIONS,
+                i -> blackhole(generator.normalize(typed)));
+        assertThat(generator.normalize(typed)).isEqualTo(code);
+    }
+
+    @Test
+    void generatedCodesAreUnique() throws Exception {
+        Set<String> codes = ConcurrentHashMap.newKeySet();
+        Benchmarks.nanosPerOp("nextCode into a set", 8, 50_000, i -> codes.add(generator.nextCode()));
+        // Warm-up and timed runs: 8 threads x (25,000 + 50,000) codes
+        assertThat(codes).hasSize(8 * 75_000);
+    }
+
+    private static String legacyCode() {
+        return "TKT-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+    }
+
+    private static volatile int sink;
+
+    private static void blackhole(String value) {
+        sink += value.length();
+    }
+}
@@ -0,0 +1,81 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.model.Event;
+import com.codestars.ticketing.model.Ticket;
+import com.codestars.ticketing.repository.EventRepository;
+import com.codestars.ticketing.repository.TicketRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Ticket tokens report what the gates and other nodes know about the ticket
+ */
+@SpringBootTest
+@ActiveProfiles({"dev", "test"})
+class TicketTokenServiceTest {
+
+    @Autowired
+    private TicketTokenService tokenService;
+
+    @Autowired
+    private TicketService ticketService;
+
+    @Autowired
+    private CheckInService checkInService;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private TicketRepository ticketRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void scannedTicketVerifiesAsUsed() {
+        Event event = newEvent();
+        Ticket ticket = ticketService.purchaseTicket(event.getId(), "Buyer", "used@token.test", "+254700000000", 1);
+        String token = tokenService.issueToken(ticket);
+
+        // No gate has scanned for the event yet, so its index is not loaded just to verify
+        TicketTokenService.VerifiedTicket unscanned = tokenService.verify(token);
+        assertThat(unscanned.getStatus()).isEqualTo(Ticket.TicketStatus.ACTIVE);
+        assertThat(unscanned.isGateChecked()).isFalse();
+
+        checkInService.checkIn(event.getId(), ticket.getTicketCode());
+        TicketTokenService.VerifiedTicket verified = tokenService.verify(token);
+        assertThat(verified.isGateChecked()).isTrue();
+        assertThat(verified.isUsed()).isTrue();
+        assertThat(verified.isRevoked()).isFalse();
+    }
+
+    @Test
+    void cancellationOnAnotherNodeIsPickedUp() {
+        Event event = newEvent();
+        Ticket ticket = ticketService.purchaseTicket(event.getId(), "Buyer", "remote@token.test", "+254700000000", 1);
+        String token = tokenService.issueToken(ticket);
+
+        // Written straight to the table, as another instance's cancellation would be
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> ticketRepository.updateStatus(
+                List.of(ticket.getId()), Ticket.TicketStatus.ACTIVE, Ticket.TicketStatus.CANCELLED,
+                LocalDateTime.now()));
+        tokenService.refreshRevokedTickets();
+
+        assertThat(tokenService.verify(token).isRevoked()).isTrue();
+    }
+
+    private Event newEvent() {
+        return eventRepository.save(new Event("Token Night", "Test event", "Test Venue, Nairobi",
+                LocalDateTime.now().plusDays(30), 1000.0, 10, "Test", null));
+    }
+}
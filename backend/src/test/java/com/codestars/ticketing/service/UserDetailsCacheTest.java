@@ -0,0 +1,58 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.model.User;
+import com.codestars.ticketing.repository.UserRepository;
+import com.codestars.ticketing.security.CustomUserDetailsService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Cached user details are dropped by email and by id, so a changed email stops logging in at once
+ */
+@SpringBootTest
+@ActiveProfiles({"dev", "test"})
+class UserDetailsCacheTest {
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void entryUnderAPreviousEmailIsDroppedWhenTheUserChanges() {
+        User user = userRepository.save(new User("Cache User", "before@cache.test", "+254700000000",
+                "not-a-real-hash", "Nairobi"));
+        userDetailsService.loadUserByUsername("before@cache.test");
+        long hits = hits();
+        userDetailsService.loadUserByUsername("before@cache.test");
+        assertThat(hits()).isEqualTo(hits + 1);
+
+        user.setEmail("after@cache.test");
+        userRepository.save(user);
+        assertThatThrownBy(() -> userDetailsService.loadUserByUsername("before@cache.test"))
+                .isInstanceOf(UsernameNotFoundException.class);
+        assertThat(userDetailsService.loadUserByUsername("after@cache.test").getUsername())
+                .isEqualTo("after@cache.test");
+
+        // By id alone, as when only the id of a changed user is known
+        userDetailsService.invalidate(user.getId(), null);
+        long misses = misses();
+        userDetailsService.loadUserByUsername("after@cache.test");
+        assertThat(misses()).isEqualTo(misses + 1);
+    }
+
+    private long hits() {
+        return (Long) userDetailsService.getStats().get("hits");
+    }
+
+    private long misses() {
+        return (Long) userDetailsService.getStats().get("misses");
+    }
+}
@@ -0,0 +1,59 @@
+package com.codestars.ticketing.service;
+
+import com.codestars.ticketing.model.Event;
+import com.codestars.ticketing.repository.EventRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Waiting room admissions: one per position, bound to the first buyer, and events flagged
+ * high-demand after startup are gated at once
+ */
+@SpringBootTest
+@ActiveProfiles({"dev", "test"})
+class WaitingRoomServiceTest {
+
+    @Autowired
+    private WaitingRoomService waitingRoomService;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Test
+    void admissionIsIssuedOncePerPositionAndBoundToTheFirstBuyer() {
+        Event event = new Event("Queue Night", "Test event", "Test Venue, Nairobi",
+                LocalDateTime.now().plusDays(30), 1000.0, 100, "Test", null);
+        event.setHighDemand(true);
+        event = eventRepository.save(event);
+        Long eventId = event.getId();
+        assertThat(waitingRoomService.isHighDemand(eventId)).isTrue();
+        assertThat(waitingRoomService.isAdmitted(eventId, null, "buyer@queue.test")).isFalse();
+
+        String queueToken = (String) waitingRoomService.join(eventId).get("queueToken");
+        for (int i = 0; i < 10; i++) {
+            waitingRoomService.admitNextBatch();
+        }
+
+        Map<String, Object> first = waitingRoomService.status(eventId, queueToken);
+        Map<String, Object> again = waitingRoomService.status(eventId, queueToken);
+        String admissionToken = (String) first.get("admissionToken");
+        assertThat(admissionToken).isNotNull();
+        assertThat(again.get("admissionToken")).isEqualTo(admissionToken);
+        assertThat(again.get("admissionExpiresAt")).isEqualTo(first.get("admissionExpiresAt"));
+
+        assertThat(waitingRoomService.isAdmitted(eventId, admissionToken, "buyer@queue.test")).isTrue();
+        assertThat(waitingRoomService.isAdmitted(eventId, admissionToken, "Buyer@Queue.test")).isTrue();
+        assertThat(waitingRoomService.isAdmitted(eventId, admissionToken, "someone-else@queue.test")).isFalse();
+
+        event.setHighDemand(false);
+        eventRepository.save(event);
+        assertThat(waitingRoomService.isAdmitted(eventId, null, "someone-else@queue.test")).isTrue();
+    }
+}